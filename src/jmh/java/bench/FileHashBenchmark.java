@@ -0,0 +1,121 @@
+package bench;
+
+import object.LooseObjectWriter;
+import object.ObjectId;
+import object.ObjectType;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Hashing straight from disk: whole directory trees of small files, the shape write-tree sees,
+ * and single huge blobs, which take the streaming path. The files stay in the page cache after
+ * the first iteration, so this measures our code rather than the disk.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(value = 1, jvmArgsAppend = "--enable-preview")
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+public class FileHashBenchmark {
+    /**
+     * A tree of small files. Only the directory benchmark uses it, so its shapes do not multiply
+     * the huge-blob runs.
+     */
+    @State(Scope.Benchmark)
+    public static class Directory {
+        /**
+         * deep: 10 levels of 2 subdirectories; wide: 2 levels of 40; flat: one directory.
+         */
+        @Param({"deep", "wide", "flat"})
+        String shape;
+
+        private Path root;
+        private List<Path> files;
+
+        @Setup
+        public void setUp() throws IOException {
+            root = Files.createTempDirectory("bench-files");
+            Random random = new Random(Fixtures.SEED);
+            switch (shape) {
+                case "deep" -> Fixtures.directoryTree(root, 10, 2, 4, random);
+                case "wide" -> Fixtures.directoryTree(root, 2, 40, 5, random);
+                case "flat" -> Fixtures.directoryTree(root, 0, 0, 8000, random);
+                default -> throw new IllegalArgumentException(shape);
+            }
+            try (Stream<Path> paths = Files.walk(root)) {
+                files = paths.filter(Files::isRegularFile).sorted().toList();
+            }
+        }
+
+        @TearDown
+        public void tearDown() throws IOException {
+            Fixtures.delete(root);
+        }
+    }
+
+    /**
+     * One huge file, and an object directory to insert it into. It is only written for the
+     * benchmarks that read it.
+     */
+    @State(Scope.Benchmark)
+    public static class HugeBlob {
+        @Param({"268435456"})
+        long hugeBlobSize;
+
+        private Path root;
+        private Path file;
+        private LooseObjectWriter writer;
+
+        @Setup
+        public void setUp() throws IOException {
+            root = Files.createTempDirectory("bench-huge");
+            file = Fixtures.hugeFile(root.resolve("huge.bin"), hugeBlobSize, new Random(Fixtures.SEED));
+            writer = new LooseObjectWriter(Files.createDirectories(root.resolve("objects")));
+        }
+
+        @TearDown
+        public void tearDown() throws IOException {
+            Fixtures.delete(root);
+        }
+    }
+
+    @Benchmark
+    public void hashDirectory(Directory directory, Blackhole bh) throws IOException {
+        for (Path file : directory.files) {
+            bh.consume(LooseObjectWriter.hash(ObjectType.BLOB, file));
+        }
+    }
+
+    @Benchmark
+    public ObjectId hashHugeBlob(HugeBlob blob) throws IOException {
+        return LooseObjectWriter.hash(ObjectType.BLOB, blob.file);
+    }
+
+    /**
+     * Hash, deflate and temp-file write of a huge blob. The final rename is skipped after the first
+     * call because the object then exists, but all the streaming work is still done.
+     */
+    @Benchmark
+    public ObjectId insertHugeBlob(HugeBlob blob) throws IOException {
+        return blob.writer.insert(ObjectType.BLOB, blob.file);
+    }
+}
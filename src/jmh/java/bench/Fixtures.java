@@ -0,0 +1,131 @@
+package bench;
+
+import object.ObjectId;
+import object.TreeFormatter;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Stream;
+
+/**
+ * Synthetic inputs for the benchmarks. Everything is derived from a fixed seed, so every run and
+ * every machine measures exactly the same bytes.
+ */
+final class Fixtures {
+    static final long SEED = 0x67697442L;
+
+    private static final String[] WORDS = {
+            "public", "static", "final", "class", "return", "byte", "int", "void", "new", "if",
+            "else", "for", "while", "try", "catch", "throw", "import", "package", "object", "tree",
+            "blob", "commit", "index", "path", "entry", "size", "mode", "name", "hash", "{", "}", ";",
+    };
+
+    private Fixtures() {
+    }
+
+    /**
+     * Source-code-like text, which compresses about as well as a typical repository's blobs.
+     */
+    static byte[] text(Random random, int size) {
+        byte[] data = new byte[size];
+        int pos = 0;
+        while (pos < size) {
+            byte[] word = WORDS[random.nextInt(WORDS.length)].getBytes(StandardCharsets.US_ASCII);
+            for (int i = 0; i < word.length && pos < size; i++) data[pos++] = word[i];
+            if (pos < size) data[pos++] = (byte) (random.nextInt(8) == 0 ? '\n' : ' ');
+        }
+        return data;
+    }
+
+    /**
+     * Incompressible bytes, the worst case for deflate.
+     */
+    static byte[] random(Random random, int size) {
+        byte[] data = new byte[size];
+        random.nextBytes(data);
+        return data;
+    }
+
+    static ObjectId randomId(Random random) {
+        return ObjectId.fromRaw(random(random, ObjectId.RAW_LENGTH));
+    }
+
+    /**
+     * Writes a directory tree {@code depth} levels deep in which every directory holds
+     * {@code width} subdirectories and {@code filesPerDir} small text files.
+     */
+    static int directoryTree(Path root, int depth, int width, int filesPerDir, Random random) throws IOException {
+        Files.createDirectories(root);
+        int files = 0;
+        for (int i = 0; i < filesPerDir; i++) {
+            Files.write(root.resolve("file" + i + ".txt"), text(random, 256 + random.nextInt(4096)));
+            files++;
+        }
+        if (depth > 0) {
+            for (int i = 0; i < width; i++) {
+                files += directoryTree(root.resolve("dir" + i), depth - 1, width, filesPerDir, random);
+            }
+        }
+        return files;
+    }
+
+    /**
+     * Writes a file of {@code size} bytes in chunks, so fixtures larger than the heap are possible.
+     */
+    static Path hugeFile(Path file, long size, Random random) throws IOException {
+        byte[] chunk = new byte[1024 * 1024];
+        try (OutputStream out = Files.newOutputStream(file)) {
+            for (long left = size; left > 0; left -= chunk.length) {
+                random.nextBytes(chunk);
+                out.write(chunk, 0, (int) Math.min(chunk.length, left));
+            }
+        }
+        return file;
+    }
+
+    record TreeEntry(byte[] name, boolean tree, ObjectId id) {
+    }
+
+    static final Comparator<TreeEntry> TREE_ORDER =
+            (a, b) -> TreeFormatter.compare(a.name, a.tree, b.name, b.tree);
+
+    /**
+     * Entries for one large tree, in shuffled order. About one in eight is a subtree, and names
+     * share prefixes the way real source directories do, which exercises the '/' tie-break.
+     */
+    static List<TreeEntry> treeEntries(int count, Random random) {
+        List<TreeEntry> entries = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            boolean tree = random.nextInt(8) == 0;
+            String name = WORDS[random.nextInt(WORDS.length)] + i + (tree ? "" : ".java");
+            entries.add(new TreeEntry(name.getBytes(StandardCharsets.UTF_8), tree, randomId(random)));
+        }
+        Collections.shuffle(entries, random);
+        return entries;
+    }
+
+    static byte[] treeObject(List<TreeEntry> sorted) {
+        TreeFormatter formatter = new TreeFormatter(sorted.size());
+        for (TreeEntry e : sorted) {
+            formatter.append(e.tree ? TreeFormatter.MODE_TREE : TreeFormatter.MODE_FILE, e.name, e.id);
+        }
+        return formatter.toByteArray();
+    }
+
+    static void delete(Path root) throws IOException {
+        if (root == null || !Files.exists(root)) return;
+        try (Stream<Path> paths = Files.walk(root)) {
+            for (Path p : paths.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(p);
+            }
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package bench;
+
+import object.LooseObjectWriter;
+import object.ObjectId;
+import object.ObjectType;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Blob hashing from memory: the header plus SHA-1 cost paid for every file write-tree and
+ * hash-object look at.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(value = 1, jvmArgsAppend = "--enable-preview")
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class HashBenchmark {
+    @Param({"128", "4096", "65536", "1048576"})
+    int blobSize;
+
+    private byte[] blob;
+    private LooseObjectWriter writer;
+
+    @Setup
+    public void setUp() {
+        blob = Fixtures.text(new Random(Fixtures.SEED), blobSize);
+        // Never writes; only its compression level matters here.
+        writer = new LooseObjectWriter(Path.of("objects"));
+    }
+
+    @Benchmark
+    public ObjectId hashBlob() {
+        return LooseObjectWriter.hash(ObjectType.BLOB, blob);
+    }
+
+    @Benchmark
+    public byte[] deflateBlob() {
+        return writer.deflate(ObjectType.BLOB, blob);
+    }
+}
@@ -0,0 +1,89 @@
+package bench;
+
+import object.LooseObjectWriter;
+import object.ObjectId;
+import object.ObjectType;
+import object.TreeFormatter;
+import object.TreeIterator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One large tree object: sorting its entries into git order, serializing them, hashing the
+ * result and parsing it back.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(value = 1, jvmArgsAppend = "--enable-preview")
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class TreeBenchmark {
+    @Param({"16", "1000", "100000"})
+    int entries;
+
+    private List<Fixtures.TreeEntry> shuffled;
+    private List<Fixtures.TreeEntry> sorted;
+    private byte[] tree;
+
+    @Setup
+    public void setUp() {
+        shuffled = Fixtures.treeEntries(entries, new Random(Fixtures.SEED));
+        sorted = new ArrayList<>(shuffled);
+        sorted.sort(Fixtures.TREE_ORDER);
+        tree = Fixtures.treeObject(sorted);
+    }
+
+    /**
+     * Includes copying the list, which is small next to the comparisons.
+     */
+    @Benchmark
+    public List<Fixtures.TreeEntry> sort() {
+        List<Fixtures.TreeEntry> copy = new ArrayList<>(shuffled);
+        copy.sort(Fixtures.TREE_ORDER);
+        return copy;
+    }
+
+    @Benchmark
+    public byte[] serialize() {
+        TreeFormatter formatter = new TreeFormatter(sorted.size());
+        for (Fixtures.TreeEntry e : sorted) {
+            formatter.append(e.tree() ? TreeFormatter.MODE_TREE : TreeFormatter.MODE_FILE, e.name(), e.id());
+        }
+        return formatter.toByteArray();
+    }
+
+    @Benchmark
+    public ObjectId hash() {
+        return LooseObjectWriter.hash(ObjectType.TREE, tree);
+    }
+
+    /**
+     * Walks every entry the way ls-tree does, touching the mode, name and id of each.
+     */
+    @Benchmark
+    public void parse(Blackhole bh) throws IOException {
+        TreeIterator it = new TreeIterator(tree);
+        while (it.next()) {
+            bh.consume(it.mode());
+            bh.consume(it.nameLength());
+            bh.consume(it.idOffset());
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package bench;
+
+import object.Compression;
+import object.LooseObjectWriter;
+import object.ObjectDatabase;
+import object.ObjectId;
+import object.ObjectType;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Both halves of a loose object's zlib round trip: deflating it for writing, and opening and
+ * inflating it again through the object database. The object cache is disabled in the forked
+ * JVM so every read really inflates.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(value = 1, jvmArgsAppend = {"--enable-preview", "-Dgit.objectCache.maxBytes=0"})
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class ZlibBenchmark {
+    @Param({"4096", "1048576", "16777216"})
+    int size;
+
+    @Param({"text", "random"})
+    String content;
+
+    @Param({"fast", "default", "best"})
+    String level;
+
+    private Path gitDir;
+    private byte[] data;
+    private LooseObjectWriter writer;
+    private ObjectId id;
+    private ObjectDatabase db;
+
+    @Setup
+    public void setUp() throws IOException {
+        Random random = new Random(Fixtures.SEED);
+        data = content.equals("text") ? Fixtures.text(random, size) : Fixtures.random(random, size);
+        gitDir = Files.createTempDirectory("bench-zlib");
+        Compression compression = switch (level) {
+            case "fast" -> Compression.FAST;
+            case "default" -> Compression.DEFAULT;
+            case "best" -> Compression.BEST;
+            default -> throw new IllegalArgumentException(level);
+        };
+        writer = new LooseObjectWriter(Files.createDirectories(gitDir.resolve("objects")), compression);
+        id = writer.insert(ObjectType.BLOB, data);
+        db = ObjectDatabase.open(gitDir);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        db.close();
+        Fixtures.delete(gitDir);
+    }
+
+    @Benchmark
+    public byte[] deflate() {
+        return writer.deflate(ObjectType.BLOB, data);
+    }
+
+    @Benchmark
+    public byte[] inflate() throws IOException {
+        return db.openRequired(id.name()).getBytes();
+    }
+}
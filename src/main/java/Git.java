@@ -1,4 +1,6 @@
 import command.*;
+import daemon.ServerCommand;
+import trace.Trace;
 
 import java.util.Arrays;
 import java.util.HashMap;
@@ -15,6 +17,17 @@ public final class Git {
         register("write-tree",    WriteTreeCommand::new);
         register("ls-tree",    ListTreeCommand::new);
         register("commit-tree",    CommitTree::new);
+        register("pack-objects",   PackObjectsCommand::new);
+        register("gc",             GcCommand::new);
+        register("rev-list",       RevListCommand::new);
+        register("log",            LogCommand::new);
+        register("merge-base",     MergeBaseCommand::new);
+        register("commit-graph",   CommitGraphCommand::new);
+        register("diff-tree",      DiffTreeCommand::new);
+        register("fsck",           FsckCommand::new);
+        register("checkout-tree",  CheckoutTreeCommand::new);
+        register("clone",          CloneCommand::new);
+        register("server",         () -> new ServerCommand(Git::run));
     }
 
     private static void register(String name, Supplier<Command> supplier) {
@@ -24,14 +37,19 @@ public final class Git {
     public static void run(String[] args) throws Exception {
         if (args.length == 0) {
             System.err.println("usage: git <command> [<args>]");
-            System.exit(1);
+            throw new ExitException(1);
         }
         Command cmd = COMMANDS.getOrDefault(args[0], () -> {
             System.err.println("git: '" + args[0] + "' is not a git command.");
-            System.exit(0);
-            return null;
+            throw new ExitException(0);
         }).get();
 
-        cmd.execute(Arrays.copyOfRange(args, 1, args.length));
+        String[] rest = Arrays.copyOfRange(args, 1, args.length);
+        Trace.CommandTrace trace = Trace.command(args[0], rest);
+        try {
+            cmd.execute(rest);
+        } finally {
+            trace.close();
+        }
     }
 }
\ No newline at end of file
@@ -1,11 +1,16 @@
 import command.*;
+import daemon.Client;
 
 public class Main {
     public static void main(String[] args) {
         // You can use print statements as follows for debugging, they'll be visible when running tests.
         System.err.println("Logs from your program will appear here!");
+        int status = Client.run(args);
+        if (status >= 0) System.exit(status);
         try {
             Git.run(args);
+        } catch (ExitException e) {
+            System.exit(e.status());
         } catch (Exception e) {
             throw new RuntimeException(e);
         }
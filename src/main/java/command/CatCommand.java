@@ -1,35 +1,120 @@
 package command;
 
-import java.io.ByteArrayOutputStream;
+import object.ObjectDatabase;
+import object.ObjectId;
+import object.ObjectLoader;
+import refs.RefDatabase;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
 import java.io.IOException;
-import java.nio.file.Files;
-import java.nio.file.Paths;
-import java.util.zip.DataFormatException;
-import java.util.zip.Inflater;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
 
 public class CatCommand implements Command {
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    @Override
     public void execute(String[] args) throws Exception {
-        final String objectHash = args[2];
-        final String objectFolder = objectHash.substring(0, 2);
-        final String objectFilename = objectHash.substring(2);
-
-        try (Inflater inflater = new Inflater()) {
-            byte[] data = Files.readAllBytes(Paths.get(".git/objects/" + objectFolder + "/" + objectFilename));
-            inflater.setInput(data);
-
-            try (ByteArrayOutputStream outputStream = new ByteArrayOutputStream(data.length)) {
-                byte[] buffer = new byte[1024];
-                while (!inflater.finished()) {
-                    int count = inflater.inflate(buffer);
-                    outputStream.write(buffer, 0, count);
+        if (args.length == 1 && ("--batch".equals(args[0]) || "--batch-check".equals(args[0]))) {
+            batch("--batch".equals(args[0]));
+            return;
+        }
+        if (args.length != 2) {
+            System.err.println("usage: git cat-file (-p | -t | -s | -e) <object>");
+            System.err.println("   or: git cat-file (--batch | --batch-check)");
+            throw new ExitException(129);
+        }
+
+        final String flag = args[0];
+        final String objectHash = args[1];
+
+        try (ObjectDatabase db = ObjectDatabase.open(Session.current().gitDir())) {
+            ObjectId id = resolve(db, new RefDatabase(Session.current().gitDir()), objectHash);
+            ObjectLoader loader = id == null ? null : db.open(id);
+            if (loader == null) {
+                if (!"-e".equals(flag)) {
+                    System.err.println("fatal: Not a valid object name " + objectHash);
                 }
+                throw new ExitException(128);
+            }
 
-                String decompressedString = outputStream.toString("UTF-8");
-                System.out.print(decompressedString.substring(decompressedString.indexOf("\0") + 1));
+            // Only the header is decoded for -t, -s and -e.
+            switch (flag) {
+                case "-t" -> System.out.println(loader.type());
+                case "-s" -> System.out.println(loader.size());
+                case "-e" -> { }
+                case "-p" -> {
+                    try (InputStream in = loader.openStream()) {
+                        copy(in, System.out);
+                    }
+                }
+                default -> {
+                    System.err.println("fatal: unknown option: " + flag);
+                    throw new ExitException(129);
+                }
+            }
+        }
+    }
+
+    /**
+     * Answers one object name per stdin line from a single process. Output is buffered and only
+     * flushed when no further input is already waiting, so a caller that writes one name and
+     * waits for the reply still gets it promptly.
+     */
+    private static void batch(boolean withContents) throws IOException {
+        BufferedReader in = new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8), BUFFER_SIZE);
+        OutputStream out = new BufferedOutputStream(Session.current().stdout(), BUFFER_SIZE);
+        byte[] buffer = new byte[BUFFER_SIZE];
 
-            } catch (DataFormatException e) {
-                throw new RuntimeException(e);
+        try (ObjectDatabase db = ObjectDatabase.open(Session.current().gitDir())) {
+            RefDatabase refs = new RefDatabase(Session.current().gitDir());
+            String name;
+            while ((name = in.readLine()) != null) {
+                name = name.strip();
+                ObjectId id = resolve(db, refs, name);
+                ObjectLoader loader = id == null ? null : db.open(id);
+                if (loader == null) {
+                    out.write((name + " missing\n").getBytes(StandardCharsets.UTF_8));
+                } else {
+                    // As in git, the line names the object found, however the input named it.
+                    long size = loader.size();
+                    out.write((id.name() + " " + loader.type() + " " + size + "\n").getBytes(StandardCharsets.UTF_8));
+                    if (withContents) {
+                        try (InputStream content = loader.openStream()) {
+                            int n;
+                            while ((n = content.read(buffer)) > 0) {
+                                out.write(buffer, 0, n);
+                            }
+                        }
+                        out.write('\n');
+                    }
+                }
+                if (!in.ready()) out.flush();
             }
+        } finally {
+            out.flush();
+        }
+    }
+
+    /**
+     * The id {@code name} names: an id, a ref or {@code <tree-ish>:<path>}. A full id is taken
+     * as it is, without consulting the refs.
+     */
+    private static ObjectId resolve(ObjectDatabase db, RefDatabase refs, String name) throws IOException {
+        ObjectId id = ObjectId.tryParse(name);
+        return id != null ? id : Trees.resolve(db, refs, name);
+    }
+
+    private static void copy(InputStream in, OutputStream out) throws IOException {
+        // Stream the payload through one fixed buffer; bytes are never decoded, so binary blobs survive intact.
+        byte[] buffer = new byte[BUFFER_SIZE];
+        int n;
+        while ((n = in.read(buffer)) > 0) {
+            out.write(buffer, 0, n);
         }
+        out.flush();
     }
 }
@@ -0,0 +1,211 @@
+package command;
+
+import index.CacheTree;
+import index.DirCache;
+import index.DirCacheEntry;
+import index.StatInfo;
+import object.MissingObjectException;
+import object.ObjectDatabase;
+import object.ObjectId;
+import object.ObjectLoader;
+import object.TreeIterator;
+import refs.RefDatabase;
+import trace.Phase;
+import trace.Trace;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryNotEmptyException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileAttribute;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+public class CheckoutTreeCommand implements Command {
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final Set<StandardOpenOption> CREATE = EnumSet.of(StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+    private static final boolean POSIX = FileSystems.getDefault().supportedFileAttributeViews().contains("posix");
+    // Created like git creates them, so the umask decides who else may read or run them.
+    private static final FileAttribute<?>[] FILE = posix("rw-rw-rw-");
+    private static final FileAttribute<?>[] EXECUTABLE = posix("rwxrwxrwx");
+    private static final ThreadLocal<byte[]> BUFFERS = ThreadLocal.withInitial(() -> new byte[BUFFER_SIZE]);
+
+    private ObjectDatabase db;
+    private final List<Entry> files = new ArrayList<>();
+
+    private static FileAttribute<?>[] posix(String permissions) {
+        return POSIX
+                ? new FileAttribute<?>[] {PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString(permissions))}
+                : new FileAttribute<?>[0];
+    }
+
+    @Override
+    public void execute(String[] args) throws Exception {
+        int threads = Runtime.getRuntime().availableProcessors();
+        List<String> operands = new ArrayList<>();
+        for (String arg : args) {
+            if (arg.startsWith("--threads=")) {
+                try {
+                    threads = Integer.parseInt(arg.substring("--threads=".length()));
+                } catch (NumberFormatException e) {
+                    usage();
+                }
+            } else if (arg.startsWith("-") || operands.size() == 2) {
+                usage();
+            } else {
+                operands.add(arg);
+            }
+        }
+        if (operands.isEmpty()) usage();
+
+        Path gitDir = Session.current().gitDir();
+        // Only a checkout into the work tree itself is recorded in the index.
+        boolean intoWorkTree = operands.size() == 1;
+        Path root = intoWorkTree ? Session.current().workTree() : Session.current().resolve(operands.get(1));
+        try (ObjectDatabase db = ObjectDatabase.open(gitDir)) {
+            byte[] tree = Trees.read(db, new RefDatabase(gitDir), operands.get(0));
+            checkout(db, tree, root, intoWorkTree ? gitDir.resolve("index") : null, threads);
+        } catch (IOException e) {
+            System.err.println("fatal: " + e.getMessage());
+            throw new ExitException(128);
+        }
+    }
+
+    /**
+     * Writes {@code tree} out under {@code root} and, if {@code index} is given, records the
+     * files written there.
+     */
+    void checkout(ObjectDatabase db, byte[] tree, Path root, Path index, int threads) throws IOException {
+        this.db = db;
+        Files.createDirectories(root);
+        walk(tree, root, "");
+        DirCacheEntry[] written = writeFiles(Math.max(1, threads));
+        if (index != null) {
+            // The trees are rebuilt from these entries by the next write-tree, without rehashing any file.
+            // Each entry keeps its tree mode, which is also what write-tree reads off the file, so the
+            // rebuilt trees have the ids that were checked out.
+            new DirCache(List.of(written), new CacheTree("", -1, null, List.of())).write(index);
+        }
+    }
+
+    /**
+     * Creates every directory of the tree, parents before children, and queues its files in tree
+     * order. Only trees are read here; the blobs are left to {@link #writeFiles}. Submodules
+     * become empty directories, as in git.
+     */
+    private void walk(byte[] tree, Path dir, String prefix) throws IOException {
+        TreeIterator it = new TreeIterator(tree);
+        while (it.next()) {
+            String name = it.name();
+            // A crafted tree must not write outside the checkout or into the repository.
+            if (name.isEmpty() || name.equals(".") || name.equals("..") || name.equalsIgnoreCase(".git")
+                    || name.indexOf('/') >= 0 || name.indexOf('\\') >= 0 || name.indexOf('\0') >= 0) {
+                throw new IOException("invalid path '" + prefix + name + "'");
+            }
+            Path path = dir.resolve(name);
+            switch (it.mode()) {
+                case TreeIterator.MODE_TREE -> {
+                    createDirectory(path);
+                    ObjectId id = it.id();
+                    ObjectLoader subtree = db.open(id);
+                    if (subtree == null) throw new MissingObjectException(id);
+                    walk(subtree.getBytes(), path, prefix + name + "/");
+                }
+                case TreeIterator.MODE_GITLINK -> createDirectory(path);
+                default -> files.add(new Entry(path, prefix + name, it.mode(), it.id()));
+            }
+        }
+    }
+
+    private static void createDirectory(Path path) throws IOException {
+        // A symlink in the way is replaced, not followed out of the checkout.
+        if (!Files.isDirectory(path, LinkOption.NOFOLLOW_LINKS)) {
+            Files.deleteIfExists(path);
+            Files.createDirectory(path);
+        }
+    }
+
+    /**
+     * Inflates and writes the queued files on a pool of {@code threads}. Returns the index entry
+     * of each file, at its position in tree order.
+     */
+    private DirCacheEntry[] writeFiles(int threads) throws IOException {
+        DirCacheEntry[] written = new DirCacheEntry[files.size()];
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> results = new ArrayList<>(files.size());
+            for (int i = 0; i < files.size(); i++) {
+                int position = i;
+                results.add(pool.submit(() -> {
+                    written[position] = write(files.get(position));
+                    return null;
+                }));
+            }
+            for (Future<?> f : results) f.get();
+            return written;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("checkout interrupted", e);
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof IOException io ? io : new IOException(e.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * Streams one blob from the object store into its file through a fixed buffer, so a large
+     * blob is never held whole. A symlink's blob is its target.
+     */
+    private DirCacheEntry write(Entry entry) throws IOException {
+        ObjectLoader blob = db.open(entry.id);
+        if (blob == null) throw new MissingObjectException(entry.id);
+        try {
+            Files.deleteIfExists(entry.file);
+        } catch (DirectoryNotEmptyException e) {
+            throw new IOException("cannot replace directory '" + entry.path + "' with a file", e);
+        }
+        if (entry.mode == TreeIterator.MODE_SYMLINK) {
+            String target = new String(blob.getBytes(), StandardCharsets.UTF_8);
+            Files.createSymbolicLink(entry.file, Path.of(target));
+            return DirCacheEntry.of(entry.path, StatInfo.of(entry.file, LinkOption.NOFOLLOW_LINKS), entry.mode, entry.id);
+        }
+
+        byte[] buffer = BUFFERS.get();
+        FileAttribute<?>[] attributes = entry.mode == TreeIterator.MODE_EXECUTABLE ? EXECUTABLE : FILE;
+        try (InputStream in = blob.openStream();
+             OutputStream out = Channels.newOutputStream(Files.newByteChannel(entry.file, CREATE, attributes))) {
+            int n;
+            while ((n = in.read(buffer)) > 0) {
+                long start = Trace.start();
+                out.write(buffer, 0, n);
+                Trace.end(Phase.WRITE, start, n);
+            }
+        } catch (IOException e) {
+            throw new IOException("unable to write file " + entry.path + ": " + e.getMessage(), e);
+        }
+        return DirCacheEntry.of(entry.path, StatInfo.of(entry.file), entry.mode, entry.id);
+    }
+
+    private static void usage() {
+        System.err.println("usage: git checkout-tree [--threads=<n>] <tree-ish> [<directory>]");
+        throw new ExitException(129);
+    }
+
+    private record Entry(Path file, String path, int mode, ObjectId id) {
+    }
+}
@@ -0,0 +1,207 @@
+package command;
+
+import object.ObjectDatabase;
+import object.ObjectId;
+import object.PackParser;
+import refs.RefDatabase;
+import transport.HttpTransport;
+import transport.RemoteRef;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Stream;
+
+public class CloneCommand implements Command {
+    private static final String REMOTE = "origin";
+
+    @Override
+    public void execute(String[] args) throws Exception {
+        int threads = Runtime.getRuntime().availableProcessors();
+        List<String> operands = new ArrayList<>();
+        for (String arg : args) {
+            if (arg.startsWith("--threads=")) {
+                try {
+                    threads = Integer.parseInt(arg.substring("--threads=".length()));
+                } catch (NumberFormatException e) {
+                    usage();
+                }
+            } else if (arg.startsWith("-") || operands.size() == 2) {
+                usage();
+            } else {
+                operands.add(arg);
+            }
+        }
+        if (operands.isEmpty()) usage();
+
+        String url = operands.get(0);
+        String name = operands.size() == 2 ? operands.get(1) : directoryName(url);
+        Path dir = Session.current().resolve(name);
+        boolean existed = Files.exists(dir);
+        if (existed && !isEmptyDirectory(dir)) {
+            System.err.println("fatal: destination path '" + name + "' already exists and is not an empty directory.");
+            throw new ExitException(128);
+        }
+
+        System.err.println("Cloning into '" + name + "'...");
+        boolean done = false;
+        try {
+            clone(url, dir, Math.max(1, threads));
+            done = true;
+        } catch (IOException e) {
+            System.err.println("fatal: " + e.getMessage());
+            throw new ExitException(128);
+        } finally {
+            // As in git, a failed clone leaves nothing behind.
+            if (!done) delete(dir, existed);
+        }
+    }
+
+    /**
+     * Lists the remote's branches and tags, receives one pack with everything they reach, records
+     * them as remote-tracking refs and tags, and checks out the remote's HEAD.
+     */
+    private static void clone(String url, Path dir, int threads) throws IOException {
+        Path gitDir = dir.resolve(".git");
+        Path packDir = gitDir.resolve("objects").resolve("pack");
+        Files.createDirectories(packDir);
+        Files.createDirectories(gitDir.resolve("refs").resolve("heads"));
+        Files.createDirectories(gitDir.resolve("refs").resolve("tags"));
+
+        List<RemoteRef> refs;
+        try (HttpTransport transport = HttpTransport.connect(url)) {
+            refs = transport.lsRefs(List.of("HEAD", "refs/heads/", "refs/tags/"));
+            Set<ObjectId> wants = new LinkedHashSet<>();
+            for (RemoteRef ref : refs) wants.add(ref.id());
+            if (!wants.isEmpty()) {
+                try (InputStream pack = transport.fetch(wants)) {
+                    new PackParser(packDir, threads).parse(pack);
+                }
+            }
+        }
+
+        RemoteRef head = null;
+        for (RemoteRef ref : refs) {
+            if (ref.name().equals("HEAD")) head = ref;
+        }
+        String branch = head != null && head.symrefTarget() != null && head.symrefTarget().startsWith("refs/heads/")
+                ? head.symrefTarget().substring("refs/heads/".length())
+                : null;
+        writePackedRefs(gitDir, refs);
+        writeConfig(gitDir, url, branch);
+
+        if (head == null) {
+            write(gitDir.resolve("HEAD"), "ref: refs/heads/main\n");
+            System.err.println("warning: You appear to have cloned an empty repository.");
+            return;
+        }
+        if (branch != null) {
+            write(gitDir.resolve("refs/heads/" + branch), head.id().name() + "\n");
+            write(gitDir.resolve("refs/remotes/" + REMOTE + "/HEAD"), "ref: refs/remotes/" + REMOTE + "/" + branch + "\n");
+            write(gitDir.resolve("HEAD"), "ref: refs/heads/" + branch + "\n");
+        } else {
+            write(gitDir.resolve("HEAD"), head.id().name() + "\n");
+        }
+
+        try (ObjectDatabase db = ObjectDatabase.open(gitDir)) {
+            byte[] tree = Trees.read(db, new RefDatabase(gitDir), "HEAD");
+            new CheckoutTreeCommand().checkout(db, tree, dir, gitDir.resolve("index"), threads);
+        }
+    }
+
+    /**
+     * Branches become {@code refs/remotes/origin/*}; tags keep their names, with the object an
+     * annotated tag peels to on the line after it.
+     */
+    private static void writePackedRefs(Path gitDir, List<RemoteRef> refs) throws IOException {
+        List<RemoteRef> sorted = new ArrayList<>(refs);
+        sorted.sort(Comparator.comparing(CloneCommand::localName));
+        StringBuilder text = new StringBuilder("# pack-refs with: peeled fully-peeled sorted \n");
+        for (RemoteRef ref : sorted) {
+            String local = localName(ref);
+            if (!local.startsWith("refs/")) continue;
+            text.append(ref.id().name()).append(' ').append(local).append('\n');
+            if (ref.peeled() != null) text.append('^').append(ref.peeled().name()).append('\n');
+        }
+        write(gitDir.resolve("packed-refs"), text.toString());
+    }
+
+    private static String localName(RemoteRef ref) {
+        return ref.name().startsWith("refs/heads/")
+                ? "refs/remotes/" + REMOTE + "/" + ref.name().substring("refs/heads/".length())
+                : ref.name();
+    }
+
+    private static void writeConfig(Path gitDir, String url, String branch) throws IOException {
+        StringBuilder text = new StringBuilder()
+                .append("[core]\n")
+                .append("\trepositoryformatversion = 0\n")
+                .append("\tfilemode = true\n")
+                .append("\tbare = false\n")
+                .append("\tlogallrefupdates = true\n")
+                .append("[remote \"").append(REMOTE).append("\"]\n")
+                .append("\turl = ").append(url).append('\n')
+                .append("\tfetch = +refs/heads/*:refs/remotes/").append(REMOTE).append("/*\n");
+        if (branch != null) {
+            text.append("[branch \"").append(branch).append("\"]\n")
+                    .append("\tremote = ").append(REMOTE).append('\n')
+                    .append("\tmerge = refs/heads/").append(branch).append('\n');
+        }
+        write(gitDir.resolve("config"), text.toString());
+    }
+
+    private static void write(Path file, String text) throws IOException {
+        Files.createDirectories(file.getParent());
+        Files.writeString(file, text, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * The directory git would pick: the last path component, without {@code .git}.
+     */
+    private static String directoryName(String url) {
+        String path = url;
+        while (path.endsWith("/")) path = path.substring(0, path.length() - 1);
+        if (path.endsWith("/.git")) path = path.substring(0, path.length() - "/.git".length());
+        path = path.substring(Math.max(path.lastIndexOf('/'), path.lastIndexOf(':')) + 1);
+        if (path.endsWith(".git")) path = path.substring(0, path.length() - ".git".length());
+        if (path.isEmpty()) {
+            System.err.println("fatal: cannot guess a directory name from '" + url + "'; please specify one");
+            throw new ExitException(128);
+        }
+        return path;
+    }
+
+    private static boolean isEmptyDirectory(Path dir) throws IOException {
+        if (!Files.isDirectory(dir)) return false;
+        try (DirectoryStream<Path> entries = Files.newDirectoryStream(dir)) {
+            return !entries.iterator().hasNext();
+        }
+    }
+
+    /**
+     * Removes what a failed clone wrote; a directory that existed before is emptied but kept.
+     */
+    private static void delete(Path dir, boolean keepRoot) {
+        if (!Files.exists(dir)) return;
+        try (Stream<Path> paths = Files.walk(dir)) {
+            for (Path path : (Iterable<Path>) paths.sorted(Comparator.reverseOrder())::iterator) {
+                if (!keepRoot || !path.equals(dir)) Files.deleteIfExists(path);
+            }
+        } catch (IOException e) {
+            System.err.println("warning: could not remove '" + dir + "': " + e.getMessage());
+        }
+    }
+
+    private static void usage() {
+        System.err.println("usage: git clone [--threads=<n>] <repo> [<dir>]");
+        throw new ExitException(129);
+    }
+}
@@ -0,0 +1,62 @@
+package command;
+
+import object.CommitGraphWriter;
+import object.ObjectDatabase;
+import object.ObjectId;
+import object.ObjectLoader;
+import object.ObjectType;
+import refs.RefDatabase;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+public class CommitGraphCommand implements Command {
+    @Override
+    public void execute(String[] args) throws Exception {
+        boolean reachable = false;
+        if (args.length == 0 || !"write".equals(args[0])) usage();
+        for (int i = 1; i < args.length; i++) {
+            if ("--reachable".equals(args[i])) {
+                reachable = true;
+            } else {
+                usage();
+            }
+        }
+
+        try (ObjectDatabase db = ObjectDatabase.open(Session.current().gitDir())) {
+            int count = reachable ? writeReachable(db) : new CommitGraphWriter(db).write(allCommits(db));
+            System.err.println("Wrote commit-graph with " + count + " commits");
+        } catch (IOException e) {
+            System.err.println("fatal: " + e.getMessage());
+            throw new ExitException(128);
+        }
+    }
+
+    /**
+     * Writes the graph for everything reachable from HEAD and the refs, as gc does.
+     */
+    static int writeReachable(ObjectDatabase db) throws IOException {
+        RefDatabase refs = new RefDatabase(db.objectsDirectory().getParent());
+        List<ObjectId> tips = new ArrayList<>(refs.refs().values());
+        ObjectId head = refs.read("HEAD");
+        if (head != null) tips.add(head);
+        return new CommitGraphWriter(db).write(tips);
+    }
+
+    private static List<ObjectId> allCommits(ObjectDatabase db) throws IOException {
+        List<ObjectId> commits = new ArrayList<>();
+        List<ObjectId> ids = new ArrayList<>(db.listPackedObjects());
+        ids.addAll(db.listLooseObjects());
+        for (ObjectId id : ids) {
+            ObjectLoader loader = db.open(id);
+            if (loader != null && loader.type() == ObjectType.COMMIT) commits.add(id);
+        }
+        return commits;
+    }
+
+    private static void usage() {
+        System.err.println("usage: git commit-graph write [--reachable]");
+        throw new ExitException(129);
+    }
+}
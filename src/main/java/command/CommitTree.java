@@ -1,8 +1,13 @@
 package command;
 
-import java.io.ByteArrayOutputStream;
-import java.security.MessageDigest;
-import java.util.zip.Deflater;
+import config.Config;
+import object.Compression;
+import object.LooseObjectWriter;
+import object.ObjectDatabase;
+import object.ObjectId;
+import object.ObjectLoader;
+import object.ObjectType;
+
 import java.util.*;
 import java.nio.file.*;
 import java.nio.charset.StandardCharsets;
@@ -13,7 +18,7 @@ public class CommitTree implements Command {
     public void execute(String[] args) throws Exception {
         if (args.length < 3) {
             System.err.println("usage: git commit-tree <tree> -m <message> [-p <parent>...]");
-            System.exit(1);
+            throw new ExitException(1);
         }
 
         String treeSha = args[0];
@@ -24,32 +29,53 @@ public class CommitTree implements Command {
             if ("-p".equals(args[i])) {
                 if (i + 1 >= args.length) {
                     System.err.println("fatal: -p requires a parent commit");
-                    System.exit(1);
+                    throw new ExitException(1);
                 }
                 parentShas.add(args[++i]);
             } else if ("-m".equals(args[i])) {
                 if (i + 1 >= args.length) {
                     System.err.println("fatal: -m requires a message");
-                    System.exit(1);
+                    throw new ExitException(1);
                 }
                 message = args[++i];
             } else {
                 System.err.println("fatal: unknown option: " + args[i]);
-                System.exit(1);
+                throw new ExitException(1);
             }
         }
 
         if (message == null || message.isEmpty()) {
             System.err.println("fatal: commit message required");
-            System.exit(1);
+            throw new ExitException(1);
+        }
+
+        // Refuse to record a commit that points at objects we cannot find, loose or packed.
+        // The parsed ids are what gets written, so the commit always holds git's lower-case form.
+        ObjectId treeId = ObjectId.tryParse(treeSha);
+        List<ObjectId> parentIds = new ArrayList<>();
+        try (ObjectDatabase db = ObjectDatabase.open(Session.current().gitDir())) {
+            ObjectLoader tree = treeId == null ? null : db.open(treeId);
+            if (tree == null || tree.type() != ObjectType.TREE) {
+                System.err.println("fatal: not a valid tree object: " + treeSha);
+                throw new ExitException(128);
+            }
+            for (String parent : parentShas) {
+                ObjectId parentId = ObjectId.tryParse(parent);
+                ObjectLoader commit = parentId == null ? null : db.open(parentId);
+                if (commit == null || commit.type() != ObjectType.COMMIT) {
+                    System.err.println("fatal: not a valid commit object: " + parent);
+                    throw new ExitException(128);
+                }
+                parentIds.add(parentId);
+            }
         }
 
         // Build commit content
         StringBuilder content = new StringBuilder();
-        content.append("tree ").append(treeSha).append("\n");
+        content.append("tree ").append(treeId.name()).append("\n");
 
-        for (String parent : parentShas) {
-            content.append("parent ").append(parent).append("\n");
+        for (ObjectId parent : parentIds) {
+            content.append("parent ").append(parent.name()).append("\n");
         }
 
         // Author/committer info (CodeCrafters accepts any valid format)
@@ -61,50 +87,12 @@ public class CommitTree implements Command {
 
         byte[] commitData = content.toString().getBytes(StandardCharsets.UTF_8);
 
-        // Header: "commit <size>\0"
-        String header = "commit " + commitData.length + "\0";
-        byte[] fullObject = concat(header.getBytes(StandardCharsets.UTF_8), commitData);
-
-        // Compute SHA-1
-        MessageDigest sha1 = MessageDigest.getInstance("SHA-1");
-        byte[] shaBytes = sha1.digest(fullObject);
-        String commitSha = toHex(shaBytes);
-
-        // Write compressed object
-        String dir = commitSha.substring(0, 2);
-        String file = commitSha.substring(2);
-        Path objPath = Path.of(".git/objects", dir, file);
-        Files.createDirectories(objPath.getParent());
-
-        Deflater deflater = new Deflater();
-        deflater.setInput(fullObject);
-        deflater.finish();
-
-        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
-        byte[] buf = new byte[1024];
-        while (!deflater.finished()) {
-            int count = deflater.deflate(buf);
-            compressed.write(buf, 0, count);
+        ObjectId commitId;
+        try (LooseObjectWriter writer = LooseObjectWriter.bulk(Session.current().gitDir().resolve("objects"), Compression.loose(Config.load(Session.current().gitDir())))) {
+            commitId = writer.insert(ObjectType.COMMIT, commitData);
         }
-        deflater.end();
-
-        Files.write(objPath, compressed.toByteArray());
 
         // Print the new commit SHA (no newline!)
-        System.out.print(commitSha);
-    }
-    private static byte[] concat(byte[] a, byte[] b) {
-        byte[] result = new byte[a.length + b.length];
-        System.arraycopy(a, 0, result, 0, a.length);
-        System.arraycopy(b, 0, result, a.length, b.length);
-        return result;
-    }
-
-    private static String toHex(byte[] bytes) {
-        StringBuilder sb = new StringBuilder();
-        for (byte b : bytes) {
-            sb.append(String.format("%02x", b & 0xFF));
-        }
-        return sb.toString();
+        System.out.print(commitId.name());
     }
 }
@@ -0,0 +1,197 @@
+package command;
+
+import object.MissingObjectException;
+import object.ObjectDatabase;
+import object.ObjectId;
+import object.ObjectLoader;
+import object.TreeIterator;
+import refs.RefDatabase;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+public class DiffTreeCommand implements Command {
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final byte[] EMPTY_TREE = new byte[0];
+
+    private boolean recursive;
+    private boolean nameOnly;
+    private boolean nameStatus;
+
+    private ObjectDatabase db;
+    private OutputStream out;
+    // The current entry's path; subtree prefixes stay in place while their entries are compared.
+    private byte[] path = new byte[256];
+    private byte[] line = new byte[512];
+
+    @Override
+    public void execute(String[] args) throws Exception {
+        String[] trees = new String[2];
+        int count = 0;
+
+        for (String arg : args) {
+            switch (arg) {
+                case "-r" -> recursive = true;
+                case "--name-only" -> nameOnly = true;
+                case "--name-status" -> nameStatus = true;
+                default -> {
+                    if (arg.startsWith("-") || count == 2) usage();
+                    trees[count++] = arg;
+                }
+            }
+        }
+        if (count != 2) usage();
+        if (nameOnly && nameStatus) {
+            System.err.println("fatal: --name-only and --name-status are mutually exclusive");
+            throw new ExitException(128);
+        }
+
+        Path gitDir = Session.current().gitDir();
+        out = new BufferedOutputStream(Session.current().stdout(), BUFFER_SIZE);
+        try (ObjectDatabase db = ObjectDatabase.open(gitDir)) {
+            this.db = db;
+            RefDatabase refs = new RefDatabase(gitDir);
+            byte[] a = Trees.read(db, refs, trees[0]);
+            byte[] b = Trees.read(db, refs, trees[1]);
+            diff(a, b, 0);
+        } catch (IOException e) {
+            out.flush();
+            System.err.println("fatal: " + e.getMessage());
+            throw new ExitException(128);
+        } finally {
+            out.flush();
+        }
+    }
+
+    /**
+     * Merge-walks two trees whose entries' paths start with the first {@code prefixLength} bytes
+     * of {@link #path}. Both are sorted in git's tree order, so one pass pairs up entries of the
+     * same name. An entry with the same mode and id on both sides is skipped without opening it,
+     * so an unchanged subtree costs one comparison however large it is.
+     */
+    private void diff(byte[] treeA, byte[] treeB, int prefixLength) throws IOException {
+        TreeIterator a = new TreeIterator(treeA);
+        TreeIterator b = new TreeIterator(treeB);
+        boolean hasA = a.next();
+        boolean hasB = b.next();
+        while (hasA || hasB) {
+            int cmp = !hasA ? 1 : !hasB ? -1 : TreeIterator.compare(a, b);
+            if (cmp < 0) {
+                removed(a, prefixLength);
+                hasA = a.next();
+            } else if (cmp > 0) {
+                added(b, prefixLength);
+                hasB = b.next();
+            } else {
+                if (!a.sameEntry(b)) changed(a, b, prefixLength);
+                hasA = a.next();
+                hasB = b.next();
+            }
+        }
+    }
+
+    private void removed(TreeIterator a, int prefixLength) throws IOException {
+        int pathLength = setPath(a, prefixLength);
+        if (recursive && a.isTree()) {
+            path[pathLength] = '/';
+            diff(read(a), EMPTY_TREE, pathLength + 1);
+        } else {
+            print(a, null, 'D', pathLength);
+        }
+    }
+
+    private void added(TreeIterator b, int prefixLength) throws IOException {
+        int pathLength = setPath(b, prefixLength);
+        if (recursive && b.isTree()) {
+            path[pathLength] = '/';
+            diff(EMPTY_TREE, read(b), pathLength + 1);
+        } else {
+            print(null, b, 'A', pathLength);
+        }
+    }
+
+    /**
+     * Two entries of the same name that differ; trees always pair with trees, since git orders a
+     * subtree as if its name ended in '/'.
+     */
+    private void changed(TreeIterator a, TreeIterator b, int prefixLength) throws IOException {
+        int pathLength = setPath(a, prefixLength);
+        if (recursive && a.isTree()) {
+            path[pathLength] = '/';
+            diff(read(a), read(b), pathLength + 1);
+        } else {
+            // A file turned into a symlink or submodule, or back, is a change of type.
+            boolean sameType = (a.mode() & TreeIterator.MODE_TYPE_MASK) == (b.mode() & TreeIterator.MODE_TYPE_MASK);
+            print(a, b, sameType ? 'M' : 'T', pathLength);
+        }
+    }
+
+    private int setPath(TreeIterator it, int prefixLength) {
+        int pathLength = prefixLength + it.nameLength();
+        if (pathLength + 1 > path.length) path = Arrays.copyOf(path, Math.max(path.length * 2, pathLength + 1));
+        it.copyNameTo(path, prefixLength);
+        return pathLength;
+    }
+
+    private byte[] read(TreeIterator it) throws IOException {
+        ObjectId id = it.id();
+        ObjectLoader tree = db.open(id);
+        if (tree == null) throw new MissingObjectException(id);
+        return tree.getBytes();
+    }
+
+    /**
+     * Formats one line of git's raw output, or just the status and path, into {@link #line}; a
+     * missing side is printed as mode 000000 and the all-zero id.
+     */
+    private void print(TreeIterator a, TreeIterator b, char status, int pathLength) throws IOException {
+        int max = 1 + 2 * (6 + 1 + ObjectId.HEX_LENGTH + 1) + 2 + pathLength + 1;
+        if (max > line.length) line = Arrays.copyOf(line, Math.max(line.length * 2, max));
+        int p = 0;
+        if (!nameOnly && !nameStatus) {
+            line[p++] = ':';
+            p = putMode(a, p);
+            line[p++] = ' ';
+            p = putMode(b, p);
+            line[p++] = ' ';
+            p = putId(a, p);
+            line[p++] = ' ';
+            p = putId(b, p);
+            line[p++] = ' ';
+        }
+        if (!nameOnly) {
+            line[p++] = (byte) status;
+            line[p++] = '\t';
+        }
+        System.arraycopy(path, 0, line, p, pathLength);
+        p += pathLength;
+        line[p++] = '\n';
+        out.write(line, 0, p);
+    }
+
+    private int putMode(TreeIterator it, int p) {
+        if (it == null) {
+            Arrays.fill(line, p, p + 6, (byte) '0');
+        } else {
+            it.copyModeTo(line, p);
+        }
+        return p + 6;
+    }
+
+    private int putId(TreeIterator it, int p) {
+        if (it == null) {
+            Arrays.fill(line, p, p + ObjectId.HEX_LENGTH, (byte) '0');
+        } else {
+            it.copyHexIdTo(line, p);
+        }
+        return p + ObjectId.HEX_LENGTH;
+    }
+
+    private static void usage() {
+        System.err.println("usage: git diff-tree [-r] [--name-only | --name-status] <tree-ish> <tree-ish>");
+        throw new ExitException(129);
+    }
+}
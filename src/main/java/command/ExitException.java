@@ -0,0 +1,18 @@
+package command;
+
+/**
+ * Ends a command with an exit status, after it has printed its own message. {@code Main} turns
+ * it into the process exit status; the server sends it back to its client and keeps running.
+ */
+public class ExitException extends RuntimeException {
+    private final int status;
+
+    public ExitException(int status) {
+        super("exit status " + status, null, false, false);
+        this.status = status;
+    }
+
+    public int status() {
+        return status;
+    }
+}
@@ -0,0 +1,298 @@
+package command;
+
+import object.Commit;
+import object.LooseObjectWriter;
+import object.ObjectDatabase;
+import object.ObjectId;
+import object.ObjectIdMap;
+import object.ObjectLoader;
+import object.ObjectType;
+import object.Tag;
+import object.TreeIterator;
+import refs.RefDatabase;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+public class FsckCommand implements Command {
+    // Exit status bits, as in git.
+    private static final int ERROR_OBJECT = 0x01;
+    private static final int ERROR_REACHABLE = 0x02;
+    private static final int ERROR_PACK = 0x04;
+    private static final int ERROR_REFS = 0x08;
+
+    private static final int PACK_SLICE = 4096;
+
+    private boolean connectivityOnly;
+
+    @Override
+    public void execute(String[] args) throws Exception {
+        int threads = Runtime.getRuntime().availableProcessors();
+        for (String arg : args) {
+            if ("--connectivity-only".equals(arg)) {
+                connectivityOnly = true;
+            } else if (arg.startsWith("--threads=")) {
+                try {
+                    threads = Integer.parseInt(arg.substring("--threads=".length()));
+                } catch (NumberFormatException e) {
+                    usage();
+                }
+            } else {
+                usage();
+            }
+        }
+
+        long start = System.nanoTime();
+        Path gitDir = Session.current().gitDir();
+        int errors = 0;
+        try (ObjectDatabase db = ObjectDatabase.open(gitDir)) {
+            List<Scan> scans = scan(db, threads);
+
+            // Merge what each task saw, in task order so the report is the same from run to run.
+            ObjectIdMap<ObjectType> present = new ObjectIdMap<>();
+            ObjectIdMap<ObjectType> referenced = new ObjectIdMap<>();
+            long loose = 0;
+            long packed = 0;
+            long bytes = 0;
+            for (Scan scan : scans) {
+                for (String error : scan.errors) System.err.println(error);
+                errors |= scan.errors.isEmpty() ? 0 : scan.errorBits;
+                scan.present.forEach(present::put);
+                scan.referenced.forEach((id, type) -> reference(referenced, id, type));
+                loose += scan.loose;
+                packed += scan.packed;
+                bytes += scan.bytes;
+            }
+
+            List<String> missing = new ArrayList<>();
+            referenced.forEach((id, type) -> {
+                if (!present.containsKey(id)) missing.add("missing " + (type == null ? "object" : type.typeName()) + " " + id.name());
+            });
+            missing.sort(null);
+            for (String line : missing) System.out.println(line);
+            if (!missing.isEmpty()) errors |= ERROR_REACHABLE;
+            errors |= checkRefs(new RefDatabase(gitDir), present);
+
+            double seconds = (System.nanoTime() - start) / 1e9;
+            System.err.printf(Locale.ROOT, "Checked %d objects (%d loose, %d packed, %d packs) in %.2f s: %.1f MiB%s, %.1f MiB/s%n",
+                    loose + packed, loose, packed, db.packFiles().size(), seconds, bytes / 1048576.0,
+                    connectivityOnly ? " of trees, commits and tags read" : " inflated and hashed",
+                    seconds > 0 ? bytes / 1048576.0 / seconds : 0);
+        }
+        if (errors != 0) throw new ExitException(errors);
+    }
+
+    /**
+     * Checks every object on a pool sized to the CPUs: one task per fan-out directory, one for
+     * each pack's checksum and one for each slice of a pack's objects.
+     */
+    private List<Scan> scan(ObjectDatabase db, int threads) throws IOException {
+        List<Callable<Scan>> tasks = new ArrayList<>();
+        for (int prefix = 0; prefix < 256; prefix++) {
+            int p = prefix;
+            tasks.add(() -> scanLoose(db, p));
+        }
+        for (Path pack : db.packFiles()) {
+            tasks.add(() -> verifyPack(db, pack));
+            List<ObjectId> ids = db.listPackedObjects(pack);
+            for (int from = 0; from < ids.size(); from += PACK_SLICE) {
+                List<ObjectId> slice = ids.subList(from, Math.min(ids.size(), from + PACK_SLICE));
+                tasks.add(() -> scanPacked(db, pack, slice));
+            }
+        }
+
+        ExecutorService pool = Executors.newFixedThreadPool(Math.max(1, threads));
+        try {
+            List<Scan> scans = new ArrayList<>(tasks.size());
+            for (Future<Scan> f : pool.invokeAll(tasks)) scans.add(f.get());
+            return scans;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("fsck interrupted", e);
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof IOException io ? io : new IOException(e.getCause());
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    private Scan scanLoose(ObjectDatabase db, int prefix) throws IOException {
+        Scan scan = new Scan(ERROR_OBJECT);
+        List<ObjectId> ids = new ArrayList<>();
+        db.listLooseObjects(prefix, ids);
+        for (ObjectId id : ids) {
+            scan.loose++;
+            check(id, db.openLoose(id), db.loosePath(id).toString(), scan);
+        }
+        return scan;
+    }
+
+    private Scan scanPacked(ObjectDatabase db, Path pack, List<ObjectId> ids) throws IOException {
+        Scan scan = new Scan(ERROR_PACK);
+        for (ObjectId id : ids) {
+            scan.packed++;
+            check(id, db.openPacked(pack, id), pack.getFileName().toString(), scan);
+        }
+        return scan;
+    }
+
+    private Scan verifyPack(ObjectDatabase db, Path pack) {
+        Scan scan = new Scan(ERROR_PACK);
+        try {
+            db.verifyPack(pack);
+        } catch (IOException e) {
+            scan.errors.add("error: " + e.getMessage());
+        }
+        return scan;
+    }
+
+    /**
+     * Reads one stored object. Unless only connectivity is checked, the payload is inflated in
+     * full, its length checked against the header and its SHA-1 against the name; blobs are
+     * streamed rather than held. Trees, commits and tags are parsed for the objects they name.
+     */
+    private void check(ObjectId id, ObjectLoader loader, String where, Scan scan) {
+        ObjectType type = null;
+        try {
+            type = loader.type();
+            long size = loader.size();
+            byte[] body = null;
+            if (type != ObjectType.BLOB) {
+                // Read to the end of the stream, not just to the header size, to catch trailing data.
+                try (InputStream in = loader.openStream()) {
+                    body = in.readAllBytes();
+                }
+                if (body.length != size) throw new IOException("object is " + body.length + " bytes but its header says " + size);
+                scan.bytes += body.length;
+                if (!connectivityOnly && !LooseObjectWriter.hash(type, body).equals(id)) {
+                    scan.errors.add("error: hash mismatch for " + id.name() + " in " + where);
+                }
+            } else if (!connectivityOnly) {
+                try (InputStream in = loader.openStream()) {
+                    if (!LooseObjectWriter.hash(type, size, in).equals(id)) {
+                        scan.errors.add("error: hash mismatch for " + id.name() + " in " + where);
+                    }
+                }
+                scan.bytes += size;
+            }
+            scan.present.put(id, type);
+            if (body != null) parse(id, type, body, scan);
+        } catch (IOException | RuntimeException e) {
+            // Still present: what refers to it is not missing it, only has it corrupt.
+            scan.present.put(id, type);
+            scan.errors.add("error: " + (type == null ? "object" : type.typeName()) + " " + id.name()
+                    + ": corrupt in " + where + ": " + e.getMessage());
+        }
+    }
+
+    private static void parse(ObjectId id, ObjectType type, byte[] body, Scan scan) throws IOException {
+        switch (type) {
+            case TREE -> parseTree(id, body, scan);
+            case COMMIT -> {
+                Commit commit = Commit.parse(body);
+                scan.referenced.put(commit.tree(), ObjectType.TREE);
+                for (ObjectId parent : commit.parents()) scan.referenced.put(parent, ObjectType.COMMIT);
+            }
+            case TAG -> reference(scan.referenced, Tag.target(body), null);
+            default -> { }
+        }
+    }
+
+    /**
+     * Checks that entries have sane names and modes and come in git's order, and records the
+     * objects they name; submodule commits live in other repositories and are not followed.
+     */
+    private static void parseTree(ObjectId id, byte[] body, Scan scan) throws IOException {
+        TreeIterator it = new TreeIterator(body);
+        TreeIterator previous = new TreeIterator(body);
+        boolean first = true;
+        while (it.next()) {
+            String problem = null;
+            int length = it.nameLength();
+            byte[] name = it.buffer();
+            int at = it.nameOffset();
+            if (length == 0) {
+                problem = "empty filename";
+            } else if ((length == 1 && name[at] == '.') || (length == 2 && name[at] == '.' && name[at + 1] == '.')) {
+                problem = "filename '" + it.name() + "'";
+            } else {
+                for (int i = at; i < at + length; i++) {
+                    if (name[i] == '/') problem = "filename contains '/': " + it.name();
+                }
+            }
+            switch (it.mode()) {
+                case TreeIterator.MODE_TREE, TreeIterator.MODE_FILE, TreeIterator.MODE_EXECUTABLE,
+                     TreeIterator.MODE_SYMLINK, TreeIterator.MODE_GITLINK -> { }
+                default -> problem = "bad mode " + Integer.toOctalString(it.mode()) + " for " + it.name();
+            }
+            if (!first) {
+                previous.next();
+                int cmp = TreeIterator.compare(previous, it);
+                if (cmp == 0) problem = "duplicate entry " + it.name();
+                else if (cmp > 0) problem = "entries not sorted at " + it.name();
+            }
+            first = false;
+            if (problem != null) scan.errors.add("error: tree " + id.name() + ": " + problem);
+            if (it.mode() != TreeIterator.MODE_GITLINK) scan.referenced.put(it.id(), it.type());
+        }
+    }
+
+    /**
+     * Records a reference; a tag does not say what it points at, so its null type never
+     * replaces one a tree or commit gave.
+     */
+    private static void reference(ObjectIdMap<ObjectType> referenced, ObjectId id, ObjectType type) {
+        if (type != null || !referenced.containsKey(id)) referenced.put(id, type);
+    }
+
+    /**
+     * HEAD and every ref must name an object that exists.
+     */
+    private static int checkRefs(RefDatabase refs, ObjectIdMap<ObjectType> present) throws IOException {
+        int errors = 0;
+        ObjectId head = refs.read("HEAD");
+        if (head != null && !present.containsKey(head)) {
+            System.err.println("error: HEAD: invalid sha1 pointer " + head.name());
+            errors = ERROR_REFS;
+        }
+        for (Map.Entry<String, ObjectId> ref : refs.refs().entrySet()) {
+            if (!present.containsKey(ref.getValue())) {
+                System.err.println("error: " + ref.getKey() + ": invalid sha1 pointer " + ref.getValue().name());
+                errors = ERROR_REFS;
+            }
+        }
+        return errors;
+    }
+
+    private static void usage() {
+        System.err.println("usage: git fsck [--connectivity-only] [--threads=<n>]");
+        throw new ExitException(129);
+    }
+
+    /**
+     * What one task found; tasks share nothing and are merged once all are done.
+     */
+    private static final class Scan {
+        final int errorBits;
+        final ObjectIdMap<ObjectType> present = new ObjectIdMap<>();
+        final ObjectIdMap<ObjectType> referenced = new ObjectIdMap<>();
+        final List<String> errors = new ArrayList<>();
+        long loose;
+        long packed;
+        long bytes;
+
+        Scan(int errorBits) {
+            this.errorBits = errorBits;
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package command;
+
+import config.Config;
+import object.Compression;
+import object.ObjectDatabase;
+import object.ObjectId;
+import object.PackWriter;
+
+import java.io.IOException;
+import java.nio.file.DirectoryNotEmptyException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.List;
+
+public class GcCommand implements Command {
+    @Override
+    public void execute(String[] args) throws Exception {
+        int window = 10;
+        int depth = 50;
+        int threads = Runtime.getRuntime().availableProcessors();
+        boolean aggressive = false;
+
+        for (String arg : args) {
+            if (arg.startsWith("--window=")) {
+                window = number(arg.substring("--window=".length()));
+            } else if (arg.startsWith("--depth=")) {
+                depth = number(arg.substring("--depth=".length()));
+            } else if (arg.startsWith("--threads=")) {
+                threads = number(arg.substring("--threads=".length()));
+            } else if ("--aggressive".equals(arg)) {
+                window = 250;
+                depth = 50;
+                aggressive = true;
+            } else {
+                usage();
+            }
+        }
+
+        try (ObjectDatabase db = ObjectDatabase.open(Session.current().gitDir())) {
+            Config config = Config.load(Session.current().gitDir());
+            List<ObjectId> loose = db.listLooseObjects();
+            List<Path> oldPacks = db.packFiles();
+            if (!loose.isEmpty() || oldPacks.size() > 1) repack(db, config, loose, oldPacks, window, depth, threads, aggressive);
+            // Later walks read parents and generations from the graph instead of inflating commits.
+            if (config.getBoolean("gc", null, "writeCommitGraph", true)) CommitGraphCommand.writeReachable(db);
+        }
+    }
+
+    private static void repack(ObjectDatabase db, Config config, List<ObjectId> loose, List<Path> oldPacks,
+                               int window, int depth, int threads, boolean aggressive) throws IOException {
+        // Repack everything into one pack; the writer verifies it before anything is removed.
+        // An aggressive gc is for archiving, so it also spends the CPU on the smallest zlib output.
+        Compression compression = aggressive ? Compression.BEST : Compression.pack(config);
+        PackWriter writer = new PackWriter(db, window, depth, threads, compression);
+        for (ObjectId id : loose) writer.add(id);
+        for (ObjectId id : db.listPackedObjects()) writer.add(id);
+        Path packDir = db.objectsDirectory().resolve("pack");
+        String name = writer.write(packDir.resolve("pack"));
+        System.err.println("Total " + writer.objectCount() + " (delta " + writer.deltaCount() + ")");
+
+        Path newPack = packDir.resolve("pack-" + name + ".pack");
+        for (Path pack : oldPacks) {
+            if (pack.equals(newPack)) continue;
+            String base = pack.getFileName().toString().replaceFirst("\\.pack$", "");
+            Files.deleteIfExists(pack.resolveSibling(base + ".idx"));
+            Files.deleteIfExists(pack);
+        }
+        for (ObjectId id : loose) {
+            Files.deleteIfExists(db.loosePath(id));
+        }
+        pruneEmptyFanoutDirectories(db.objectsDirectory());
+    }
+
+    private static void pruneEmptyFanoutDirectories(Path objects) throws IOException {
+        try (DirectoryStream<Path> dirs = Files.newDirectoryStream(objects, "[0-9a-f][0-9a-f]")) {
+            for (Path dir : dirs) {
+                try (DirectoryStream<Path> files = Files.newDirectoryStream(dir)) {
+                    if (files.iterator().hasNext()) continue;
+                }
+                try {
+                    Files.delete(dir);
+                } catch (NoSuchFileException | DirectoryNotEmptyException e) {
+                    // Another writer got there first.
+                }
+            }
+        }
+    }
+
+    /**
+     * A non-negative option value; anything else is a usage error.
+     */
+    private static int number(String value) {
+        try {
+            int n = Integer.parseInt(value);
+            if (n >= 0) return n;
+        } catch (NumberFormatException e) {
+            // Reported below.
+        }
+        usage();
+        return 0;
+    }
+
+    private static void usage() {
+        System.err.println("usage: git gc [--aggressive] [--window=<n>] [--depth=<n>] [--threads=<n>]");
+        throw new ExitException(129);
+    }
+}
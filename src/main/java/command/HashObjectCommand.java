@@ -1,110 +1,175 @@
 package command;
 
-import java.io.ByteArrayOutputStream;
+import config.Config;
+import object.Compression;
+import object.LooseObjectWriter;
+import object.ObjectId;
+import object.ObjectType;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.security.MessageDigest;
-import java.util.zip.Deflater;
+import java.util.ArrayDeque;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 public class HashObjectCommand implements Command {
     @Override
     public void execute(String[] args) throws Exception {
         boolean writeToRepo = false;
+        boolean stdinPaths = false;
         String filePath = null;
 
-        int i = 1;
-        while (i < args.length) {
-            if ("-w".equals(args[i])) {
+        for (String arg : args) {
+            if ("-w".equals(arg)) {
                 writeToRepo = true;
-                i++;
+            } else if ("--stdin-paths".equals(arg)) {
+                stdinPaths = true;
             } else {
-                filePath = args[i];
-                i++;
+                filePath = arg;
             }
         }
 
+        Path gitDir = Session.current().gitDir();
+        if (stdinPaths) {
+            if (filePath != null) {
+                System.err.println("fatal: Can't specify files with --stdin-paths");
+                throw new ExitException(129);
+            }
+            hashStdinPaths(gitDir, writeToRepo);
+            return;
+        }
+
         if (filePath == null) {
             System.err.print("Usage: git hash-object [-w] <file>");
-            System.exit(1);
+            throw new ExitException(1);
         }
 
         try {
-            byte[] fileContent = Files.readAllBytes(Path.of(filePath));
-
-//            String header = "blob " + fileContent.length + "\0";
-//            byte[] headerBytes = header.getBytes(StandardCharsets.UTF_8);
-//
-//            byte[] fullContent = new byte[headerBytes.length + fileContent.length];
-//            System.arraycopy(headerBytes, 0, fullContent, 0, headerBytes.length);
-//            System.arraycopy(fileContent, 0, fullContent, headerBytes.length, fileContent.length);
-
-            String headerText = "blob " + fileContent.length;
-            byte[] headerBytes = headerText.getBytes(StandardCharsets.UTF_8);
-
-            byte[] fullContent = new byte[headerBytes.length + 1 + fileContent.length];
-            System.arraycopy(headerBytes, 0, fullContent, 0, headerBytes.length);
-            fullContent[headerBytes.length] = 0;  // ← THIS IS THE NULL BYTE
-            System.arraycopy(fileContent, 0, fullContent, headerBytes.length + 1, fileContent.length);
-
-            MessageDigest sha1 = MessageDigest.getInstance("SHA-1");
-            byte[] hashBytes = sha1.digest(fullContent);
-            StringBuilder hashHex = new StringBuilder();
-
-            for (byte b : hashBytes) {
-                hashHex.append(String.format("%02x", b));
-            }
-
-            String sha = hashHex.toString();
-
-//            if (writeToRepo) {
-//                String dir = sha.substring(0, 2);
-//                String file = sha.substring(2);
-//                Path objectDir = Path.of(".git/objects", dir);
-//                Path objectFile = objectDir.resolve(file);
-//
-//                Files.createDirectories(objectDir);
-//
-//                Deflater deflater = new Deflater();
-//                deflater.setInput(fullContent);
-//                deflater.finish();
-//
-//                ByteArrayOutputStream compressOut = new ByteArrayOutputStream();
-//                byte[] buffer = new byte[2048];
-//
-//                while (!deflater.finished()) {
-//                    int count = deflater.deflate(buffer);
-//                    compressOut.write(buffer, 0, count);
-//                }
-//
-//                deflater.end();
-//
-//                Files.write(objectFile, compressOut.toByteArray());
-//            }
+            // Both paths stream the file in chunks, so memory use does not depend on its size.
+            Path file = Session.current().resolve(filePath);
+            ObjectId id;
             if (writeToRepo) {
-                Path objectPath = Path.of(".git/objects", sha.substring(0,2), sha.substring(2));
-                Files.createDirectories(objectPath.getParent());
+                try (LooseObjectWriter writer = LooseObjectWriter.bulk(gitDir.resolve("objects"), Compression.loose(Config.load(gitDir)))) {
+                    id = writer.insert(ObjectType.BLOB, file);
+                }
+            } else {
+                id = LooseObjectWriter.hash(ObjectType.BLOB, file);
+            }
+            System.out.print(id.name());
+        } catch (Exception e) {
+            System.err.print("Fatal: could not hash object");
+            throw new ExitException(1);
+        }
+    }
 
-                Deflater deflater = new Deflater();
-                deflater.setInput(fullContent);
-                deflater.finish();
+    /**
+     * A path's progress through the pipeline: its content once read, its id once hashed, and
+     * its zlib-compressed loose form if it still has to be written.
+     */
+    private record Blob(ObjectId id, byte[] content, byte[] compressed) {
+    }
 
-                ByteArrayOutputStream out = new ByteArrayOutputStream();
-                byte[] buffer = new byte[2048];
-                while (!deflater.finished()) {
-                    int count = deflater.deflate(buffer);
-                    out.write(buffer, 0, count);
+    /**
+     * Hashes every path read from stdin through a read -> hash/deflate -> write pipeline. File
+     * reads and object writes block on I/O, so they run on virtual threads; hashing and deflating
+     * run on a pool sized to the CPUs. Files too large to buffer skip the pipeline and are
+     * streamed on their virtual thread. Results are printed in input order, and at most
+     * {@code window} paths are in flight, which bounds memory. Written objects are synced as one
+     * batch once every path is done.
+     */
+    private static void hashStdinPaths(Path gitDir, boolean writeToRepo) throws IOException {
+        int cpus = Runtime.getRuntime().availableProcessors();
+        int window = cpus * 16;
+        BufferedReader in = new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8));
+        OutputStream out = new BufferedOutputStream(Session.current().stdout(), 64 * 1024);
+        ArrayDeque<CompletableFuture<Blob>> pending = new ArrayDeque<>(window);
+        LooseObjectWriter writer = LooseObjectWriter.bulk(gitDir.resolve("objects"), Compression.loose(Config.load(gitDir)));
+
+        try (writer;
+             ExecutorService io = Executors.newVirtualThreadPerTaskExecutor();
+             ExecutorService cpu = Executors.newFixedThreadPool(cpus)) {
+            String line;
+            while ((line = in.readLine()) != null) {
+                Path path = Session.current().resolve(line);
+                CompletableFuture<Blob> blob = CompletableFuture
+                        .supplyAsync(() -> read(path, writer, writeToRepo), io)
+                        .thenApplyAsync(b -> hash(b, writer, writeToRepo), cpu);
+                if (writeToRepo) {
+                    blob = blob.thenApplyAsync(b -> store(b, writer), io);
+                }
+                pending.addLast(blob);
+                while (pending.size() >= window || (!pending.isEmpty() && pending.peekFirst().isDone())) {
+                    printNext(pending, out);
+                }
+                if (!in.ready()) {
+                    // No more input is waiting, so the caller may be waiting on us: answer every path
+                    // read so far, with its object in place, before blocking on the next line.
+                    while (!pending.isEmpty()) {
+                        printNext(pending, out);
+                    }
+                    writer.flush();
+                    out.flush();
                 }
-                deflater.end();
+            }
+            while (!pending.isEmpty()) {
+                printNext(pending, out);
+            }
+        } finally {
+            out.flush();
+        }
+    }
+
+    private static void printNext(ArrayDeque<CompletableFuture<Blob>> pending, OutputStream out) throws IOException {
+        try {
+            Blob blob = pending.removeFirst().join();
+            byte[] line = new byte[ObjectId.HEX_LENGTH + 1];
+            blob.id.copyHexTo(line, 0);
+            line[ObjectId.HEX_LENGTH] = '\n';
+            out.write(line);
+        } catch (CompletionException e) {
+            out.flush();
+            System.err.println("fatal: " + e.getCause().getMessage());
+            throw new ExitException(128);
+        }
+    }
 
-                Files.write(objectPath, out.toByteArray());
+    private static Blob read(Path path, LooseObjectWriter writer, boolean writeToRepo) {
+        try {
+            if (Files.size(path) > LooseObjectWriter.STREAM_THRESHOLD) {
+                ObjectId id = writeToRepo
+                        ? writer.insert(ObjectType.BLOB, path)
+                        : LooseObjectWriter.hash(ObjectType.BLOB, path);
+                return new Blob(id, null, null);
             }
+            return new Blob(null, Files.readAllBytes(path), null);
+        } catch (IOException e) {
+            throw new UncheckedIOException("could not open '" + path + "' for reading", e);
+        }
+    }
 
-            System.out.print(sha);
+    private static Blob hash(Blob blob, LooseObjectWriter writer, boolean compress) {
+        if (blob.id != null) return blob;
+        ObjectId id = LooseObjectWriter.hash(ObjectType.BLOB, blob.content);
+        if (!compress || writer.has(id)) return new Blob(id, null, null);
+        return new Blob(id, null, writer.deflate(ObjectType.BLOB, blob.content));
+    }
 
-        } catch (Exception e) {
-            System.err.print("Fatal: could not hash object");
-            System.exit(1);
+    private static Blob store(Blob blob, LooseObjectWriter writer) {
+        if (blob.compressed == null) return blob;
+        try {
+            writer.writeCompressed(blob.id, blob.compressed);
+            return blob;
+        } catch (IOException e) {
+            throw new UncheckedIOException("unable to write object " + blob.id, e);
         }
     }
 }
@@ -7,7 +7,7 @@ import java.nio.file.Files;
 public class InitCommand implements Command{
     @Override
     public void execute(String[] args) throws Exception {
-        final File root = new File(".git");
+        final File root = Session.current().gitDir().toFile();
         new File(root, "objects").mkdirs();
         new File(root, "refs").mkdirs();
         final File head = new File(root, "HEAD");
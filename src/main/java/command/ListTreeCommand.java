@@ -1,106 +1,159 @@
 package command;
 
-import java.io.ByteArrayOutputStream;
+import object.MissingObjectException;
+import object.ObjectDatabase;
+import object.ObjectId;
+import object.ObjectLoader;
+import object.ObjectType;
+import object.TreeIterator;
+import refs.RefDatabase;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
 import java.nio.charset.StandardCharsets;
-import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.Arrays;
-import java.util.zip.Inflater;
 
 public class ListTreeCommand implements Command {
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final byte[][] TYPE_NAMES = new byte[ObjectType.values().length][];
+
+    static {
+        for (ObjectType type : ObjectType.values()) {
+            TYPE_NAMES[type.ordinal()] = type.typeName().getBytes(StandardCharsets.US_ASCII);
+        }
+    }
+
+    private boolean nameOnly;
+    private boolean recursive;
+    private boolean showTrees;
+    private boolean longFormat;
+
+    private ObjectDatabase db;
+    private OutputStream out;
+    // The current entry's path; subtree prefixes stay in place while their entries are listed.
+    private byte[] path = new byte[256];
+    private byte[] line = new byte[512];
+
     @Override
     public void execute(String[] args) throws Exception {
-        boolean nameOnly = false;
         String treeSha = null;
 
         for (String arg : args) {
-            if ("--name-only".equals(arg)) {
-                nameOnly = true;
-            } else if (treeSha == null) {
-                treeSha = arg;
-            } else {
-                System.err.println("fatal: too many arguments");
-                System.exit(128);
+            switch (arg) {
+                case "--name-only" -> nameOnly = true;
+                case "-r" -> recursive = true;
+                case "-t" -> showTrees = true;
+                case "-l", "--long" -> longFormat = true;
+                default -> {
+                    if (treeSha == null) {
+                        treeSha = arg;
+                    } else {
+                        System.err.println("fatal: too many arguments");
+                        throw new ExitException(128);
+                    }
+                }
             }
         }
 
         if (treeSha == null) {
-            System.err.println("fatal: tree sha required");
-            System.exit(128);
-        }
-
-        String dir = treeSha.substring(0, 2);
-        String file = treeSha.substring(2);
-        Path objectPath = Path.of(".git/objects", dir, file);
-
-        if (!Files.exists(objectPath)) {
-            System.err.println("fatal: not a valid object name " + treeSha);
-            System.exit(128);
+            System.err.println("usage: git ls-tree [-r] [-t] [-l] [--name-only] <tree-ish>");
+            throw new ExitException(129);
         }
 
-        // Decompress tree object
-        byte[] compressed = Files.readAllBytes(objectPath);
-        Inflater inflater = new Inflater();
-        inflater.setInput(compressed);
-        ByteArrayOutputStream out = new ByteArrayOutputStream();
-        byte[] buffer = new byte[1024];
-        while (!inflater.finished()) {
-            int count = inflater.inflate(buffer);
-            if (count == 0 && inflater.needsInput()) break;
-            out.write(buffer, 0, count);
+        out = new BufferedOutputStream(Session.current().stdout(), BUFFER_SIZE);
+        try (ObjectDatabase db = ObjectDatabase.open(Session.current().gitDir())) {
+            this.db = db;
+            // Like git, accept a commit or tag and list its tree, or a tree named by <tree-ish>:<path>.
+            list(Trees.read(db, new RefDatabase(Session.current().gitDir()), treeSha), 0);
+        } catch (IOException e) {
+            out.flush();
+            System.err.println("fatal: " + e.getMessage());
+            throw new ExitException(128);
+        } finally {
+            out.flush();
         }
-        inflater.end();
-        byte[] data = out.toByteArray();
+    }
 
-        // Skip tree header: "tree <size>\0"
-        int pos = 0;
-        while (pos < data.length && data[pos] != 0) pos++;
-        if (pos >= data.length) throw new RuntimeException("corrupted tree object");
-        pos++; // Skip null byte
+    /**
+     * Lists one tree whose entries' paths start with the first {@code prefixLength} bytes of
+     * {@link #path}. Without -r trees are printed like any other entry; with -r they are
+     * descended into and only printed as well under -t. Submodule commits are never entered.
+     */
+    private void list(byte[] tree, int prefixLength) throws IOException {
+        TreeIterator it = new TreeIterator(tree);
+        while (it.next()) {
+            int pathLength = prefixLength + it.nameLength();
+            if (pathLength + 1 > path.length) path = Arrays.copyOf(path, Math.max(path.length * 2, pathLength + 1));
+            it.copyNameTo(path, prefixLength);
 
-        // Parse tree entries
-        while (pos < data.length) {
-            // Read mode until space
-            int spacePos = -1;
-            for (int i = pos; i < data.length; i++) {
-                if (data[i] == ' ') {
-                    spacePos = i;
-                    break;
-                }
+            boolean descend = recursive && it.isTree();
+            if (!descend || showTrees) {
+                print(it, pathLength);
             }
-            if (spacePos == -1) throw new RuntimeException("corrupted tree object");
-            String mode = new String(data, pos, spacePos - pos, StandardCharsets.UTF_8);
-            pos = spacePos + 1;
-
-            // Read filename until NUL byte
-            int nulPos = -1;
-            for (int i = pos; i < data.length; i++) {
-                if (data[i] == 0) {
-                    nulPos = i;
-                    break;
-                }
+            if (descend) {
+                ObjectId id = it.id();
+                ObjectLoader subtree = db.open(id);
+                if (subtree == null) throw new MissingObjectException(id);
+                path[pathLength] = '/';
+                list(subtree.getBytes(), pathLength + 1);
             }
-            if (nulPos == -1) throw new RuntimeException("corrupted tree object");
-            String filename = new String(data, pos, nulPos - pos, StandardCharsets.UTF_8);
-            pos = nulPos + 1;
-
-            // Read 20-byte SHA-1
-            if (pos + 20 > data.length) throw new RuntimeException("corrupted tree object");
-            byte[] shaBytes = Arrays.copyOfRange(data, pos, pos + 20);
-            pos += 20;
+        }
+    }
 
-            // Output
-            if (nameOnly) {
-                System.out.println(filename); // Only filename for --name-only
-            } else {
-                String type = mode.startsWith("100") ? "blob" : "tree";
-                StringBuilder shaHex = new StringBuilder();
-                for (byte b : shaBytes) {
-                    shaHex.append(String.format("%02x", b & 0xff));
-                }
-                System.out.printf("%s %s %s\t%s%n", mode, type, shaHex, filename);
+    /**
+     * Formats one line into {@link #line} and hands it to the buffered stream in a single write.
+     */
+    private void print(TreeIterator it, int pathLength) throws IOException {
+        int max = 6 + 1 + 6 + 1 + ObjectId.HEX_LENGTH + 1 + 20 + 1 + pathLength + 1;
+        if (max > line.length) line = Arrays.copyOf(line, Math.max(line.length * 2, max));
+        int p = 0;
+        if (!nameOnly) {
+            ObjectType type = it.type();
+            it.copyModeTo(line, p);
+            p += 6;
+            line[p++] = ' ';
+            byte[] typeName = TYPE_NAMES[type.ordinal()];
+            System.arraycopy(typeName, 0, line, p, typeName.length);
+            p += typeName.length;
+            line[p++] = ' ';
+            it.copyHexIdTo(line, p);
+            p += ObjectId.HEX_LENGTH;
+            if (longFormat) {
+                line[p++] = ' ';
+                p = putSize(type == ObjectType.BLOB ? size(it) : -1, p);
             }
+            line[p++] = '\t';
         }
+        System.arraycopy(path, 0, line, p, pathLength);
+        p += pathLength;
+        line[p++] = '\n';
+        out.write(line, 0, p);
+    }
+
+    private long size(TreeIterator it) throws IOException {
+        ObjectId id = it.id();
+        ObjectLoader blob = db.open(id);
+        if (blob == null) throw new MissingObjectException(id);
+        return blob.size();
+    }
 
+    /**
+     * Right-aligns the size in seven columns, as git's "%7s" does; trees and submodules get "-".
+     */
+    private int putSize(long size, int p) {
+        int digits = 1;
+        for (long v = size; v >= 10; v /= 10) digits++;
+        for (int i = digits; i < 7; i++) line[p++] = ' ';
+        if (size < 0) {
+            line[p++] = '-';
+            return p;
+        }
+        for (int i = p + digits - 1; i >= p; i--) {
+            line[i] = (byte) ('0' + size % 10);
+            size /= 10;
+        }
+        return p + digits;
     }
-}
\ No newline at end of file
+}
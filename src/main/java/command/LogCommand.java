@@ -0,0 +1,142 @@
+package command;
+
+import config.Config;
+import object.Commit;
+import object.ObjectDatabase;
+import refs.RefDatabase;
+import revwalk.RevCommit;
+import revwalk.RevWalk;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.DateTimeException;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+public class LogCommand implements Command {
+    private static final int ABBREV = 7;
+    private static final DateTimeFormatter DATE = DateTimeFormatter.ofPattern("EEE MMM d HH:mm:ss yyyy Z", Locale.US);
+
+    @Override
+    public void execute(String[] args) throws Exception {
+        boolean oneline = false;
+        long maxCount = -1;
+        List<String> revs = new ArrayList<>();
+
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            if ("--oneline".equals(arg)) {
+                oneline = true;
+            } else if ("-n".equals(arg) && i + 1 < args.length) {
+                maxCount = RevListCommand.parseCount(args[++i]);
+            } else if (arg.startsWith("--max-count=")) {
+                maxCount = RevListCommand.parseCount(arg.substring("--max-count=".length()));
+            } else if (arg.startsWith("-n") && arg.length() > 2) {
+                maxCount = RevListCommand.parseCount(arg.substring(2));
+            } else if (arg.startsWith("-") && !arg.equals("-")) {
+                System.err.println("usage: git log [--oneline] [-n <n>] [<revision>...]");
+                throw new ExitException(129);
+            } else {
+                revs.add(arg);
+            }
+        }
+
+        Path gitDir = Session.current().gitDir();
+        try (ObjectDatabase db = ObjectDatabase.open(gitDir)) {
+            RefDatabase refs = new RefDatabase(gitDir);
+            RevWalk walk = RevWalk.open(db, Config.load(gitDir));
+            if (revs.isEmpty()) {
+                if (refs.read("HEAD") == null) {
+                    System.err.println("fatal: your current branch does not have any commits yet");
+                    throw new ExitException(128);
+                }
+                revs.add("HEAD");
+            }
+            for (String rev : revs) Revisions.add(walk, refs, rev);
+
+            Writer out = new BufferedWriter(new OutputStreamWriter(Session.current().stdout(), StandardCharsets.UTF_8), 64 * 1024);
+            long n = 0;
+            for (RevCommit c; (maxCount < 0 || n < maxCount) && (c = walk.next()) != null; n++) {
+                Commit commit = walk.parseBody(c);
+                if (oneline) {
+                    out.write(c.id().name(), 0, ABBREV);
+                    out.write(' ');
+                    out.write(subject(commit.message()));
+                    out.write('\n');
+                } else {
+                    if (n > 0) out.write('\n');
+                    writeMedium(out, c, commit);
+                }
+            }
+            out.flush();
+        } catch (IOException e) {
+            System.err.println("fatal: " + e.getMessage());
+            throw new ExitException(128);
+        }
+    }
+
+    /**
+     * git's default "medium" format: the header, then the message with surrounding blank lines
+     * dropped, trailing whitespace trimmed and every line indented by four spaces.
+     */
+    private static void writeMedium(Writer out, RevCommit c, Commit commit) throws IOException {
+        out.write("commit " + c.id().name() + "\n");
+        if (c.parentCount() > 1) {
+            out.write("Merge:");
+            for (int i = 0; i < c.parentCount(); i++) {
+                out.write(' ');
+                out.write(c.parent(i).id().name(), 0, ABBREV);
+            }
+            out.write('\n');
+        }
+        String author = commit.author() == null ? "" : commit.author();
+        out.write("Author: " + author.substring(0, author.lastIndexOf('>') + 1) + "\n");
+        out.write("Date:   " + formatDate(author) + "\n\n");
+
+        List<String> lines = new ArrayList<>(List.of(commit.message().split("\n", -1)));
+        lines.replaceAll(String::stripTrailing);
+        while (!lines.isEmpty() && lines.get(0).isEmpty()) lines.remove(0);
+        while (!lines.isEmpty() && lines.get(lines.size() - 1).isEmpty()) lines.remove(lines.size() - 1);
+        for (String line : lines) out.write("    " + line + "\n");
+    }
+
+    /**
+     * The first paragraph of the message on one line, as {@code --oneline} shows it.
+     */
+    private static String subject(String message) {
+        StringBuilder subject = new StringBuilder();
+        for (String line : message.split("\n")) {
+            String trimmed = line.strip();
+            if (trimmed.isEmpty()) {
+                if (subject.length() > 0) break;
+                continue;
+            }
+            if (subject.length() > 0) subject.append(' ');
+            subject.append(trimmed);
+        }
+        return subject.toString();
+    }
+
+    /**
+     * Formats the ident's {@code <seconds> <zone>} in the author's own zone.
+     */
+    private static String formatDate(String ident) {
+        long seconds = Commit.identTime(ident);
+        String zone = ident.substring(ident.lastIndexOf(' ') + 1);
+        ZoneOffset offset;
+        try {
+            offset = ZoneOffset.of(zone.length() == 5 ? zone.substring(0, 3) + ":" + zone.substring(3) : zone);
+        } catch (DateTimeException e) {
+            offset = ZoneOffset.UTC;
+        }
+        return DATE.format(Instant.ofEpochSecond(seconds).atOffset(offset));
+    }
+}
@@ -0,0 +1,54 @@
+package command;
+
+import config.Config;
+import object.ObjectDatabase;
+import refs.RefDatabase;
+import revwalk.RevCommit;
+import revwalk.RevWalk;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+public class MergeBaseCommand implements Command {
+    @Override
+    public void execute(String[] args) throws Exception {
+        boolean all = false;
+        boolean isAncestor = false;
+        List<String> revs = new ArrayList<>();
+
+        for (String arg : args) {
+            switch (arg) {
+                case "-a", "--all" -> all = true;
+                case "--is-ancestor" -> isAncestor = true;
+                default -> revs.add(arg);
+            }
+        }
+        if (revs.size() != 2) {
+            System.err.println("usage: git merge-base [-a | --all] <commit> <commit>");
+            System.err.println("   or: git merge-base --is-ancestor <commit> <commit>");
+            throw new ExitException(129);
+        }
+
+        Path gitDir = Session.current().gitDir();
+        try (ObjectDatabase db = ObjectDatabase.open(gitDir)) {
+            RefDatabase refs = new RefDatabase(gitDir);
+            RevWalk walk = RevWalk.open(db, Config.load(gitDir));
+            RevCommit a = Revisions.commit(walk, refs, revs.get(0));
+            RevCommit b = Revisions.commit(walk, refs, revs.get(1));
+
+            if (isAncestor) {
+                throw new ExitException(walk.isAncestor(a, b) ? 0 : 1);
+            }
+            List<RevCommit> bases = walk.mergeBases(a, b, all);
+            if (bases.isEmpty()) throw new ExitException(1);
+            StringBuilder out = new StringBuilder();
+            for (RevCommit base : bases) out.append(base.id().name()).append('\n');
+            System.out.print(out);
+        } catch (IOException e) {
+            System.err.println("fatal: " + e.getMessage());
+            throw new ExitException(128);
+        }
+    }
+}
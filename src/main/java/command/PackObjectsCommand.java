@@ -0,0 +1,75 @@
+package command;
+
+import config.Config;
+import object.Compression;
+import object.ObjectDatabase;
+import object.ObjectId;
+import object.PackWriter;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+
+public class PackObjectsCommand implements Command {
+    @Override
+    public void execute(String[] args) throws Exception {
+        int window = 10;
+        int depth = 50;
+        int threads = Runtime.getRuntime().availableProcessors();
+        String baseName = null;
+
+        for (String arg : args) {
+            if (arg.startsWith("--window=")) {
+                window = number(arg.substring("--window=".length()));
+            } else if (arg.startsWith("--depth=")) {
+                depth = number(arg.substring("--depth=".length()));
+            } else if (arg.startsWith("--threads=")) {
+                threads = number(arg.substring("--threads=".length()));
+            } else if (baseName == null && !arg.startsWith("-")) {
+                baseName = arg;
+            } else {
+                baseName = null;
+                break;
+            }
+        }
+        if (baseName == null) usage();
+
+        try (ObjectDatabase db = ObjectDatabase.open(Session.current().gitDir())) {
+            PackWriter writer = new PackWriter(db, window, depth, threads, Compression.pack(Config.load(Session.current().gitDir())));
+            BufferedReader in = new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8));
+            String line;
+            while ((line = in.readLine()) != null) {
+                if (line.isEmpty()) continue;
+                // Each line is an id, optionally followed by a space and the path it was found at.
+                ObjectId id = line.length() == ObjectId.HEX_LENGTH || (line.length() > ObjectId.HEX_LENGTH && line.charAt(ObjectId.HEX_LENGTH) == ' ')
+                        ? ObjectId.tryParse(line.substring(0, ObjectId.HEX_LENGTH))
+                        : null;
+                if (id == null) {
+                    System.err.println("fatal: expected object ID, got garbage:\n " + line);
+                    throw new ExitException(128);
+                }
+                writer.add(id);
+            }
+            String name = writer.write(Session.current().resolve(baseName));
+            System.err.println("Total " + writer.objectCount() + " (delta " + writer.deltaCount() + ")");
+            System.out.println(name);
+        }
+    }
+
+    private static int number(String value) {
+        try {
+            int n = Integer.parseInt(value);
+            if (n >= 0) return n;
+        } catch (NumberFormatException e) {
+            // Reported below.
+        }
+        usage();
+        return 0;
+    }
+
+    private static void usage() {
+        System.err.println("usage: git pack-objects [--window=<n>] [--depth=<n>] [--threads=<n>] <base-name> < object-list");
+        throw new ExitException(129);
+    }
+}
@@ -0,0 +1,90 @@
+package command;
+
+import config.Config;
+import object.ObjectDatabase;
+import refs.RefDatabase;
+import revwalk.RevCommit;
+import revwalk.RevWalk;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+public class RevListCommand implements Command {
+    @Override
+    public void execute(String[] args) throws Exception {
+        boolean all = false;
+        boolean count = false;
+        boolean parents = false;
+        long maxCount = -1;
+        List<String> revs = new ArrayList<>();
+
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            if ("--all".equals(arg)) {
+                all = true;
+            } else if ("--count".equals(arg)) {
+                count = true;
+            } else if ("--parents".equals(arg)) {
+                parents = true;
+            } else if ("-n".equals(arg) && i + 1 < args.length) {
+                maxCount = parseCount(args[++i]);
+            } else if (arg.startsWith("--max-count=")) {
+                maxCount = parseCount(arg.substring("--max-count=".length()));
+            } else if (arg.startsWith("-n") && arg.length() > 2) {
+                maxCount = parseCount(arg.substring(2));
+            } else if (arg.startsWith("-") && !arg.equals("-")) {
+                usage();
+            } else {
+                revs.add(arg);
+            }
+        }
+        if (revs.isEmpty() && !all) usage();
+
+        Path gitDir = Session.current().gitDir();
+        try (ObjectDatabase db = ObjectDatabase.open(gitDir)) {
+            RefDatabase refs = new RefDatabase(gitDir);
+            RevWalk walk = RevWalk.open(db, Config.load(gitDir));
+            for (String rev : revs) Revisions.add(walk, refs, rev);
+            if (all) Revisions.addAll(walk, refs);
+
+            Writer out = new BufferedWriter(new OutputStreamWriter(Session.current().stdout(), StandardCharsets.US_ASCII), 64 * 1024);
+            long n = 0;
+            for (RevCommit c; (maxCount < 0 || n < maxCount) && (c = walk.next()) != null; n++) {
+                if (count) continue;
+                out.write(c.id().name());
+                if (parents) {
+                    for (int i = 0; i < c.parentCount(); i++) {
+                        out.write(' ');
+                        out.write(c.parent(i).id().name());
+                    }
+                }
+                out.write('\n');
+            }
+            if (count) out.write(n + "\n");
+            out.flush();
+        } catch (IOException e) {
+            System.err.println("fatal: " + e.getMessage());
+            throw new ExitException(128);
+        }
+    }
+
+    static long parseCount(String value) {
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            System.err.println("fatal: '" + value + "': not an integer");
+            throw new ExitException(128);
+        }
+    }
+
+    private static void usage() {
+        System.err.println("usage: git rev-list [--all] [-n <n>] [--count] [--parents] <commit>... [^<commit>...]");
+        throw new ExitException(129);
+    }
+}
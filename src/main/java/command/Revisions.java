@@ -0,0 +1,61 @@
+package command;
+
+import object.ObjectId;
+import refs.RefDatabase;
+import revwalk.RevCommit;
+import revwalk.RevWalk;
+
+import java.io.IOException;
+
+/**
+ * Turns revision arguments into walk starts: {@code <rev>}, {@code ^<rev>} to hide a commit
+ * and its history, and {@code <a>..<b>} for {@code ^<a> <b>}, where an empty side means HEAD.
+ */
+final class Revisions {
+    private Revisions() {
+    }
+
+    static void add(RevWalk walk, RefDatabase refs, String arg) throws IOException {
+        int dots = arg.indexOf("..");
+        if (dots >= 0) {
+            String from = arg.substring(0, dots);
+            String to = arg.substring(dots + 2);
+            walk.markUninteresting(commit(walk, refs, from.isEmpty() ? "HEAD" : from));
+            walk.markStart(commit(walk, refs, to.isEmpty() ? "HEAD" : to));
+        } else if (arg.startsWith("^")) {
+            walk.markUninteresting(commit(walk, refs, arg.substring(1)));
+        } else {
+            walk.markStart(commit(walk, refs, arg));
+        }
+    }
+
+    /**
+     * Starts the walk from every ref and HEAD, as {@code --all} does.
+     */
+    static void addAll(RevWalk walk, RefDatabase refs) throws IOException {
+        ObjectId head = refs.read("HEAD");
+        if (head != null) walk.markStart(peel(walk, head, "HEAD"));
+        for (var ref : refs.refs().entrySet()) {
+            RevCommit c = walk.peel(ref.getValue());
+            if (c != null) walk.markStart(c);
+        }
+    }
+
+    static RevCommit commit(RevWalk walk, RefDatabase refs, String rev) throws IOException {
+        ObjectId id = refs.resolve(rev);
+        if (id == null) {
+            System.err.println("fatal: bad revision '" + rev + "'");
+            throw new ExitException(128);
+        }
+        return peel(walk, id, rev);
+    }
+
+    private static RevCommit peel(RevWalk walk, ObjectId id, String rev) throws IOException {
+        RevCommit c = walk.peel(id);
+        if (c == null) {
+            System.err.println("fatal: '" + rev + "' does not name a commit");
+            throw new ExitException(128);
+        }
+        return c;
+    }
+}
@@ -0,0 +1,58 @@
+package command;
+
+import trace.Trace;
+
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.nio.file.Path;
+
+/**
+ * Where a command runs: the directory its relative paths and {@code .git} resolve against, and
+ * the stream its bulk output goes to. Run from the command line, that is the process's working
+ * directory and stdout. A server running commands for clients sets one session per request, and
+ * runs one request at a time.
+ */
+public final class Session {
+    private static volatile Session current =
+            new Session(Path.of("").toAbsolutePath(), new FileOutputStream(FileDescriptor.out));
+
+    private final Path workTree;
+    private final OutputStream stdout;
+
+    public Session(Path workTree, OutputStream stdout) {
+        this.workTree = workTree;
+        this.stdout = stdout;
+    }
+
+    public static Session current() {
+        return current;
+    }
+
+    public static void setCurrent(Session session) {
+        current = session;
+    }
+
+    public Path workTree() {
+        return workTree;
+    }
+
+    public Path gitDir() {
+        return workTree.resolve(".git");
+    }
+
+    /**
+     * A path given on the command line or stdin, relative to the work tree.
+     */
+    public Path resolve(String path) {
+        return workTree.resolve(path);
+    }
+
+    /**
+     * Standard output, unbuffered. Commands that write a lot buffer it themselves and write bytes
+     * rather than going through {@code System.out}.
+     */
+    public OutputStream stdout() {
+        return Trace.output(stdout);
+    }
+}
@@ -0,0 +1,99 @@
+package command;
+
+import object.Commit;
+import object.MissingObjectException;
+import object.ObjectDatabase;
+import object.ObjectId;
+import object.ObjectLoader;
+import object.ObjectType;
+import object.Tag;
+import object.TreeIterator;
+import refs.RefDatabase;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Turns object-name arguments into objects: an id, a ref, or {@code <tree-ish>:<path>} for the
+ * entry at a path in a tree, or in the tree of a commit or tag. Tree-ish arguments can be read
+ * down to their tree body.
+ */
+final class Trees {
+    private static final int MAX_PEEL_DEPTH = 16;
+
+    private Trees() {
+    }
+
+    static byte[] read(ObjectDatabase db, RefDatabase refs, String rev) throws IOException {
+        ObjectId id = resolve(db, refs, rev);
+        if (id == null || !db.has(id)) {
+            System.err.println("fatal: Not a valid object name " + rev);
+            throw new ExitException(128);
+        }
+        ObjectId tree = peel(db, id);
+        if (tree == null) {
+            System.err.println("fatal: not a tree object: " + rev);
+            throw new ExitException(128);
+        }
+        return open(db, tree).getBytes();
+    }
+
+    /**
+     * The id {@code name} stands for, or null if it names nothing: no such ref, a left side
+     * that is not tree-ish, or a path that is not in the tree. The id itself is not looked up.
+     */
+    static ObjectId resolve(ObjectDatabase db, RefDatabase refs, String name) throws IOException {
+        int colon = name.indexOf(':');
+        if (colon < 0) return refs.resolve(name);
+        ObjectId id = refs.resolve(name.substring(0, colon));
+        if (id == null || !db.has(id)) return null;
+        ObjectId tree = peel(db, id);
+        return tree == null ? null : lookup(db, tree, name.substring(colon + 1).getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Descends from {@code tree} one path component at a time. Each tree on the way is searched
+     * by {@link TreeIterator#seek}, so only the trees along the path are read, and none of their
+     * other entries is decoded.
+     */
+    private static ObjectId lookup(ObjectDatabase db, ObjectId tree, byte[] path) throws IOException {
+        ObjectId id = tree;
+        boolean isTree = true;
+        TreeIterator it = new TreeIterator();
+        int from = 0;
+        while (from < path.length) {
+            int to = from;
+            while (to < path.length && path[to] != '/') to++;
+            if (to > from) {
+                if (!isTree) return null;
+                it.reset(open(db, id).getBytes());
+                if (!it.seek(path, from, to)) return null;
+                id = it.id();
+                isTree = it.isTree();
+            }
+            from = to + 1;
+        }
+        return id;
+    }
+
+    /**
+     * Follows tags and commits down to a tree. Returns null if the chain ends in anything else.
+     */
+    private static ObjectId peel(ObjectDatabase db, ObjectId id) throws IOException {
+        for (int depth = 0; depth < MAX_PEEL_DEPTH; depth++) {
+            ObjectLoader loader = open(db, id);
+            ObjectType type = loader.type();
+            if (type == ObjectType.TREE) return id;
+            if (type == ObjectType.TAG) id = Tag.target(loader.getBytes());
+            else if (type == ObjectType.COMMIT) id = Commit.parse(loader.getBytes()).tree();
+            else return null;
+        }
+        return null;
+    }
+
+    private static ObjectLoader open(ObjectDatabase db, ObjectId id) throws IOException {
+        ObjectLoader loader = db.open(id);
+        if (loader == null) throw new MissingObjectException(id);
+        return loader;
+    }
+}
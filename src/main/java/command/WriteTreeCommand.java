@@ -1,136 +1,217 @@
 package command;
 
-import java.io.ByteArrayOutputStream;
+import config.Config;
+import index.CacheTree;
+import index.DirCache;
+import index.DirCacheEntry;
+import index.StatInfo;
+import object.Compression;
+import object.LooseObjectWriter;
+import object.ObjectId;
+import object.ObjectType;
+import object.TreeFormatter;
+import object.TreeIterator;
+import trace.Phase;
+import trace.Trace;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
+import java.nio.file.LinkOption;
 import java.nio.file.Path;
-import java.security.MessageDigest;
 import java.util.ArrayList;
-import java.util.Comparator;
 import java.util.List;
-import java.util.zip.Deflater;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
 
-public class WriteTreeCommand implements Command{
+public class WriteTreeCommand implements Command {
     public void execute(String[] args) throws Exception {
-        List<TreeEntry> entries = buildTreeEntries(Path.of("."));
+        Path workTree = Session.current().workTree();
+        Path gitDir = Session.current().gitDir();
+        Path indexFile = gitDir.resolve("index");
+        DirCache index = DirCache.read(indexFile);
+        LooseObjectWriter writer = LooseObjectWriter.bulk(gitDir.resolve("objects"), Compression.loose(Config.load(gitDir)));
+
+        // Every directory and every changed file is its own task; idle workers steal subtrees from busy ones.
+        TreeResult root = ForkJoinPool.commonPool().invoke(new TreeTask(workTree, "", index, index.cacheTree(), writer));
+
+        // New objects are synced in one batch, and before the index can refer to them.
+        ObjectId treeSha;
+        if (root == null) {
+            treeSha = writer.insert(ObjectType.TREE, new byte[0]);
+            writer.flush();
+            if (!index.entries().isEmpty() || index.cacheTree() == null) {
+                new DirCache(List.of(), new CacheTree("", 0, treeSha, List.of())).write(indexFile);
+            }
+        } else {
+            treeSha = root.sha;
+            writer.flush();
+            if (!root.unchanged) {
+                List<DirCacheEntry> entries = new ArrayList<>(root.entryCount);
+                root.collectEntries(entries);
+                new DirCache(entries, root.cacheTree).write(indexFile);
+            }
+        }
+        System.out.print(treeSha.name());
+    }
 
-        // CRITICAL: Sort by the EXACT byte string Git uses: "mode name"
-        entries.sort(Comparator.comparing(e -> e.mode + " " + e.name));
+    /**
+     * The outcome for one directory. {@code items} holds its {@link DirCacheEntry} files and
+     * nested {@code TreeResult}s in tree order, which is also index order.
+     */
+    private record TreeResult(ObjectId sha, CacheTree cacheTree, List<Object> items, int entryCount, boolean unchanged) {
+        void collectEntries(List<DirCacheEntry> out) {
+            for (Object item : items) {
+                if (item instanceof TreeResult sub) {
+                    sub.collectEntries(out);
+                } else {
+                    out.add((DirCacheEntry) item);
+                }
+            }
+        }
+    }
 
-        ByteArrayOutputStream content = new ByteArrayOutputStream();
-        for (TreeEntry e : entries) {
-            content.write((e.mode + " " + e.name).getBytes(StandardCharsets.UTF_8));
-            content.write(0);
-            content.write(e.shaBytes);
+    /**
+     * Hashes and stores one directory. Returns null for a directory with nothing to track,
+     * which git leaves out of the parent tree.
+     */
+    private static final class TreeTask extends RecursiveTask<TreeResult> {
+        private final Path dir;
+        private final String prefix;
+        private final DirCache index;
+        private final CacheTree cached;
+        private final LooseObjectWriter writer;
+
+        TreeTask(Path dir, String prefix, DirCache index, CacheTree cached, LooseObjectWriter writer) {
+            this.dir = dir;
+            this.prefix = prefix;
+            this.index = index;
+            this.cached = cached;
+            this.writer = writer;
         }
 
-        byte[] treeData = content.toByteArray();
-        String header = "tree " + treeData.length + "\0";
-        byte[] fullObject = concat(header.getBytes(StandardCharsets.UTF_8), treeData);
+        @Override
+        protected TreeResult compute() {
+            try {
+                long start = Trace.start();
+                List<Path> children;
+                try (var stream = Files.list(dir)) {
+                    children = stream
+                            .filter(p -> !p.getFileName().toString().equals(".git"))
+                            .toList();
+                }
+                StatInfo[] stats = new StatInfo[children.size()];
+                // Symlinks are stored as links, not followed, so a link to a directory is not descended into.
+                for (int i = 0; i < stats.length; i++) stats[i] = StatInfo.of(children.get(i), LinkOption.NOFOLLOW_LINKS);
+                Trace.end(Phase.WALK, start, children.size(), 0);
+
+                // Files whose stat data and mode match the index keep their cached id without being read.
+                Object[] pending = new Object[children.size()];
+                for (int i = 0; i < children.size(); i++) {
+                    Path child = children.get(i);
+                    String name = child.getFileName().toString();
+                    String path = prefix.isEmpty() ? name : prefix + "/" + name;
+                    StatInfo stat = stats[i];
+                    if (stat.directory()) {
+                        CacheTree sub = cached == null ? null : cached.child(name);
+                        pending[i] = new TreeTask(child, path, index, sub, writer).fork();
+                    } else {
+                        DirCacheEntry entry = index.get(path);
+                        if (entry != null && entry.mode() == DirCacheEntry.modeOf(stat)
+                                && entry.matches(stat) && !index.isRacilyClean(entry)) {
+                            pending[i] = entry;
+                        } else {
+                            pending[i] = new BlobTask(child, path, stat, writer).fork();
+                        }
+                    }
+                }
+
+                List<Named> named = new ArrayList<>(children.size());
+                boolean unchanged = cached != null && cached.isValid();
+                int entryCount = 0;
+                for (int i = 0; i < pending.length; i++) {
+                    Object item = pending[i];
+                    if (item instanceof BlobTask task) {
+                        item = task.join();
+                        unchanged = false;
+                    } else if (item instanceof TreeTask task) {
+                        TreeResult sub = task.join();
+                        if (sub == null) continue;
+                        unchanged &= sub.unchanged;
+                        entryCount += sub.entryCount;
+                        item = sub;
+                    }
+                    if (item instanceof DirCacheEntry) entryCount++;
+                    byte[] name = children.get(i).getFileName().toString().getBytes(StandardCharsets.UTF_8);
+                    named.add(new Named(name, item));
+                }
+                if (named.isEmpty()) return null;
 
-        MessageDigest sha1 = MessageDigest.getInstance("SHA-1");
-        String treeSha = toHex(sha1.digest(fullObject));
+                named.sort(WriteTreeCommand::compareEntries);
+                List<Object> items = new ArrayList<>(named.size());
+                for (Named n : named) items.add(n.item);
 
-        Path objPath = Path.of(".git/objects", treeSha.substring(0, 2), treeSha.substring(2));
-        Files.createDirectories(objPath.getParent());
+                // The cache-tree covers exactly these files only if no path was added or removed below here.
+                // Every reused entry has the mode the file has now, so the cached id is the one we would write.
+                if (unchanged && entryCount == cached.entryCount()) {
+                    return new TreeResult(cached.sha(), cached, items, entryCount, true);
+                }
 
-        Deflater deflater = new Deflater();
-        deflater.setInput(fullObject);
-        deflater.finish();
-        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
-        byte[] buf = new byte[1024];
-        while (!deflater.finished()) {
-            int n = deflater.deflate(buf);
-            compressed.write(buf, 0, n);
+                TreeFormatter content = new TreeFormatter(named.size());
+                List<CacheTree> subtrees = new ArrayList<>();
+                for (Named n : named) {
+                    if (n.item instanceof TreeResult sub) {
+                        content.append(TreeFormatter.MODE_TREE, n.name, sub.sha);
+                        subtrees.add(sub.cacheTree);
+                    } else {
+                        DirCacheEntry entry = (DirCacheEntry) n.item;
+                        content.append(TreeFormatter.mode(entry.mode()), n.name, entry.sha());
+                    }
+                }
+                ObjectId sha = writer.insert(ObjectType.TREE, content.toByteArray());
+                String name = prefix.isEmpty() ? "" : dir.getFileName().toString();
+                return new TreeResult(sha, new CacheTree(name, entryCount, sha, subtrees), items, entryCount, false);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
         }
-        deflater.end();
-
-//        Files.write(objPath, compressed.toByteArray(), StandardOpenOption.CREATE);
-        Files.write(objPath, compressed.toByteArray());
-        System.out.print(treeSha);
     }
 
-    private static List<TreeEntry> buildTreeEntries(Path dir) throws Exception {
-        List<TreeEntry> entries = new ArrayList<>();
-
-        try (var stream = Files.list(dir)) {
-            var children = stream
-                    .filter(p -> !p.getFileName().toString().equals(".git"))
-                    .toList();
-
-            for (Path child : children) {
-                String name = child.getFileName().toString();
-//                    if (Files.isDirectory(child)) {
-//                        List<TreeEntry> subEntries = buildTreeEntries(child);
-//
-//                        // ADD THIS LINE — THIS IS THE MISSING PIECE
-//                        subEntries.sort(Comparator.comparing(e -> e.mode + " " + e.name));
-//
-//                        ByteArrayOutputStream subContent = new ByteArrayOutputStream();
-//                        for (TreeEntry se : subEntries) {
-//                            subContent.write((se.mode + " " + se.name).getBytes(StandardCharsets.UTF_8));
-//                            subContent.write(0);
-//                            subContent.write(se.shaBytes);
-//                        }
-//
-//                    byte[] subData = subContent.toByteArray();
-//                    String subHeader = "tree " + subData.length + "\0";
-//                    byte[] fullSub = concat(subHeader.getBytes(StandardCharsets.UTF_8), subData);
-//                    byte[] subSha = MessageDigest.getInstance("SHA-1").digest(fullSub);
-//
-//                    entries.add(new TreeEntry("40000", subSha, name));
-                        if (Files.isDirectory(child)) {
-                            List<TreeEntry> subEntries = buildTreeEntries(child);
-
-                            // SORT SUBTREE ENTRIES — THIS WAS MISSING!
-                            subEntries.sort(Comparator.comparing(e -> e.mode + " " + e.name));
-
-                            ByteArrayOutputStream subContent = new ByteArrayOutputStream();
-                            for (TreeEntry se : subEntries) {
-                                subContent.write((se.mode + " " + se.name).getBytes(StandardCharsets.UTF_8));
-                                subContent.write(0);
-                                subContent.write(se.shaBytes);
-                            }
-
-                            byte[] subData = subContent.toByteArray();
-//                            String subHeader = "tree " + subData.length + "\0";
-//                            byte[] fullSub = concat(subHeader.getBytes(StandardCharsets.UTF_8), subData);
-                            String headerText = "tree " + subData.length;
-                            byte[] headerBytes = headerText.getBytes(StandardCharsets.UTF_8);
-                            byte[] fullSub = new byte[headerBytes.length + 1 + subData.length];
-                            System.arraycopy(headerBytes, 0, fullSub, 0, headerBytes.length);
-                            fullSub[headerBytes.length] = 0;  // manually add the null byte
-                            System.arraycopy(subData, 0, fullSub, headerBytes.length + 1, subData.length);
-                            byte[] subSha = MessageDigest.getInstance("SHA-1").digest(fullSub);
-
-                            entries.add(new TreeEntry("40000", subSha, name));
-
-                } else {
-                    byte[] data = Files.readAllBytes(child);
-                    String blobHeader = "blob " + data.length + "\0";
-                    byte[] blobFull = concat(blobHeader.getBytes(StandardCharsets.UTF_8), data);
-                    byte[] blobSha = MessageDigest.getInstance("SHA-1").digest(blobFull);
+    private static final class BlobTask extends RecursiveTask<DirCacheEntry> {
+        private final Path file;
+        private final String path;
+        private final StatInfo stat;
+        private final LooseObjectWriter writer;
+
+        BlobTask(Path file, String path, StatInfo stat, LooseObjectWriter writer) {
+            this.file = file;
+            this.path = path;
+            this.stat = stat;
+            this.writer = writer;
+        }
 
-                    entries.add(new TreeEntry("100644", blobSha, name));
+        @Override
+        protected DirCacheEntry compute() {
+            try {
+                int mode = DirCacheEntry.modeOf(stat);
+                if (mode == TreeIterator.MODE_SYMLINK) {
+                    // A symlink's blob is its target.
+                    byte[] target = Files.readSymbolicLink(file).toString().getBytes(StandardCharsets.UTF_8);
+                    return DirCacheEntry.of(path, stat, mode, writer.insert(ObjectType.BLOB, target));
                 }
+                // Large files are streamed in chunks rather than read whole.
+                return DirCacheEntry.of(path, stat, mode, writer.insert(ObjectType.BLOB, file));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
             }
         }
-        return entries;
-    }
-
-    record TreeEntry(String mode, byte[] shaBytes, String name) {
     }
 
-    private static byte[] concat(byte[] a, byte[] b) {
-        byte[] c = new byte[a.length + b.length];
-        System.arraycopy(a, 0, c, 0, a.length);
-        System.arraycopy(b, 0, c, a.length, b.length);
-        return c;
+    private record Named(byte[] name, Object item) {
     }
 
-    private static String toHex(byte[] bytes) {
-        StringBuilder sb = new StringBuilder();
-        for (byte b : bytes) sb.append(String.format("%02x", b & 0xFF));
-        return sb.toString();
+    private static int compareEntries(Named a, Named b) {
+        return TreeFormatter.compare(a.name, a.item instanceof TreeResult, b.name, b.item instanceof TreeResult);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,251 @@
+package config;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * A parsed git config file. Keys are {@code section.name} or {@code section.subsection.name};
+ * section and variable names are case-insensitive, subsections are not. When a variable is set
+ * more than once, the last value wins.
+ */
+public final class Config {
+    public static final Config EMPTY = new Config(Map.of());
+
+    private final Map<String, String> values;
+
+    private Config(Map<String, String> values) {
+        this.values = values;
+    }
+
+    /**
+     * Reads {@code <gitDir>/config}; a repository without one has an empty config.
+     */
+    public static Config load(Path gitDir) throws IOException {
+        Path file = gitDir.resolve("config");
+        try {
+            return parse(Files.readString(file, StandardCharsets.UTF_8), file.toString());
+        } catch (NoSuchFileException e) {
+            return EMPTY;
+        }
+    }
+
+    public static Config parse(String text, String source) throws IOException {
+        return new Parser(text, source).parse();
+    }
+
+    public String getString(String section, String subsection, String name) {
+        return values.get(key(section, subsection, name));
+    }
+
+    /**
+     * An integer with an optional k, m or g suffix.
+     */
+    public long getLong(String section, String subsection, String name, long defaultValue) throws IOException {
+        String value = getString(section, subsection, name);
+        if (value == null) return defaultValue;
+        String v = value.strip().toLowerCase(Locale.ROOT);
+        long unit = 1;
+        if (!v.isEmpty()) {
+            switch (v.charAt(v.length() - 1)) {
+                case 'k' -> unit = 1024;
+                case 'm' -> unit = 1024 * 1024;
+                case 'g' -> unit = 1024 * 1024 * 1024;
+                default -> { }
+            }
+            if (unit != 1) v = v.substring(0, v.length() - 1);
+        }
+        try {
+            return Math.multiplyExact(Long.parseLong(v), unit);
+        } catch (NumberFormatException | ArithmeticException e) {
+            throw new IOException("bad numeric config value '" + value + "' for '" + key(section, subsection, name) + "'");
+        }
+    }
+
+    public int getInt(String section, String subsection, String name, int defaultValue) throws IOException {
+        long value = getLong(section, subsection, name, defaultValue);
+        if (value != (int) value) {
+            throw new IOException("bad numeric config value '" + value + "' for '" + key(section, subsection, name) + "'");
+        }
+        return (int) value;
+    }
+
+    public boolean getBoolean(String section, String subsection, String name, boolean defaultValue) throws IOException {
+        String value = getString(section, subsection, name);
+        if (value == null) return defaultValue;
+        return switch (value.strip().toLowerCase(Locale.ROOT)) {
+            case "true", "yes", "on", "1" -> true;
+            case "false", "no", "off", "0", "" -> false;
+            default -> throw new IOException("bad boolean config value '" + value + "' for '" + key(section, subsection, name) + "'");
+        };
+    }
+
+    public boolean has(String section, String subsection, String name) {
+        return values.containsKey(key(section, subsection, name));
+    }
+
+    private static String key(String section, String subsection, String name) {
+        String s = section.toLowerCase(Locale.ROOT);
+        String n = name.toLowerCase(Locale.ROOT);
+        return subsection == null ? s + "." + n : s + "." + subsection + "." + n;
+    }
+
+    /**
+     * Handles the subset of the format git writes and people hand-edit: [section],
+     * [section "subsection"], the older [section.subsection], bare boolean keys, quoted values
+     * with escapes, comments and backslash line continuations. Include directives are not followed.
+     */
+    private static final class Parser {
+        private final String text;
+        private final String source;
+        private final Map<String, String> values = new HashMap<>();
+        private int pos;
+        private int line = 1;
+
+        Parser(String text, String source) {
+            this.text = text;
+            this.source = source;
+        }
+
+        Config parse() throws IOException {
+            String section = null;
+            String subsection = null;
+            while (pos < text.length()) {
+                char c = text.charAt(pos);
+                if (c == '\n') {
+                    line++;
+                    pos++;
+                } else if (Character.isWhitespace(c)) {
+                    pos++;
+                } else if (c == '#' || c == ';') {
+                    skipToLineEnd();
+                } else if (c == '[') {
+                    pos++;
+                    List<String> header = sectionHeader();
+                    section = header.get(0);
+                    subsection = header.size() > 1 ? header.get(1) : null;
+                } else if (Character.isLetter(c)) {
+                    if (section == null) throw bad();
+                    String name = variableName();
+                    String value = value();
+                    values.put(key(section, subsection, name), value);
+                } else {
+                    throw bad();
+                }
+            }
+            return new Config(Map.copyOf(values));
+        }
+
+        private List<String> sectionHeader() throws IOException {
+            int start = pos;
+            while (pos < text.length() && (isNameChar(text.charAt(pos)) || text.charAt(pos) == '.')) pos++;
+            String name = text.substring(start, pos);
+            if (name.isEmpty()) throw bad();
+            if (pos < text.length() && text.charAt(pos) == ']') {
+                pos++;
+                int dot = name.indexOf('.');
+                // The deprecated [section.subsection] form lowercases the subsection.
+                return dot < 0 ? List.of(name)
+                        : List.of(name.substring(0, dot), name.substring(dot + 1).toLowerCase(Locale.ROOT));
+            }
+            while (pos < text.length() && (text.charAt(pos) == ' ' || text.charAt(pos) == '\t')) pos++;
+            if (pos >= text.length() || text.charAt(pos) != '"') throw bad();
+            pos++;
+            StringBuilder sub = new StringBuilder();
+            while (true) {
+                if (pos >= text.length() || text.charAt(pos) == '\n') throw bad();
+                char c = text.charAt(pos++);
+                if (c == '"') break;
+                if (c == '\\') {
+                    if (pos >= text.length()) throw bad();
+                    c = text.charAt(pos++);
+                }
+                sub.append(c);
+            }
+            if (pos >= text.length() || text.charAt(pos) != ']') throw bad();
+            pos++;
+            return List.of(name, sub.toString());
+        }
+
+        private String variableName() {
+            int start = pos;
+            while (pos < text.length() && isNameChar(text.charAt(pos))) pos++;
+            return text.substring(start, pos);
+        }
+
+        /**
+         * Reads from after the variable name to the end of its (possibly continued) line.
+         * A name with no '=' is a boolean true.
+         */
+        private String value() throws IOException {
+            while (pos < text.length() && (text.charAt(pos) == ' ' || text.charAt(pos) == '\t')) pos++;
+            if (pos >= text.length() || text.charAt(pos) == '\n') return "true";
+            char c = text.charAt(pos);
+            if (c == '#' || c == ';') {
+                skipToLineEnd();
+                return "true";
+            }
+            if (c != '=') throw bad();
+            pos++;
+
+            StringBuilder value = new StringBuilder();
+            boolean quoted = false;
+            int trailingSpace = 0;
+            while (pos < text.length()) {
+                c = text.charAt(pos);
+                if (c == '\n') break;
+                pos++;
+                if (!quoted && (c == '#' || c == ';')) {
+                    skipToLineEnd();
+                    break;
+                }
+                if (c == '"') {
+                    quoted = !quoted;
+                    trailingSpace = 0;
+                } else if (c == '\\') {
+                    if (pos >= text.length()) throw bad();
+                    char e = text.charAt(pos++);
+                    switch (e) {
+                        case '\n' -> line++;
+                        case 'n' -> value.append('\n');
+                        case 't' -> value.append('\t');
+                        case 'b' -> value.append('\b');
+                        case '"', '\\' -> value.append(e);
+                        default -> throw bad();
+                    }
+                    trailingSpace = 0;
+                } else if (!quoted && Character.isWhitespace(c)) {
+                    // Whitespace runs collapse to one space, and leading or trailing runs are dropped.
+                    if (value.length() > 0 && trailingSpace == 0) {
+                        value.append(' ');
+                        trailingSpace = 1;
+                    }
+                } else {
+                    value.append(c);
+                    trailingSpace = 0;
+                }
+            }
+            if (quoted) throw bad();
+            if (trailingSpace > 0) value.setLength(value.length() - 1);
+            return value.toString();
+        }
+
+        private void skipToLineEnd() {
+            while (pos < text.length() && text.charAt(pos) != '\n') pos++;
+        }
+
+        private static boolean isNameChar(char c) {
+            return Character.isLetterOrDigit(c) || c == '-';
+        }
+
+        private IOException bad() {
+            return new IOException("bad config line " + line + " in file " + source);
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package daemon;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Forwards a command line to a running {@link Server} and relays its output, stdin and exit
+ * status, so the command runs in a warm JVM. Falls back to running in-process whenever there
+ * is no server to talk to.
+ */
+public final class Client {
+    private Client() {
+    }
+
+    /**
+     * Runs {@code args} on the server and returns its exit status, or -1 if the caller should run
+     * the command itself: when no server is listening, for the server's own subcommands, and when
+     * {@code GIT_TRACE_PERFORMANCE} is set, since the server would not see it.
+     */
+    public static int run(String[] args) {
+        if (args.length == 0 || args[0].equals("server")) return -1;
+        if (System.getenv("GIT_TRACE_PERFORMANCE") != null) return -1;
+        Path socket = Server.defaultSocket();
+        if (!Files.exists(socket)) return -1;
+
+        SocketChannel channel;
+        try {
+            channel = SocketChannel.open(StandardProtocolFamily.UNIX);
+            channel.connect(UnixDomainSocketAddress.of(socket));
+        } catch (IOException e) {
+            return -1;
+        }
+        String cwd = Path.of("").toAbsolutePath().toString();
+        try (channel) {
+            return exchange(channel, new Protocol.Request(Protocol.RUN, cwd, args),
+                    new FileOutputStream(FileDescriptor.out), new FileOutputStream(FileDescriptor.err));
+        } catch (IOException e) {
+            System.err.println("fatal: lost connection to git server: " + e.getMessage());
+            return 128;
+        }
+    }
+
+    /**
+     * The pid of the server listening on {@code socket}, or null if none answers.
+     */
+    static String ping(Path socket) {
+        return call(socket, Protocol.PING);
+    }
+
+    /**
+     * Asks the server on {@code socket} to exit; returns false if none answers.
+     */
+    static boolean stop(Path socket) {
+        return call(socket, Protocol.STOP) != null;
+    }
+
+    private static String call(Path socket, byte kind) {
+        if (!Files.exists(socket)) return null;
+        try (SocketChannel channel = SocketChannel.open(StandardProtocolFamily.UNIX)) {
+            channel.connect(UnixDomainSocketAddress.of(socket));
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            int status = exchange(channel, new Protocol.Request(kind, "", new String[0]), out, OutputStream.nullOutputStream());
+            return status == 0 ? out.toString(StandardCharsets.US_ASCII).trim() : null;
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private static int exchange(SocketChannel channel, Protocol.Request request, OutputStream stdout, OutputStream stderr)
+            throws IOException {
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Protocol.output(channel), Protocol.MAX_FRAME + 5));
+        DataInputStream in = new DataInputStream(new BufferedInputStream(Protocol.input(channel), Protocol.MAX_FRAME + 5));
+        Protocol.writeRequest(out, request);
+
+        byte[] buffer = new byte[Protocol.MAX_FRAME];
+        while (true) {
+            byte type = in.readByte();
+            int length = in.readInt();
+            if (length < 0 || length > Protocol.MAX_FRAME) throw new IOException("bad frame length " + length);
+            switch (type) {
+                case Protocol.STDOUT -> {
+                    in.readFully(buffer, 0, length);
+                    stdout.write(buffer, 0, length);
+                }
+                case Protocol.STDERR -> {
+                    in.readFully(buffer, 0, length);
+                    stderr.write(buffer, 0, length);
+                }
+                case Protocol.STDIN_WANTED -> {
+                    in.skipNBytes(length);
+                    startStdinPump(out);
+                }
+                case Protocol.EXIT -> {
+                    return Protocol.readExit(in, length);
+                }
+                default -> throw new IOException("unknown frame " + type);
+            }
+        }
+    }
+
+    /**
+     * Streams stdin to the server from a thread of its own, so output keeps flowing while the
+     * command reads; an empty frame marks the end of input.
+     */
+    private static void startStdinPump(DataOutputStream out) {
+        Thread pump = new Thread(() -> {
+            InputStream stdin = System.in;
+            byte[] buffer = new byte[Protocol.MAX_FRAME];
+            try {
+                int n;
+                while ((n = stdin.read(buffer)) > 0) Protocol.writeFrame(out, Protocol.STDIN, buffer, 0, n);
+                Protocol.writeFrame(out, Protocol.STDIN, buffer, 0, 0);
+            } catch (IOException e) {
+                // The command finished or the server went away; the read loop reports which.
+            }
+        }, "stdin-pump");
+        pump.setDaemon(true);
+        pump.start();
+    }
+}
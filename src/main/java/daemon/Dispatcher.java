@@ -0,0 +1,9 @@
+package daemon;
+
+/**
+ * Runs one command line, as {@code Git.run} does.
+ */
+@FunctionalInterface
+public interface Dispatcher {
+    void run(String[] args) throws Exception;
+}
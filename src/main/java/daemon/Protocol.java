@@ -0,0 +1,126 @@
+package daemon;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * The wire format between {@link Client} and {@link Server}. The client opens with a request:
+ * a magic number, the request kind, its working directory and its arguments. The server answers
+ * with frames, each a type byte and a length, until an {@link #EXIT} frame carries the exit
+ * status. Standard input is only sent once the server asks for it with {@link #STDIN_WANTED},
+ * so a command that never reads stdin never blocks the client on a terminal; the client then
+ * streams {@link #STDIN} frames, and an empty one marks the end.
+ */
+final class Protocol {
+    static final int MAGIC = 0x47495431; // "GIT1"
+
+    static final byte RUN = 1;
+    static final byte PING = 2;
+    static final byte STOP = 3;
+
+    static final byte STDOUT = 1;
+    static final byte STDERR = 2;
+    static final byte EXIT = 3;
+    static final byte STDIN_WANTED = 4;
+    static final byte STDIN = 5;
+
+    static final int MAX_FRAME = 64 * 1024;
+
+    private Protocol() {
+    }
+
+    record Request(byte kind, String cwd, String[] args) {
+    }
+
+    static void writeRequest(DataOutputStream out, Request request) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeByte(request.kind);
+        writeString(out, request.cwd);
+        out.writeInt(request.args.length);
+        for (String arg : request.args) writeString(out, arg);
+        out.flush();
+    }
+
+    static Request readRequest(DataInputStream in) throws IOException {
+        if (in.readInt() != MAGIC) throw new IOException("not a git client");
+        byte kind = in.readByte();
+        String cwd = readString(in);
+        int argc = in.readInt();
+        if (argc < 0 || argc > 1 << 16) throw new IOException("bad argument count " + argc);
+        String[] args = new String[argc];
+        for (int i = 0; i < argc; i++) args[i] = readString(in);
+        return new Request(kind, cwd, args);
+    }
+
+    private static void writeString(DataOutputStream out, String s) throws IOException {
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0 || length > 1 << 20) throw new IOException("bad string length " + length);
+        return new String(in.readNBytes(length), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Writes one frame and flushes it; callers sharing {@code out} between threads lock it.
+     */
+    static void writeFrame(DataOutputStream out, byte type, byte[] b, int off, int len) throws IOException {
+        out.writeByte(type);
+        out.writeInt(len);
+        out.write(b, off, len);
+        out.flush();
+    }
+
+    static void writeExit(DataOutputStream out, int status) throws IOException {
+        writeFrame(out, EXIT, ByteBuffer.allocate(4).putInt(status).array(), 0, 4);
+    }
+
+    static int readExit(DataInputStream in, int length) throws IOException {
+        if (length != 4) throw new IOException("bad exit frame");
+        return in.readInt();
+    }
+
+    /**
+     * Streams over a socket channel that read and write through its own separate locks, so one
+     * thread can block reading while another writes.
+     */
+    static InputStream input(SocketChannel channel) {
+        return new InputStream() {
+            @Override
+            public int read() throws IOException {
+                byte[] one = new byte[1];
+                return read(one, 0, 1) < 0 ? -1 : one[0] & 0xFF;
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                if (len == 0) return 0;
+                return channel.read(ByteBuffer.wrap(b, off, len));
+            }
+        };
+    }
+
+    static OutputStream output(SocketChannel channel) {
+        return new OutputStream() {
+            @Override
+            public void write(int b) throws IOException {
+                write(new byte[] {(byte) b}, 0, 1);
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                ByteBuffer buffer = ByteBuffer.wrap(b, off, len);
+                while (buffer.hasRemaining()) channel.write(buffer);
+            }
+        };
+    }
+}
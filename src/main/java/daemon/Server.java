@@ -0,0 +1,290 @@
+package daemon;
+
+import command.ExitException;
+import command.Session;
+import object.ObjectDatabase;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs commands for {@link Client}s in one long-lived JVM, so that class loading, JIT
+ * compilation, the object cache and the command registry carry over from one command to the
+ * next. It listens on a Unix domain socket in a directory only its user can enter.
+ *
+ * <p>Requests run one at a time: a command's {@code System.in}, {@code System.out},
+ * {@code System.err} and {@link Session} are process-wide, so each request swaps in its own for
+ * as long as it runs. The object cache is shared across requests in the same repository and
+ * cleared when a request comes from another one, so an object from one repository is never
+ * served in another. Commands see the server's environment variables, not the client's.
+ */
+public final class Server {
+    private static final Set<PosixFilePermission> OWNER_ONLY = PosixFilePermissions.fromString("rwx------");
+
+    private final Path socket;
+    private final Dispatcher dispatcher;
+    private final long idleTimeoutNanos;
+    private volatile long lastActive = System.nanoTime();
+    private volatile boolean busy;
+    private Path lastGitDir;
+
+    /**
+     * @param idleTimeoutSeconds how long to wait for a request before exiting; 0 waits forever
+     */
+    public Server(Path socket, Dispatcher dispatcher, long idleTimeoutSeconds) {
+        this.socket = socket;
+        this.dispatcher = dispatcher;
+        this.idleTimeoutNanos = TimeUnit.SECONDS.toNanos(idleTimeoutSeconds);
+    }
+
+    /**
+     * {@code GIT_SERVER_SOCKET} if set; otherwise {@code server.sock} in a per-user directory
+     * under {@code XDG_RUNTIME_DIR}, or the temp directory without it.
+     */
+    public static Path defaultSocket() {
+        String explicit = System.getenv("GIT_SERVER_SOCKET");
+        if (explicit != null && !explicit.isEmpty()) return Path.of(explicit);
+        String runtime = System.getenv("XDG_RUNTIME_DIR");
+        Path dir = runtime != null && !runtime.isEmpty()
+                ? Path.of(runtime, "codecrafters-git")
+                : Path.of(System.getProperty("java.io.tmpdir"), "codecrafters-git-" + System.getProperty("user.name"));
+        return dir.resolve("server.sock");
+    }
+
+    /**
+     * Serves requests until stopped or idle for too long.
+     */
+    public void run() throws IOException {
+        secureDirectory(socket.toAbsolutePath().getParent());
+        if (Client.ping(socket) != null) throw new IOException("a server is already listening on " + socket);
+        Files.deleteIfExists(socket);
+
+        try (ServerSocketChannel listener = ServerSocketChannel.open(StandardProtocolFamily.UNIX)) {
+            listener.bind(UnixDomainSocketAddress.of(socket));
+            if (idleTimeoutNanos > 0) startIdleWatch(listener);
+            while (true) {
+                SocketChannel channel;
+                try {
+                    channel = listener.accept();
+                } catch (ClosedChannelException e) {
+                    return;
+                }
+                busy = true;
+                try (channel) {
+                    if (!serve(channel)) return;
+                } catch (IOException e) {
+                    System.err.println("warning: request failed: " + e.getMessage());
+                } finally {
+                    lastActive = System.nanoTime();
+                    busy = false;
+                }
+            }
+        } finally {
+            Files.deleteIfExists(socket);
+        }
+    }
+
+    /**
+     * Closes the listener once no request has come in for the idle timeout, which ends {@link #run}.
+     */
+    private void startIdleWatch(ServerSocketChannel listener) {
+        Thread watch = new Thread(() -> {
+            try {
+                while (busy || System.nanoTime() - lastActive < idleTimeoutNanos) {
+                    long left = idleTimeoutNanos - (System.nanoTime() - lastActive);
+                    TimeUnit.NANOSECONDS.sleep(Math.max(left, TimeUnit.SECONDS.toNanos(1)));
+                }
+                listener.close();
+            } catch (InterruptedException | IOException e) {
+                // Keep serving.
+            }
+        }, "server-idle-watch");
+        watch.setDaemon(true);
+        watch.start();
+    }
+
+    /**
+     * Handles one connection; returns false if it asked the server to stop.
+     */
+    private boolean serve(SocketChannel channel) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(Protocol.input(channel)));
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Protocol.output(channel), Protocol.MAX_FRAME + 5));
+        Protocol.Request request = Protocol.readRequest(in);
+        switch (request.kind()) {
+            case Protocol.PING -> {
+                byte[] pid = (ProcessHandle.current().pid() + "\n").getBytes(StandardCharsets.US_ASCII);
+                Protocol.writeFrame(out, Protocol.STDOUT, pid, 0, pid.length);
+                Protocol.writeExit(out, 0);
+                return true;
+            }
+            case Protocol.STOP -> {
+                Protocol.writeExit(out, 0);
+                return false;
+            }
+            case Protocol.RUN -> {
+                runCommand(request, in, out);
+                return true;
+            }
+            default -> throw new IOException("unknown request " + request.kind());
+        }
+    }
+
+    private void runCommand(Protocol.Request request, DataInputStream in, DataOutputStream out) throws IOException {
+        Path workTree = Path.of(request.cwd());
+        Path gitDir = workTree.resolve(".git").normalize();
+        if (!gitDir.equals(lastGitDir)) {
+            ObjectDatabase.cache().clear();
+            lastGitDir = gitDir;
+        }
+
+        OutputStream stdout = new FrameOutputStream(out, Protocol.STDOUT);
+        PrintStream stderr = new PrintStream(new FrameOutputStream(out, Protocol.STDERR), true, StandardCharsets.UTF_8);
+        PrintStream previousOut = System.out;
+        PrintStream previousErr = System.err;
+        InputStream previousIn = System.in;
+        Session previousSession = Session.current();
+        System.setOut(new PrintStream(stdout, true, StandardCharsets.UTF_8));
+        System.setErr(stderr);
+        System.setIn(new RemoteInputStream(in, out));
+        Session.setCurrent(new Session(workTree, stdout));
+
+        int status = 1;
+        try {
+            dispatcher.run(request.args());
+            status = 0;
+        } catch (ExitException e) {
+            status = e.status();
+        } catch (Exception e) {
+            e.printStackTrace(stderr);
+        } finally {
+            System.out.flush();
+            System.err.flush();
+            System.setOut(previousOut);
+            System.setErr(previousErr);
+            System.setIn(previousIn);
+            Session.setCurrent(previousSession);
+            synchronized (out) {
+                Protocol.writeExit(out, status);
+            }
+        }
+    }
+
+    /**
+     * Creates the socket's directory for this user alone, or checks that an existing one is
+     * not open to anyone else: whoever can connect can run commands as this user.
+     */
+    private static void secureDirectory(Path dir) throws IOException {
+        if (!FileSystems.getDefault().supportedFileAttributeViews().contains("posix")) {
+            Files.createDirectories(dir);
+            return;
+        }
+        if (!Files.isDirectory(dir)) {
+            Files.createDirectories(dir, PosixFilePermissions.asFileAttribute(OWNER_ONLY));
+        }
+        String owner = Files.getOwner(dir).getName();
+        Set<PosixFilePermission> permissions = Files.getPosixFilePermissions(dir);
+        if (!owner.equals(System.getProperty("user.name"))
+                || permissions.stream().anyMatch(p -> !OWNER_ONLY.contains(p))) {
+            throw new IOException("refusing to listen in " + dir + ": it must belong to "
+                    + System.getProperty("user.name") + " and be closed to other users");
+        }
+    }
+
+    /**
+     * One stream of a command's output, cut into frames on a connection it shares with the
+     * other stream and with the exit status.
+     */
+    private static final class FrameOutputStream extends OutputStream {
+        private final DataOutputStream out;
+        private final byte type;
+
+        FrameOutputStream(DataOutputStream out, byte type) {
+            this.out = out;
+            this.type = type;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[] {(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            synchronized (out) {
+                while (len > 0) {
+                    int n = Math.min(len, Protocol.MAX_FRAME);
+                    Protocol.writeFrame(out, type, b, off, n);
+                    off += n;
+                    len -= n;
+                }
+            }
+        }
+    }
+
+    /**
+     * The client's stdin, asked for on the first read.
+     */
+    private static final class RemoteInputStream extends InputStream {
+        private final DataInputStream in;
+        private final DataOutputStream out;
+        private boolean requested;
+        private boolean eof;
+        private int remaining;
+
+        RemoteInputStream(DataInputStream in, DataOutputStream out) {
+            this.in = in;
+            this.out = out;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] one = new byte[1];
+            return read(one, 0, 1) < 0 ? -1 : one[0] & 0xFF;
+        }
+
+        @Override
+        public synchronized int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) return 0;
+            while (remaining == 0) {
+                if (eof) return -1;
+                if (!requested) {
+                    synchronized (out) {
+                        Protocol.writeFrame(out, Protocol.STDIN_WANTED, b, 0, 0);
+                    }
+                    requested = true;
+                }
+                if (in.readByte() != Protocol.STDIN) throw new IOException("expected stdin from the client");
+                remaining = in.readInt();
+                if (remaining == 0) eof = true;
+            }
+            int n = in.read(b, off, Math.min(len, remaining));
+            if (n < 0) throw new IOException("client closed stdin mid-frame");
+            remaining -= n;
+            return n;
+        }
+
+        @Override
+        public synchronized int available() throws IOException {
+            return remaining > 0 ? Math.min(remaining, in.available()) : 0;
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package daemon;
+
+import command.Command;
+import command.ExitException;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * {@code git server run|start|stop|status|warmup}: manages the background {@link Server} that
+ * other invocations forward to.
+ */
+public class ServerCommand implements Command {
+    private static final long DEFAULT_IDLE_TIMEOUT = 3600;
+    private static final long START_TIMEOUT_MILLIS = 10_000;
+
+    private final Dispatcher dispatcher;
+
+    public ServerCommand(Dispatcher dispatcher) {
+        this.dispatcher = dispatcher;
+    }
+
+    @Override
+    public void execute(String[] args) throws Exception {
+        if (args.length == 0) usage();
+        long idleTimeout = DEFAULT_IDLE_TIMEOUT;
+        for (int i = 1; i < args.length; i++) {
+            if (args[i].startsWith("--idle-timeout=")) {
+                idleTimeout = parseSeconds(args[i].substring("--idle-timeout=".length()));
+            } else {
+                usage();
+            }
+        }
+
+        Path socket = Server.defaultSocket();
+        switch (args[0]) {
+            case "run" -> {
+                try {
+                    new Warmup(dispatcher).run();
+                    new Server(socket, dispatcher, idleTimeout).run();
+                } catch (IOException e) {
+                    System.err.println("fatal: " + e.getMessage());
+                    throw new ExitException(128);
+                }
+            }
+            case "start" -> start(socket, idleTimeout);
+            case "stop" -> {
+                if (!Client.stop(socket)) {
+                    System.err.println("fatal: no server is running");
+                    throw new ExitException(1);
+                }
+            }
+            case "status" -> {
+                String pid = Client.ping(socket);
+                if (pid == null) {
+                    System.err.println("no server is running");
+                    throw new ExitException(1);
+                }
+                System.out.println("server running as pid " + pid + " on " + socket);
+            }
+            case "warmup" -> new Warmup(dispatcher).run();
+            default -> usage();
+        }
+    }
+
+    /**
+     * Launches {@code server run} in a detached JVM started the way this one was, and waits
+     * until it answers.
+     */
+    private static void start(Path socket, long idleTimeout) throws IOException, InterruptedException {
+        String pid = Client.ping(socket);
+        if (pid != null) {
+            System.out.println("server already running as pid " + pid);
+            return;
+        }
+
+        List<String> command = new ArrayList<>();
+        if (Files.isExecutable(Path.of("/usr/bin/setsid"))) command.add("/usr/bin/setsid");
+        command.add(Path.of(System.getProperty("java.home"), "bin", "java").toString());
+        command.addAll(ManagementFactory.getRuntimeMXBean().getInputArguments());
+        command.addAll(Arrays.asList("-cp", System.getProperty("java.class.path"), "Main",
+                "server", "run", "--idle-timeout=" + idleTimeout));
+
+        Path dir = socket.toAbsolutePath().getParent();
+        Files.createDirectories(dir);
+        File log = dir.resolve("server.log").toFile();
+        new ProcessBuilder(command)
+                .redirectInput(ProcessBuilder.Redirect.from(new File("/dev/null")))
+                .redirectOutput(ProcessBuilder.Redirect.appendTo(log))
+                .redirectErrorStream(true)
+                .start();
+
+        long deadline = System.currentTimeMillis() + START_TIMEOUT_MILLIS;
+        while (System.currentTimeMillis() < deadline) {
+            pid = Client.ping(socket);
+            if (pid != null) {
+                System.out.println("server started as pid " + pid);
+                return;
+            }
+            Thread.sleep(50);
+        }
+        System.err.println("fatal: server did not start; see " + log);
+        throw new ExitException(128);
+    }
+
+    private static long parseSeconds(String value) {
+        try {
+            long seconds = Long.parseLong(value);
+            if (seconds >= 0) return seconds;
+        } catch (NumberFormatException e) {
+            // Reported below.
+        }
+        System.err.println("fatal: '" + value + "': not a number of seconds");
+        throw new ExitException(128);
+    }
+
+    private static void usage() {
+        System.err.println("usage: git server (run | start | stop | status | warmup) [--idle-timeout=<seconds>]");
+        throw new ExitException(129);
+    }
+}
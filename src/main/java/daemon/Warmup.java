@@ -0,0 +1,116 @@
+package daemon;
+
+import command.ExitException;
+import command.Session;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.stream.Stream;
+
+/**
+ * Runs every command a few times over a small throwaway repository. The build runs it to record
+ * which classes to put in the class-data-sharing archive, and the server runs it before it starts
+ * listening, so the hot paths are compiled before the first real request.
+ */
+final class Warmup {
+    private static final int ROUNDS = 3;
+
+    private final Dispatcher dispatcher;
+
+    Warmup(Dispatcher dispatcher) {
+        this.dispatcher = dispatcher;
+    }
+
+    void run() throws IOException {
+        Path repo = Files.createTempDirectory("git-warmup");
+        Session previousSession = Session.current();
+        PrintStream previousOut = System.out;
+        PrintStream previousErr = System.err;
+        InputStream previousIn = System.in;
+        PrintStream quiet = new PrintStream(OutputStream.nullOutputStream());
+        System.setErr(quiet);
+        try {
+            script(repo);
+        } finally {
+            System.setOut(previousOut);
+            System.setErr(previousErr);
+            System.setIn(previousIn);
+            Session.setCurrent(previousSession);
+            delete(repo);
+        }
+    }
+
+    private void script(Path repo) throws IOException {
+        Random random = new Random(42);
+        run(repo, "init");
+        Files.createDirectories(repo.resolve("src/main"));
+        String parent = null;
+        for (int round = 0; round < ROUNDS; round++) {
+            Files.writeString(repo.resolve("README"), "round " + round + "\n");
+            Files.writeString(repo.resolve("src/main/App.java"), "class App { int round = " + round + "; }\n");
+            byte[] big = new byte[(1 << 20) + 1];
+            random.nextBytes(big);
+            Files.write(repo.resolve("src/blob.bin"), big);
+
+            String blob = run(repo, "hash-object", "-w", "README");
+            System.setIn(new ByteArrayInputStream("src/main/App.java\nsrc/blob.bin\n".getBytes(StandardCharsets.UTF_8)));
+            run(repo, "hash-object", "-w", "--stdin-paths");
+            String tree = run(repo, "write-tree");
+            String commit = parent == null
+                    ? run(repo, "commit-tree", tree, "-m", "round " + round)
+                    : run(repo, "commit-tree", tree, "-p", parent, "-m", "round " + round);
+            Files.createDirectories(repo.resolve(".git/refs/heads"));
+            Files.writeString(repo.resolve(".git/refs/heads/main"), commit + "\n");
+
+            run(repo, "cat-file", "-p", commit);
+            run(repo, "cat-file", "-t", tree);
+            run(repo, "cat-file", "-s", blob);
+            run(repo, "cat-file", "-p", blob);
+            run(repo, "ls-tree", "-r", tree);
+            run(repo, "ls-tree", "--name-only", tree);
+            run(repo, "rev-list", "HEAD");
+            run(repo, "log", "--oneline");
+            run(repo, "log");
+            if (parent != null) run(repo, "merge-base", parent, commit);
+            parent = commit;
+        }
+        run(repo, "gc");
+        run(repo, "commit-graph", "write", "--reachable");
+        run(repo, "rev-list", "HEAD");
+        run(repo, "log");
+        run(repo, "cat-file", "-p", parent);
+    }
+
+    /**
+     * Runs one command in {@code repo} and returns what it printed, trimmed.
+     */
+    private String run(Path repo, String... args) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        System.setOut(new PrintStream(out, true, StandardCharsets.UTF_8));
+        Session.setCurrent(new Session(repo, out));
+        try {
+            dispatcher.run(args);
+        } catch (ExitException e) {
+            // A failing step still exercises its code.
+        } catch (Exception e) {
+            throw new IllegalStateException("warmup step " + String.join(" ", args) + " failed", e);
+        }
+        System.out.flush();
+        return out.toString(StandardCharsets.UTF_8).trim();
+    }
+
+    private static void delete(Path dir) throws IOException {
+        try (Stream<Path> paths = Files.walk(dir)) {
+            for (Path p : paths.sorted(Comparator.reverseOrder()).toList()) Files.delete(p);
+        }
+    }
+}
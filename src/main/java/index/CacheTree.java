@@ -0,0 +1,91 @@
+package index;
+
+import object.ObjectId;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A node of the index "TREE" extension: the tree id last written for a directory and the
+ * number of index entries it covers. An entry count of -1 marks a node that must be rebuilt.
+ */
+public final class CacheTree {
+    private final String name;
+    private final int entryCount;
+    private final ObjectId sha;
+    private final Map<String, CacheTree> children = new LinkedHashMap<>();
+
+    public CacheTree(String name, int entryCount, ObjectId sha, List<CacheTree> children) {
+        this.name = name;
+        this.entryCount = entryCount;
+        this.sha = sha;
+        for (CacheTree child : children) {
+            this.children.put(child.name, child);
+        }
+    }
+
+    public String name() {
+        return name;
+    }
+
+    public int entryCount() {
+        return entryCount;
+    }
+
+    public ObjectId sha() {
+        return sha;
+    }
+
+    public boolean isValid() {
+        return entryCount >= 0 && sha != null;
+    }
+
+    public CacheTree child(String name) {
+        return children.get(name);
+    }
+
+    static CacheTree parse(ByteBuffer buf) throws IOException {
+        String name = readUntil(buf, (byte) 0);
+        int entryCount = Integer.parseInt(readUntil(buf, (byte) ' '));
+        int subtrees = Integer.parseInt(readUntil(buf, (byte) '\n'));
+        ObjectId sha = null;
+        if (entryCount >= 0) {
+            byte[] raw = new byte[ObjectId.RAW_LENGTH];
+            buf.get(raw);
+            sha = ObjectId.fromRaw(raw);
+        }
+        CacheTree[] children = new CacheTree[subtrees];
+        for (int i = 0; i < subtrees; i++) {
+            children[i] = parse(buf);
+        }
+        return new CacheTree(name, entryCount, sha, List.of(children));
+    }
+
+    void write(ByteArrayOutputStream out) {
+        out.writeBytes(name.getBytes(StandardCharsets.UTF_8));
+        out.write(0);
+        out.writeBytes((entryCount + " " + children.size() + "\n").getBytes(StandardCharsets.US_ASCII));
+        if (entryCount >= 0) {
+            out.writeBytes(sha.toRaw());
+        }
+        for (CacheTree child : children.values()) {
+            child.write(out);
+        }
+    }
+
+    private static String readUntil(ByteBuffer buf, byte terminator) throws IOException {
+        int start = buf.position();
+        while (buf.hasRemaining()) {
+            if (buf.get() == terminator) {
+                return new String(buf.array(), buf.arrayOffset() + start, buf.position() - start - 1,
+                        StandardCharsets.UTF_8);
+            }
+        }
+        throw new IOException("corrupt TREE extension in index");
+    }
+}
@@ -0,0 +1,196 @@
+package index;
+
+import object.ObjectId;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reads and writes {@code .git/index} in git's DIRC format (version 2, reading 3 as well),
+ * including the cache-tree ("TREE") extension. Other extensions are dropped on rewrite.
+ */
+public final class DirCache {
+    private static final int SIGNATURE = 0x44495243; // "DIRC"
+    private static final int TREE_EXTENSION = 0x54524545; // "TREE"
+    private static final int ENTRY_FIXED_SIZE = 62;
+    private static final int EXTENDED_FLAG = 0x4000;
+    private static final int NAME_MASK = 0x0FFF;
+
+    private final List<DirCacheEntry> entries;
+    private final Map<String, DirCacheEntry> byPath;
+    private final CacheTree cacheTree;
+    private final int timestampSec;
+    private final int timestampNsec;
+
+    public DirCache(List<DirCacheEntry> entries, CacheTree cacheTree) {
+        this(entries, cacheTree, Integer.MAX_VALUE, 0);
+    }
+
+    private DirCache(List<DirCacheEntry> entries, CacheTree cacheTree, int timestampSec, int timestampNsec) {
+        this.entries = entries;
+        this.cacheTree = cacheTree;
+        this.timestampSec = timestampSec;
+        this.timestampNsec = timestampNsec;
+        this.byPath = new HashMap<>(entries.size() * 2);
+        for (DirCacheEntry e : entries) {
+            byPath.put(e.path(), e);
+        }
+    }
+
+    public List<DirCacheEntry> entries() {
+        return entries;
+    }
+
+    public DirCacheEntry get(String path) {
+        return byPath.get(path);
+    }
+
+    public CacheTree cacheTree() {
+        return cacheTree;
+    }
+
+    /**
+     * An entry modified in the same instant the index was written could have changed again
+     * without its stat data moving, so its cached id cannot be trusted ("racy git").
+     */
+    public boolean isRacilyClean(DirCacheEntry e) {
+        int cmp = Integer.compareUnsigned(e.mtimeSec(), timestampSec);
+        return cmp > 0 || (cmp == 0 && e.mtimeNsec() >= timestampNsec);
+    }
+
+    public static DirCache read(Path file) throws IOException {
+        byte[] data;
+        FileTime modified;
+        try {
+            modified = Files.getLastModifiedTime(file);
+            data = Files.readAllBytes(file);
+        } catch (NoSuchFileException e) {
+            return new DirCache(List.of(), null);
+        }
+        if (data.length < 12 + 20) throw new IOException("index file smaller than expected");
+
+        MessageDigest sha1 = sha1();
+        sha1.update(data, 0, data.length - 20);
+        if (!Arrays.equals(sha1.digest(), 0, 20, data, data.length - 20, data.length)) {
+            throw new IOException("bad index file sha1 signature");
+        }
+
+        ByteBuffer buf = ByteBuffer.wrap(data, 0, data.length - 20);
+        if (buf.getInt() != SIGNATURE) throw new IOException("bad index file signature");
+        int version = buf.getInt();
+        if (version != 2 && version != 3) throw new IOException("index file version " + version + " not supported");
+        int count = buf.getInt();
+
+        List<DirCacheEntry> entries = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            entries.add(readEntry(buf, data));
+        }
+
+        CacheTree cacheTree = null;
+        while (buf.remaining() >= 8) {
+            int signature = buf.getInt();
+            int size = buf.getInt();
+            if (signature == TREE_EXTENSION) {
+                cacheTree = CacheTree.parse(ByteBuffer.wrap(data, buf.position(), size).slice());
+            } else if ((signature >>> 24) < 'A' || (signature >>> 24) > 'Z') {
+                throw new IOException("index uses an unsupported mandatory extension");
+            }
+            buf.position(buf.position() + size);
+        }
+
+        return new DirCache(entries, cacheTree,
+                StatInfo.seconds(modified), StatInfo.nanos(modified));
+    }
+
+    private static DirCacheEntry readEntry(ByteBuffer buf, byte[] data) {
+        int start = buf.position();
+        int ctimeSec = buf.getInt(), ctimeNsec = buf.getInt();
+        int mtimeSec = buf.getInt(), mtimeNsec = buf.getInt();
+        int dev = buf.getInt(), ino = buf.getInt(), mode = buf.getInt();
+        int uid = buf.getInt(), gid = buf.getInt(), size = buf.getInt();
+        int shaOffset = buf.position();
+        ObjectId sha = ObjectId.fromRaw(data, shaOffset);
+        buf.position(shaOffset + ObjectId.RAW_LENGTH);
+        int flags = Short.toUnsignedInt(buf.getShort());
+        int fixed = ENTRY_FIXED_SIZE;
+        if ((flags & EXTENDED_FLAG) != 0) {
+            buf.getShort();
+            fixed += 2;
+        }
+        int nameStart = buf.position();
+        int nameLen = flags & NAME_MASK;
+        if (nameLen == NAME_MASK) {
+            while (data[nameStart + nameLen] != 0) nameLen++;
+        }
+        String path = new String(data, nameStart, nameLen, StandardCharsets.UTF_8);
+        buf.position(start + ((fixed + nameLen + 8) & ~7));
+        return new DirCacheEntry(ctimeSec, ctimeNsec, mtimeSec, mtimeNsec, dev, ino, mode, uid, gid, size, sha, path);
+    }
+
+    /**
+     * Writes the index through {@code index.lock} and renames it into place, as git does.
+     */
+    public void write(Path file) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(64 + entries.size() * 96);
+        ByteBuffer header = ByteBuffer.allocate(12).putInt(SIGNATURE).putInt(2).putInt(entries.size());
+        out.write(header.array(), 0, 12);
+
+        ByteBuffer fixed = ByteBuffer.allocate(ENTRY_FIXED_SIZE);
+        byte[] raw = new byte[ObjectId.RAW_LENGTH];
+        for (DirCacheEntry e : entries) {
+            e.sha().copyRawTo(raw, 0);
+            byte[] name = e.path().getBytes(StandardCharsets.UTF_8);
+            fixed.clear();
+            fixed.putInt(e.ctimeSec()).putInt(e.ctimeNsec()).putInt(e.mtimeSec()).putInt(e.mtimeNsec())
+                    .putInt(e.dev()).putInt(e.ino()).putInt(e.mode())
+                    .putInt(e.uid()).putInt(e.gid()).putInt(e.size())
+                    .put(raw)
+                    .putShort((short) Math.min(name.length, NAME_MASK));
+            out.write(fixed.array(), 0, ENTRY_FIXED_SIZE);
+            out.write(name, 0, name.length);
+            int padding = ((ENTRY_FIXED_SIZE + name.length + 8) & ~7) - ENTRY_FIXED_SIZE - name.length;
+            out.write(new byte[padding], 0, padding);
+        }
+
+        if (cacheTree != null) {
+            ByteArrayOutputStream tree = new ByteArrayOutputStream();
+            cacheTree.write(tree);
+            out.write(ByteBuffer.allocate(8).putInt(TREE_EXTENSION).putInt(tree.size()).array(), 0, 8);
+            tree.writeTo(out);
+        }
+
+        byte[] body = out.toByteArray();
+        MessageDigest sha1 = sha1();
+        sha1.update(body);
+
+        Path lock = file.resolveSibling(file.getFileName() + ".lock");
+        try (OutputStream stream = Files.newOutputStream(lock)) {
+            stream.write(body);
+            stream.write(sha1.digest());
+        }
+        Files.move(lock, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static MessageDigest sha1() {
+        try {
+            return MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
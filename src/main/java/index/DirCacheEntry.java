@@ -0,0 +1,36 @@
+package index;
+
+import object.ObjectId;
+import object.TreeIterator;
+
+/**
+ * One path in the index: the stat data seen when it was last hashed, and its blob id.
+ */
+public record DirCacheEntry(int ctimeSec, int ctimeNsec, int mtimeSec, int mtimeNsec,
+                            int dev, int ino, int mode, int uid, int gid, int size,
+                            ObjectId sha, String path) {
+
+    /**
+     * The mode git records for a file with this stat data: a symlink, an executable file if its
+     * owner may run it, or else a regular file.
+     */
+    public static int modeOf(StatInfo stat) {
+        if ((stat.mode() & TreeIterator.MODE_TYPE_MASK) == TreeIterator.MODE_SYMLINK) return TreeIterator.MODE_SYMLINK;
+        return (stat.mode() & 0100) != 0 ? TreeIterator.MODE_EXECUTABLE : TreeIterator.MODE_FILE;
+    }
+
+    public static DirCacheEntry of(String path, StatInfo stat, int mode, ObjectId sha) {
+        return new DirCacheEntry(stat.ctimeSec(), stat.ctimeNsec(), stat.mtimeSec(), stat.mtimeNsec(),
+                stat.dev(), stat.ino(), mode, stat.uid(), stat.gid(), stat.size(), sha, path);
+    }
+
+    /**
+     * True when the file still looks exactly as it did when this entry was recorded.
+     */
+    public boolean matches(StatInfo stat) {
+        return mtimeSec == stat.mtimeSec() && mtimeNsec == stat.mtimeNsec()
+                && ctimeSec == stat.ctimeSec() && ctimeNsec == stat.ctimeNsec()
+                && ino == stat.ino() && uid == stat.uid() && gid == stat.gid()
+                && size == stat.size();
+    }
+}
@@ -0,0 +1,55 @@
+package index;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The subset of stat(2) that the index records, truncated to 32 bits the same way git does.
+ */
+public record StatInfo(int ctimeSec, int ctimeNsec, int mtimeSec, int mtimeNsec,
+                       int dev, int ino, int mode, int uid, int gid, int size,
+                       boolean directory) {
+
+    private static final String UNIX_ATTRIBUTES = "unix:mode,ino,dev,uid,gid,size,lastModifiedTime,ctime";
+    private static volatile boolean unixViewSupported = true;
+
+    /**
+     * Stats {@code path}; with {@link LinkOption#NOFOLLOW_LINKS}, a symlink itself, like lstat(2).
+     */
+    public static StatInfo of(Path path, LinkOption... options) throws IOException {
+        if (unixViewSupported) {
+            try {
+                Map<String, Object> a = Files.readAttributes(path, UNIX_ATTRIBUTES, options);
+                FileTime mtime = (FileTime) a.get("lastModifiedTime");
+                FileTime ctime = (FileTime) a.get("ctime");
+                int mode = (Integer) a.get("mode");
+                return new StatInfo(
+                        seconds(ctime), nanos(ctime), seconds(mtime), nanos(mtime),
+                        (int) (long) (Long) a.get("dev"), (int) (long) (Long) a.get("ino"),
+                        mode, (Integer) a.get("uid"), (Integer) a.get("gid"),
+                        (int) (long) (Long) a.get("size"),
+                        (mode & 0170000) == 0040000);
+            } catch (UnsupportedOperationException | IllegalArgumentException e) {
+                unixViewSupported = false;
+            }
+        }
+        BasicFileAttributes a = Files.readAttributes(path, BasicFileAttributes.class, options);
+        FileTime mtime = a.lastModifiedTime();
+        return new StatInfo(seconds(mtime), nanos(mtime), seconds(mtime), nanos(mtime),
+                0, 0, a.isDirectory() ? 0040000 : a.isSymbolicLink() ? 0120000 : 0100644, 0, 0, (int) a.size(), a.isDirectory());
+    }
+
+    static int seconds(FileTime time) {
+        return (int) time.to(TimeUnit.SECONDS);
+    }
+
+    static int nanos(FileTime time) {
+        return time.toInstant().getNano();
+    }
+}
@@ -0,0 +1,57 @@
+package object;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Serves an object from the {@link ObjectCache}, or loads it through another loader and adds
+ * the inflated bytes to the cache the first time they are fetched whole. Streaming reads are
+ * left uncached, since that is how large blobs are read.
+ */
+final class CachingObjectLoader extends ObjectLoader {
+    private final ObjectId id;
+    private final ObjectCache cache;
+    private final ObjectLoader source;
+    private ObjectCache.Cached cached;
+
+    CachingObjectLoader(ObjectId id, ObjectCache cache, ObjectCache.Cached cached) {
+        this(id, cache, null, cached);
+    }
+
+    CachingObjectLoader(ObjectId id, ObjectCache cache, ObjectLoader source) {
+        this(id, cache, source, null);
+    }
+
+    private CachingObjectLoader(ObjectId id, ObjectCache cache, ObjectLoader source, ObjectCache.Cached cached) {
+        this.id = id;
+        this.cache = cache;
+        this.source = source;
+        this.cached = cached;
+    }
+
+    @Override
+    public ObjectType type() throws IOException {
+        return cached != null ? cached.type() : source.type();
+    }
+
+    @Override
+    public long size() throws IOException {
+        return cached != null ? cached.data().length : source.size();
+    }
+
+    @Override
+    public InputStream openStream() throws IOException {
+        return cached != null ? new ByteArrayInputStream(cached.data()) : source.openStream();
+    }
+
+    @Override
+    public byte[] getBytes() throws IOException {
+        if (cached == null) {
+            byte[] data = source.getBytes();
+            cached = new ObjectCache.Cached(source.type(), data);
+            cache.put(id, cached.type(), data);
+        }
+        return cached.data();
+    }
+}
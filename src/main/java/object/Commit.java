@@ -0,0 +1,74 @@
+package object;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The parsed body of a commit object. {@code author} and {@code committer} are the whole ident
+ * value, {@code "Name <email> <seconds> <zone>"}; headers other than these are ignored.
+ */
+public record Commit(ObjectId tree, List<ObjectId> parents, String author, String committer, String message) {
+
+    public static Commit parse(byte[] data) throws IOException {
+        ObjectId tree = null;
+        List<ObjectId> parents = new ArrayList<>(2);
+        String author = null;
+        String committer = null;
+        int pos = 0;
+        while (pos < data.length && data[pos] != '\n') {
+            int end = pos;
+            while (end < data.length && data[end] != '\n') end++;
+            if (startsWith(data, pos, "tree ")) {
+                tree = id(data, pos + 5, end);
+            } else if (startsWith(data, pos, "parent ")) {
+                parents.add(id(data, pos + 7, end));
+            } else if (startsWith(data, pos, "author ")) {
+                author = new String(data, pos + 7, end - pos - 7, StandardCharsets.UTF_8);
+            } else if (startsWith(data, pos, "committer ")) {
+                committer = new String(data, pos + 10, end - pos - 10, StandardCharsets.UTF_8);
+            }
+            pos = end + 1;
+        }
+        if (tree == null) throw new IOException("corrupt commit: no tree");
+        String message = pos < data.length ? new String(data, pos + 1, data.length - pos - 1, StandardCharsets.UTF_8) : "";
+        return new Commit(tree, List.copyOf(parents), author, committer, message);
+    }
+
+    /**
+     * The committer timestamp in seconds, which orders history walks; 0 if it is missing.
+     */
+    public long commitTime() {
+        return identTime(committer);
+    }
+
+    /**
+     * The seconds field of an ident value, which follows the last '>'.
+     */
+    public static long identTime(String ident) {
+        if (ident == null) return 0;
+        int gt = ident.lastIndexOf('>');
+        int start = gt + 1;
+        while (start < ident.length() && ident.charAt(start) == ' ') start++;
+        int end = start;
+        while (end < ident.length() && Character.isDigit(ident.charAt(end))) end++;
+        return end > start ? Long.parseLong(ident, start, end, 10) : 0;
+    }
+
+    private static boolean startsWith(byte[] data, int pos, String prefix) {
+        if (pos + prefix.length() > data.length) return false;
+        for (int i = 0; i < prefix.length(); i++) {
+            if (data[pos + i] != prefix.charAt(i)) return false;
+        }
+        return true;
+    }
+
+    private static ObjectId id(byte[] data, int from, int to) throws IOException {
+        ObjectId id = to - from == ObjectId.HEX_LENGTH
+                ? ObjectId.tryParse(new String(data, from, ObjectId.HEX_LENGTH, StandardCharsets.US_ASCII))
+                : null;
+        if (id == null) throw new IOException("corrupt commit: bad object name");
+        return id;
+    }
+}
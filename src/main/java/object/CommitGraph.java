@@ -0,0 +1,201 @@
+package object;
+
+import java.io.IOException;
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A memory-mapped {@code objects/info/commit-graph} file in git's format (version 1, SHA-1).
+ * Every commit in it has a position, its index in the sorted id table, and the graph records
+ * each commit's tree, parent positions, commit time and topological level. A walk can follow
+ * parents and prune by generation with a few reads from the mapping, without inflating any
+ * commit object.
+ *
+ * <p>Only the chunks every version of git writes are read: OIDF, OIDL, CDAT and EDGE. Others,
+ * such as corrected commit dates or Bloom filters, are skipped, and split graph chains are not
+ * followed.
+ */
+public final class CommitGraph {
+    public static final int NO_PARENT = 0x70000000;
+    /** The level recorded for a commit missing from the graph: larger than any real level. */
+    public static final int GENERATION_INFINITY = Integer.MAX_VALUE;
+    static final int GENERATION_MAX = 0x3FFFFFFF;
+
+    static final int SIGNATURE = 0x43475048; // "CGPH"
+    static final int CHUNK_OID_FANOUT = 0x4f494446; // "OIDF"
+    static final int CHUNK_OID_LOOKUP = 0x4f49444c; // "OIDL"
+    static final int CHUNK_COMMIT_DATA = 0x43444154; // "CDAT"
+    static final int CHUNK_EXTRA_EDGES = 0x45444745; // "EDGE"
+    static final int EXTRA_EDGES_NEEDED = 0x80000000;
+    static final int LAST_EDGE = 0x80000000;
+    static final int COMMIT_DATA_WIDTH = ObjectId.RAW_LENGTH + 16;
+
+    private static final ValueLayout.OfInt INT = ValueLayout.JAVA_INT_UNALIGNED.withOrder(ByteOrder.BIG_ENDIAN);
+    private static final ValueLayout.OfLong LONG = ValueLayout.JAVA_LONG_UNALIGNED.withOrder(ByteOrder.BIG_ENDIAN);
+
+    private final Path file;
+    private final MemorySegment map;
+    private final int count;
+    private final long fanout;
+    private final long lookup;
+    private final long commitData;
+    private final long extraEdges;
+
+    private CommitGraph(Path file, MemorySegment map) throws IOException {
+        this.file = file;
+        this.map = map;
+        if (map.byteSize() < 8 + 12 + ObjectId.RAW_LENGTH || map.get(INT, 0) != SIGNATURE) {
+            throw corrupt("bad signature");
+        }
+        if (map.get(ValueLayout.JAVA_BYTE, 4) != 1) throw corrupt("unsupported version " + map.get(ValueLayout.JAVA_BYTE, 4));
+        if (map.get(ValueLayout.JAVA_BYTE, 5) != 1) throw corrupt("unsupported hash version");
+        int chunks = map.get(ValueLayout.JAVA_BYTE, 6) & 0xFF;
+
+        long oidf = -1, oidl = -1, cdat = -1, edge = -1;
+        long dataEnd = map.byteSize() - ObjectId.RAW_LENGTH;
+        for (int i = 0; i < chunks; i++) {
+            long entry = 8 + 12L * i;
+            if (entry + 24 > dataEnd) throw corrupt("truncated chunk table");
+            int id = map.get(INT, entry);
+            long offset = map.get(LONG, entry + 4);
+            long next = map.get(LONG, entry + 16);
+            if (offset < 0 || offset > next || next > dataEnd) throw corrupt("bad chunk offset");
+            switch (id) {
+                case CHUNK_OID_FANOUT -> oidf = offset;
+                case CHUNK_OID_LOOKUP -> oidl = offset;
+                case CHUNK_COMMIT_DATA -> cdat = offset;
+                case CHUNK_EXTRA_EDGES -> edge = offset;
+                default -> { }
+            }
+        }
+        if (oidf < 0 || oidl < 0 || cdat < 0) throw corrupt("missing a required chunk");
+        fanout = oidf;
+        lookup = oidl;
+        commitData = cdat;
+        extraEdges = edge;
+        count = map.get(INT, fanout + 255 * 4L);
+        if (lookup + (long) ObjectId.RAW_LENGTH * count > dataEnd
+                || commitData + (long) COMMIT_DATA_WIDTH * count > dataEnd) {
+            throw corrupt("truncated");
+        }
+    }
+
+    /**
+     * Maps the graph in {@code objectsDir/info}, or returns null if the repository has none.
+     */
+    public static CommitGraph open(Path objectsDir) throws IOException {
+        Path file = path(objectsDir);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return new CommitGraph(file, channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size(), Arena.ofAuto()));
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+    }
+
+    public static Path path(Path objectsDir) {
+        return objectsDir.resolve("info").resolve("commit-graph");
+    }
+
+    public int commitCount() {
+        return count;
+    }
+
+    /**
+     * Returns the position of {@code id}, or -1 if the graph does not contain it.
+     */
+    public int findPosition(ObjectId id) {
+        int first = id.firstByte();
+        int lo = first == 0 ? 0 : map.get(INT, fanout + (first - 1) * 4L);
+        int hi = map.get(INT, fanout + first * 4L);
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            long at = lookup + (long) ObjectId.RAW_LENGTH * mid;
+            int cmp = 0;
+            for (int w = 0; w < 5 && cmp == 0; w++) {
+                cmp = Integer.compareUnsigned(map.get(INT, at + 4L * w), id.word(w));
+            }
+            if (cmp == 0) return mid;
+            if (cmp < 0) lo = mid + 1;
+            else hi = mid;
+        }
+        return -1;
+    }
+
+    public ObjectId idAt(int position) {
+        return wordsAt(lookup + (long) ObjectId.RAW_LENGTH * position);
+    }
+
+    public ObjectId treeAt(int position) {
+        return wordsAt(dataAt(position));
+    }
+
+    /**
+     * The number of parents; a merge's parents beyond the second live in the extra edge list.
+     */
+    public int parentCount(int position) throws IOException {
+        long at = dataAt(position) + ObjectId.RAW_LENGTH;
+        if (map.get(INT, at) == NO_PARENT) return 0;
+        int second = map.get(INT, at + 4);
+        if (second == NO_PARENT) return 1;
+        if ((second & EXTRA_EDGES_NEEDED) == 0) return 2;
+        long edge = edgeList(second);
+        int n = 2;
+        while ((map.get(INT, edge) & LAST_EDGE) == 0) {
+            edge += 4;
+            n++;
+        }
+        return n;
+    }
+
+    /**
+     * The position of parent {@code i}, in the order the commit lists its parents.
+     */
+    public int parentAt(int position, int i) throws IOException {
+        long at = dataAt(position) + ObjectId.RAW_LENGTH;
+        int parent;
+        if (i == 0) {
+            parent = map.get(INT, at);
+        } else {
+            int second = map.get(INT, at + 4);
+            parent = (second & EXTRA_EDGES_NEEDED) == 0 ? second : map.get(INT, edgeList(second) + 4L * (i - 1)) & ~LAST_EDGE;
+        }
+        if (parent < 0 || parent >= count) throw corrupt("bad parent position " + parent);
+        return parent;
+    }
+
+    /**
+     * The topological level: 1 for a root commit, otherwise one more than its highest parent.
+     */
+    public int generationAt(int position) {
+        return map.get(INT, dataAt(position) + ObjectId.RAW_LENGTH + 8) >>> 2;
+    }
+
+    public long commitTimeAt(int position) {
+        long at = dataAt(position) + ObjectId.RAW_LENGTH + 8;
+        return ((map.get(INT, at) & 3L) << 32) | (map.get(INT, at + 4) & 0xFFFFFFFFL);
+    }
+
+    private long dataAt(int position) {
+        return commitData + (long) COMMIT_DATA_WIDTH * position;
+    }
+
+    private long edgeList(int second) throws IOException {
+        if (extraEdges < 0) throw corrupt("octopus merge without an extra edge list");
+        return extraEdges + 4L * (second & ~EXTRA_EDGES_NEEDED);
+    }
+
+    private ObjectId wordsAt(long at) {
+        return ObjectId.fromWords(map.get(INT, at), map.get(INT, at + 4), map.get(INT, at + 8),
+                map.get(INT, at + 12), map.get(INT, at + 16));
+    }
+
+    private IOException corrupt(String reason) {
+        return new IOException("commit-graph " + file + " is corrupt: " + reason);
+    }
+}
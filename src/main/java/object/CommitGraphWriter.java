@@ -0,0 +1,225 @@
+package object;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Writes {@code objects/info/commit-graph} for a set of commits and everything reachable from
+ * them. Commits are parsed once here so that later walks never have to; the file is written to
+ * a temp file and renamed into place, so readers always see a complete graph.
+ */
+public final class CommitGraphWriter {
+    private final ObjectDatabase db;
+
+    public CommitGraphWriter(ObjectDatabase db) {
+        this.db = db;
+    }
+
+    /**
+     * What the graph records about one commit; the message and idents are dropped right after
+     * parsing, so memory stays proportional to the commit count alone.
+     */
+    private static final class Node {
+        final ObjectId id;
+        final ObjectId tree;
+        final long commitTime;
+        List<ObjectId> parentIds;
+        Node[] parents;
+        int position;
+        int generation;
+
+        Node(ObjectId id, Commit commit) {
+            this.id = id;
+            this.tree = commit.tree();
+            this.commitTime = commit.commitTime();
+            this.parentIds = commit.parents();
+        }
+    }
+
+    /**
+     * Writes the graph and returns how many commits it holds. Tips that are annotated tags are
+     * peeled; tips that do not lead to a commit are ignored.
+     */
+    public int write(Collection<ObjectId> tips) throws IOException {
+        ObjectIdMap<Node> nodes = new ObjectIdMap<>();
+        ArrayDeque<Node> todo = new ArrayDeque<>();
+        for (ObjectId tip : tips) {
+            ObjectId commit = peelToCommit(tip);
+            if (commit != null) visit(commit, nodes, todo);
+        }
+        while (!todo.isEmpty()) {
+            Node n = todo.pop();
+            n.parents = new Node[n.parentIds.size()];
+            for (int i = 0; i < n.parents.length; i++) {
+                n.parents[i] = visit(n.parentIds.get(i), nodes, todo);
+            }
+            n.parentIds = null;
+        }
+
+        List<Node> sorted = new ArrayList<>(nodes.values());
+        sorted.sort((a, b) -> a.id.compareTo(b.id));
+        for (int i = 0; i < sorted.size(); i++) sorted.get(i).position = i;
+        for (Node n : sorted) computeGeneration(n);
+
+        Path file = CommitGraph.path(db.objectsDirectory());
+        Files.createDirectories(file.getParent());
+        Path tmp = TempFiles.create(file.getParent(), "tmp_graph_");
+        try {
+            try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(tmp), 64 * 1024)) {
+                writeGraph(sorted, out);
+            }
+            TempFiles.makeReadOnly(tmp);
+            Files.move(tmp, file, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+        return sorted.size();
+    }
+
+    private Node visit(ObjectId id, ObjectIdMap<Node> nodes, ArrayDeque<Node> todo) throws IOException {
+        Node n = nodes.get(id);
+        if (n == null) {
+            ObjectLoader loader = db.open(id);
+            if (loader == null) throw new MissingObjectException(id);
+            if (loader.type() != ObjectType.COMMIT) throw new IOException("object " + id + " is a " + loader.type() + ", not a commit");
+            n = new Node(id, Commit.parse(loader.getBytes()));
+            nodes.put(id, n);
+            todo.push(n);
+        }
+        return n;
+    }
+
+    private ObjectId peelToCommit(ObjectId id) throws IOException {
+        for (int depth = 0; depth < 16; depth++) {
+            ObjectLoader loader = db.open(id);
+            if (loader == null) throw new MissingObjectException(id);
+            if (loader.type() == ObjectType.COMMIT) return id;
+            if (loader.type() != ObjectType.TAG) return null;
+            id = Tag.target(loader.getBytes());
+        }
+        return null;
+    }
+
+    /**
+     * Topological levels, computed without recursion so that long histories cannot overflow the
+     * stack. Levels above what the format can hold are capped, as git does.
+     */
+    private static void computeGeneration(Node start) {
+        if (start.generation != 0) return;
+        ArrayDeque<Node> stack = new ArrayDeque<>();
+        stack.push(start);
+        while (!stack.isEmpty()) {
+            Node n = stack.peek();
+            if (n.generation != 0) {
+                // Pushed again through another child after it was done.
+                stack.pop();
+                continue;
+            }
+            int max = 0;
+            boolean ready = true;
+            for (Node p : n.parents) {
+                if (p.generation == 0) {
+                    stack.push(p);
+                    ready = false;
+                } else {
+                    max = Math.max(max, p.generation);
+                }
+            }
+            if (ready) {
+                stack.pop();
+                n.generation = Math.min(max + 1, CommitGraph.GENERATION_MAX);
+            }
+        }
+    }
+
+    private static void writeGraph(List<Node> sorted, OutputStream file) throws IOException {
+        MessageDigest sha1;
+        try {
+            sha1 = MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        int count = sorted.size();
+        List<Integer> edges = new ArrayList<>();
+        for (Node n : sorted) {
+            if (n.parents.length > 2) {
+                for (int i = 1; i < n.parents.length; i++) {
+                    edges.add(n.parents[i].position | (i == n.parents.length - 1 ? CommitGraph.LAST_EDGE : 0));
+                }
+            }
+        }
+
+        int chunks = edges.isEmpty() ? 3 : 4;
+        long oidf = 8 + 12L * (chunks + 1);
+        long oidl = oidf + 256 * 4;
+        long cdat = oidl + (long) ObjectId.RAW_LENGTH * count;
+        long edge = cdat + (long) CommitGraph.COMMIT_DATA_WIDTH * count;
+        long end = edge + 4L * edges.size();
+
+        ByteBuffer header = ByteBuffer.allocate((int) oidf);
+        header.putInt(CommitGraph.SIGNATURE).put((byte) 1).put((byte) 1).put((byte) chunks).put((byte) 0);
+        header.putInt(CommitGraph.CHUNK_OID_FANOUT).putLong(oidf);
+        header.putInt(CommitGraph.CHUNK_OID_LOOKUP).putLong(oidl);
+        header.putInt(CommitGraph.CHUNK_COMMIT_DATA).putLong(cdat);
+        if (!edges.isEmpty()) header.putInt(CommitGraph.CHUNK_EXTRA_EDGES).putLong(edge);
+        header.putInt(0).putLong(end);
+        write(header, sha1, file);
+
+        ByteBuffer fanout = ByteBuffer.allocate(256 * 4);
+        int n = 0;
+        for (int b = 0; b < 256; b++) {
+            while (n < count && sorted.get(n).id.firstByte() <= b) n++;
+            fanout.putInt(n);
+        }
+        write(fanout, sha1, file);
+
+        byte[] raw = new byte[ObjectId.RAW_LENGTH];
+        for (Node node : sorted) {
+            node.id.copyRawTo(raw, 0);
+            sha1.update(raw);
+            file.write(raw);
+        }
+
+        ByteBuffer data = ByteBuffer.allocate(CommitGraph.COMMIT_DATA_WIDTH);
+        int edgeIndex = 0;
+        for (Node node : sorted) {
+            data.clear();
+            node.tree.copyRawTo(data.array(), 0);
+            data.position(ObjectId.RAW_LENGTH);
+            Node[] parents = node.parents;
+            data.putInt(parents.length > 0 ? parents[0].position : CommitGraph.NO_PARENT);
+            if (parents.length > 2) {
+                data.putInt(CommitGraph.EXTRA_EDGES_NEEDED | edgeIndex);
+                edgeIndex += parents.length - 1;
+            } else {
+                data.putInt(parents.length > 1 ? parents[1].position : CommitGraph.NO_PARENT);
+            }
+            long time = node.commitTime;
+            data.putInt(node.generation << 2 | (int) ((time >>> 32) & 3));
+            data.putInt((int) time);
+            write(data, sha1, file);
+        }
+
+        ByteBuffer extra = ByteBuffer.allocate(4 * edges.size());
+        for (int e : edges) extra.putInt(e);
+        write(extra, sha1, file);
+
+        file.write(sha1.digest());
+    }
+
+    private static void write(ByteBuffer buffer, MessageDigest sha1, OutputStream out) throws IOException {
+        sha1.update(buffer.array(), 0, buffer.position());
+        out.write(buffer.array(), 0, buffer.position());
+    }
+}
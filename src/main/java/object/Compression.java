@@ -0,0 +1,55 @@
+package object;
+
+import config.Config;
+
+import java.io.IOException;
+import java.util.Locale;
+import java.util.zip.Deflater;
+
+/**
+ * A zlib level and strategy for writing objects. {@link #FAST} suits bulk imports, where CPU is
+ * the bottleneck; {@link #BEST} suits archival, where every byte is kept for a long time.
+ *
+ * <p>The repository's choice comes from its config the way git reads it: {@code core.compression}
+ * is the default for everything, {@code core.looseCompression} and {@code pack.compression}
+ * override it for loose objects and packs. Loose objects default to the fastest level, as in
+ * git. {@code core.compressionStrategy} ({@code default}, {@code filtered} or
+ * {@code huffman-only}) is our own addition; git ignores it.
+ */
+public record Compression(int level, int strategy) {
+    public static final Compression FAST = new Compression(Deflater.BEST_SPEED, Deflater.DEFAULT_STRATEGY);
+    public static final Compression DEFAULT = new Compression(Deflater.DEFAULT_COMPRESSION, Deflater.DEFAULT_STRATEGY);
+    public static final Compression BEST = new Compression(Deflater.BEST_COMPRESSION, Deflater.DEFAULT_STRATEGY);
+
+    public Compression {
+        if (level < Deflater.DEFAULT_COMPRESSION || level > Deflater.BEST_COMPRESSION) {
+            throw new IllegalArgumentException("bad zlib compression level " + level);
+        }
+        if (strategy != Deflater.DEFAULT_STRATEGY && strategy != Deflater.FILTERED && strategy != Deflater.HUFFMAN_ONLY) {
+            throw new IllegalArgumentException("bad zlib strategy " + strategy);
+        }
+    }
+
+    public static Compression loose(Config config) throws IOException {
+        return fromConfig(config, "core", "looseCompression", Deflater.BEST_SPEED);
+    }
+
+    public static Compression pack(Config config) throws IOException {
+        return fromConfig(config, "pack", "compression", Deflater.DEFAULT_COMPRESSION);
+    }
+
+    private static Compression fromConfig(Config config, String section, String name, int defaultLevel) throws IOException {
+        int level = config.getInt("core", null, "compression", defaultLevel);
+        level = config.getInt(section, null, name, level);
+        if (level < Deflater.DEFAULT_COMPRESSION || level > Deflater.BEST_COMPRESSION) {
+            throw new IOException("bad zlib compression level " + level);
+        }
+        String strategy = config.getString("core", null, "compressionStrategy");
+        return new Compression(level, strategy == null ? Deflater.DEFAULT_STRATEGY : switch (strategy.toLowerCase(Locale.ROOT)) {
+            case "default" -> Deflater.DEFAULT_STRATEGY;
+            case "filtered" -> Deflater.FILTERED;
+            case "huffman-only" -> Deflater.HUFFMAN_ONLY;
+            default -> throw new IOException("bad zlib strategy '" + strategy + "'");
+        });
+    }
+}
@@ -0,0 +1,75 @@
+package object;
+
+import java.io.IOException;
+
+/**
+ * Applies git's binary delta format: two size varints followed by copy and insert instructions.
+ */
+final class Delta {
+    private Delta() {
+    }
+
+    /**
+     * Reads the result size from a delta's header without applying it.
+     */
+    static long resultSize(byte[] delta) {
+        int[] pos = {0};
+        readVarint(delta, pos);
+        return readVarint(delta, pos);
+    }
+
+    static byte[] apply(byte[] base, byte[] delta) throws IOException {
+        int[] pos = {0};
+        long baseSize = readVarint(delta, pos);
+        long resultSize = readVarint(delta, pos);
+        if (baseSize != base.length) throw new IOException("delta base size mismatch");
+        if (resultSize > Integer.MAX_VALUE - 8) throw new IOException("delta result too large");
+
+        byte[] result = new byte[(int) resultSize];
+        int out = 0;
+        int p = pos[0];
+        while (p < delta.length) {
+            int cmd = delta[p++] & 0xFF;
+            if ((cmd & 0x80) != 0) {
+                int offset = 0;
+                int size = 0;
+                if ((cmd & 0x01) != 0) offset = delta[p++] & 0xFF;
+                if ((cmd & 0x02) != 0) offset |= (delta[p++] & 0xFF) << 8;
+                if ((cmd & 0x04) != 0) offset |= (delta[p++] & 0xFF) << 16;
+                if ((cmd & 0x08) != 0) offset |= (delta[p++] & 0xFF) << 24;
+                if ((cmd & 0x10) != 0) size = delta[p++] & 0xFF;
+                if ((cmd & 0x20) != 0) size |= (delta[p++] & 0xFF) << 8;
+                if ((cmd & 0x40) != 0) size |= (delta[p++] & 0xFF) << 16;
+                if (size == 0) size = 0x10000;
+                if (offset < 0 || offset + size > base.length || out + size > result.length) {
+                    throw new IOException("delta copy out of bounds");
+                }
+                System.arraycopy(base, offset, result, out, size);
+                out += size;
+            } else if (cmd != 0) {
+                if (p + cmd > delta.length || out + cmd > result.length) {
+                    throw new IOException("delta insert out of bounds");
+                }
+                System.arraycopy(delta, p, result, out, cmd);
+                p += cmd;
+                out += cmd;
+            } else {
+                throw new IOException("unexpected delta opcode 0");
+            }
+        }
+        if (out != result.length) throw new IOException("delta result size mismatch");
+        return result;
+    }
+
+    private static long readVarint(byte[] data, int[] pos) {
+        long value = 0;
+        int shift = 0;
+        int b;
+        do {
+            b = data[pos[0]++] & 0xFF;
+            value |= (long) (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return value;
+    }
+}
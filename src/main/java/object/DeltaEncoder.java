@@ -0,0 +1,177 @@
+package object;
+
+import java.util.Arrays;
+
+/**
+ * Produces git binary deltas. The base is indexed by a hash of every aligned 16-byte block;
+ * the target is scanned with a rolling hash of the same width and each candidate match is
+ * extended as far as it goes in both directions.
+ */
+final class DeltaEncoder {
+    private static final int BLOCK = 16;
+    private static final int PRIME = 0x01000193;
+    private static final int PRIME_POW = pow(PRIME, BLOCK - 1);
+    private static final int MAX_CHAIN = 64;
+    private static final int MAX_COPY = 0x10000;
+    private static final int MAX_INSERT = 127;
+
+    private DeltaEncoder() {
+    }
+
+    /**
+     * A reusable index over one base; built once per window slot and shared by every target
+     * compared against it.
+     */
+    static final class Index {
+        final byte[] base;
+        final int[] heads;
+        final int[] next;
+        final int shift;
+
+        Index(byte[] base) {
+            this.base = base;
+            int blocks = base.length / BLOCK;
+            int bits = Math.max(4, 32 - Integer.numberOfLeadingZeros(Math.max(1, blocks)));
+            this.heads = new int[1 << bits];
+            this.next = new int[blocks];
+            this.shift = 32 - bits;
+            Arrays.fill(heads, -1);
+            // Insert from the end so each chain lists earlier blocks first.
+            for (int b = blocks - 1; b >= 0; b--) {
+                int bucket = bucket(hash(base, b * BLOCK), shift);
+                next[b] = heads[bucket];
+                heads[bucket] = b;
+            }
+        }
+    }
+
+    /**
+     * Returns a delta that rebuilds {@code target} from the indexed base, or null if it would be
+     * larger than {@code maxSize} bytes.
+     */
+    static byte[] encode(Index index, byte[] target, int maxSize) {
+        byte[] base = index.base;
+        Output out = new Output(Math.min(maxSize, 1024) + 32);
+        out.varint(base.length);
+        out.varint(target.length);
+
+        int insertStart = 0;
+        int p = 0;
+        int h = target.length >= BLOCK ? hash(target, 0) : 0;
+        while (p + BLOCK <= target.length) {
+            int bestLen = 0;
+            int bestOff = 0;
+            int steps = 0;
+            for (int b = index.heads[bucket(h, index.shift)]; b >= 0 && steps < MAX_CHAIN; b = index.next[b], steps++) {
+                int off = b * BLOCK;
+                int len = matchLength(base, off, target, p);
+                if (len > bestLen) {
+                    bestLen = len;
+                    bestOff = off;
+                    if (p + len == target.length) break;
+                }
+            }
+
+            if (bestLen >= BLOCK) {
+                while (bestOff > 0 && p > insertStart && base[bestOff - 1] == target[p - 1]) {
+                    bestOff--;
+                    p--;
+                    bestLen++;
+                }
+                out.insert(target, insertStart, p);
+                out.copy(bestOff, bestLen);
+                p += bestLen;
+                insertStart = p;
+                if (p + BLOCK <= target.length) h = hash(target, p);
+            } else {
+                if (p + BLOCK < target.length) {
+                    h = (h - (target[p] & 0xFF) * PRIME_POW) * PRIME + (target[p + BLOCK] & 0xFF);
+                }
+                p++;
+            }
+            if (out.size > maxSize) return null;
+        }
+        out.insert(target, insertStart, target.length);
+        return out.size > maxSize ? null : Arrays.copyOf(out.buf, out.size);
+    }
+
+    private static int matchLength(byte[] base, int off, byte[] target, int p) {
+        int max = Math.min(base.length - off, target.length - p);
+        int m = Arrays.mismatch(base, off, off + max, target, p, p + max);
+        return m < 0 ? max : m;
+    }
+
+    private static int hash(byte[] data, int off) {
+        int h = 0;
+        for (int i = 0; i < BLOCK; i++) h = h * PRIME + (data[off + i] & 0xFF);
+        return h;
+    }
+
+    private static int bucket(int h, int shift) {
+        return (h * 0x9E3779B1) >>> shift;
+    }
+
+    private static int pow(int b, int e) {
+        int r = 1;
+        for (int i = 0; i < e; i++) r *= b;
+        return r;
+    }
+
+    private static final class Output {
+        byte[] buf;
+        int size;
+
+        Output(int capacity) {
+            buf = new byte[capacity];
+        }
+
+        void write(int b) {
+            if (size == buf.length) buf = Arrays.copyOf(buf, buf.length * 2);
+            buf[size++] = (byte) b;
+        }
+
+        void varint(long v) {
+            while (v >= 0x80) {
+                write((int) (v & 0x7F) | 0x80);
+                v >>>= 7;
+            }
+            write((int) v);
+        }
+
+        void insert(byte[] data, int from, int to) {
+            while (from < to) {
+                int n = Math.min(MAX_INSERT, to - from);
+                write(n);
+                for (int i = 0; i < n; i++) write(data[from + i]);
+                from += n;
+            }
+        }
+
+        void copy(int offset, int length) {
+            while (length > 0) {
+                int n = Math.min(MAX_COPY, length);
+                int cmd = 0x80;
+                int at = size;
+                write(0);
+                for (int i = 0; i < 4; i++) {
+                    int b = (offset >>> (8 * i)) & 0xFF;
+                    if (b != 0) {
+                        cmd |= 1 << i;
+                        write(b);
+                    }
+                }
+                int encoded = n == MAX_COPY ? 0 : n;
+                for (int i = 0; i < 3; i++) {
+                    int b = (encoded >>> (8 * i)) & 0xFF;
+                    if (b != 0) {
+                        cmd |= 0x10 << i;
+                        write(b);
+                    }
+                }
+                buf[at] = (byte) cmd;
+                offset += n;
+                length -= n;
+            }
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package object;
+
+import trace.Phase;
+import trace.Trace;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Inflates a zlib stream read from a channel, using a pooled {@link Inflater} and direct input
+ * buffer that are handed back on close. The channel reads straight into the direct buffer and
+ * zlib inflates from it in place. Unlike {@link java.util.zip.InflaterInputStream}, input that
+ * ends before the zlib stream does is reported as an error.
+ */
+final class InflatingInputStream extends InputStream {
+    private final ReadableByteChannel source;
+    private Inflater inflater = ObjectCodec.inflater();
+    private ByteBuffer input = ObjectCodec.buffer();
+    private final byte[] single = new byte[1];
+
+    InflatingInputStream(ReadableByteChannel source) {
+        this.source = source;
+    }
+
+    @Override
+    public int read() throws IOException {
+        return read(single, 0, 1) < 0 ? -1 : single[0] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (inflater == null) throw new IOException("stream closed");
+        if (len == 0) return 0;
+        try {
+            while (true) {
+                long start = Trace.start();
+                int n = inflater.inflate(b, off, len);
+                Trace.end(Phase.INFLATE, start, n);
+                if (n > 0) return n;
+                if (inflater.finished()) return -1;
+                if (inflater.needsDictionary()) throw new IOException("zlib stream needs a preset dictionary");
+                if (inflater.needsInput()) {
+                    input.clear();
+                    start = Trace.start();
+                    int read = source.read(input);
+                    if (read < 0) throw new EOFException("unexpected end of zlib stream");
+                    Trace.end(Phase.READ, start, read);
+                    inflater.setInput(input.flip());
+                }
+            }
+        } catch (DataFormatException e) {
+            throw new IOException("corrupt zlib stream: " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (inflater != null) {
+            ObjectCodec.release(inflater);
+            ObjectCodec.release(input);
+            inflater = null;
+            input = null;
+        }
+        source.close();
+    }
+}
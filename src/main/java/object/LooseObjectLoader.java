@@ -0,0 +1,109 @@
+package object;
+
+import java.io.EOFException;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A zlib-compressed file under {@code .git/objects/xx/}. Only the header is inflated until
+ * the payload is asked for, and the payload is streamed through a fixed-size buffer.
+ */
+final class LooseObjectLoader extends ObjectLoader {
+    private final Path path;
+    private ObjectType type;
+    private long size = -1;
+
+    LooseObjectLoader(Path path) {
+        this.path = path;
+    }
+
+    @Override
+    public ObjectType type() throws IOException {
+        if (type == null) {
+            // open() parses the header; the body is not needed.
+            open().close();
+        }
+        return type;
+    }
+
+    @Override
+    public long size() throws IOException {
+        if (size < 0) type();
+        return size;
+    }
+
+    @Override
+    public InputStream openStream() throws IOException {
+        return open();
+    }
+
+    private InputStream open() throws IOException {
+        InputStream in = new InflatingInputStream(FileChannel.open(path, StandardOpenOption.READ));
+        try {
+            String header = readHeader(in);
+            int space = header.indexOf(' ');
+            if (space <= 0) throw new IOException("corrupted object header in " + path);
+            type = ObjectType.fromName(header.substring(0, space));
+            size = Long.parseLong(header.substring(space + 1));
+        } catch (IOException | RuntimeException e) {
+            in.close();
+            throw e instanceof IOException io ? io : new IOException("corrupted object header in " + path, e);
+        }
+        return new BoundedInputStream(in, size);
+    }
+
+    private static String readHeader(InputStream in) throws IOException {
+        StringBuilder header = new StringBuilder(32);
+        int b;
+        while ((b = in.read()) != 0) {
+            if (b < 0) throw new EOFException("truncated object header");
+            if (header.length() > 32) throw new IOException("object header too long");
+            header.append((char) b);
+        }
+        return header.toString();
+    }
+
+    /**
+     * Ends the payload at the size the header declared and reports a short or long object as an
+     * error; the check for a long one costs one extra read once the payload has been consumed.
+     */
+    private static final class BoundedInputStream extends FilterInputStream {
+        private long remaining;
+        private boolean checkedEnd;
+
+        BoundedInputStream(InputStream in, long size) {
+            super(in);
+            this.remaining = size;
+        }
+
+        private int end() throws IOException {
+            if (!checkedEnd) {
+                checkedEnd = true;
+                if (in.read() >= 0) throw new IOException("object is longer than its header size");
+            }
+            return -1;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (remaining == 0) return end();
+            int b = in.read();
+            if (b < 0) throw new EOFException("object is shorter than its header size");
+            remaining--;
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (remaining == 0) return end();
+            int n = in.read(b, off, (int) Math.min(len, remaining));
+            if (n < 0) throw new EOFException("object is shorter than its header size");
+            remaining -= n;
+            return n;
+        }
+    }
+}
@@ -0,0 +1,444 @@
+package object;
+
+import trace.Phase;
+import trace.Trace;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AccessDeniedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.function.Supplier;
+import java.util.zip.Deflater;
+
+/**
+ * Hashes objects and stores them as loose files. Files above {@link #STREAM_THRESHOLD} are never
+ * held in memory: each chunk read from the channel updates the SHA-1 and the deflater together,
+ * and the compressed output goes to a temp file that is renamed once the id is known.
+ *
+ * <p>Writes are safe against other writers of the same object directory. Nothing is compressed
+ * for an object that already exists; an object is written to a temp file and atomically renamed
+ * into place, so a reader never sees a torn file; and concurrent in-process writes of one id are
+ * collapsed onto a single writer, keyed per id rather than behind a global lock.
+ *
+ * <p>A {@linkplain #bulk bulk-checkin} writer also makes its objects durable. Objects are written
+ * unsynced and left as temp files; {@link #flush} then syncs every one of them in a single
+ * concurrent pass, renames them into place and syncs each touched directory once. An object's
+ * final name therefore only ever refers to synced data, at far less than one blocking fsync per
+ * object.
+ */
+public final class LooseObjectWriter implements Closeable {
+    public static final long STREAM_THRESHOLD = 1024 * 1024;
+    private static final int CHUNK_SIZE = ObjectCodec.BUFFER_SIZE;
+    private static final String TEMP_PREFIX = "tmp_obj_";
+
+    private static final ThreadLocal<MessageDigest> SHA1 = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    });
+
+    private final Path objectsDir;
+    private final Path[] fanoutDirs;
+    private final Compression compression;
+    private final boolean bulk;
+    // 1 once a fan-out directory is known to exist, so each is created at most once per writer.
+    private final AtomicIntegerArray fanoutExists = new AtomicIntegerArray(256);
+    private final AtomicBoolean createdFanout = new AtomicBoolean();
+    private final ConcurrentHashMap<ObjectId, CompletableFuture<Void>> inFlight = new ConcurrentHashMap<>();
+    // Bulk mode only: objects written but not yet synced and renamed into place.
+    private final ConcurrentHashMap<ObjectId, Path> pending = new ConcurrentHashMap<>();
+
+    /**
+     * A writer at git's default loose-object level, {@link Compression#FAST}.
+     */
+    public LooseObjectWriter(Path objectsDir) {
+        this(objectsDir, Compression.FAST);
+    }
+
+    public LooseObjectWriter(Path objectsDir, Compression compression) {
+        this(objectsDir, compression, false);
+    }
+
+    private LooseObjectWriter(Path objectsDir, Compression compression, boolean bulk) {
+        this.objectsDir = objectsDir;
+        this.fanoutDirs = ObjectDatabase.fanoutDirectories(objectsDir);
+        this.compression = compression;
+        this.bulk = bulk;
+    }
+
+    /**
+     * A writer in bulk-checkin mode: its objects become visible, durably, when it is flushed or
+     * closed.
+     */
+    public static LooseObjectWriter bulk(Path objectsDir, Compression compression) {
+        return new LooseObjectWriter(objectsDir, compression, true);
+    }
+
+    /**
+     * Hashes and stores an in-memory object; nothing is compressed if the object already exists.
+     */
+    public ObjectId insert(ObjectType type, byte[] data) throws IOException {
+        ObjectId id = hash(type, data);
+        store(id, () -> deflate(type, data));
+        return id;
+    }
+
+    /**
+     * Hashes and stores a file's contents as an object of the given type.
+     */
+    public ObjectId insert(ObjectType type, Path file) throws IOException {
+        long size = Files.size(file);
+        if (size <= STREAM_THRESHOLD) {
+            return insert(type, read(file));
+        }
+
+        // The id is only known at the end, so the temp file cannot go in its fan-out directory yet.
+        Path tmp = TempFiles.name(objectsDir, TEMP_PREFIX);
+        try {
+            ObjectId id;
+            try (FileChannel in = FileChannel.open(file, StandardOpenOption.READ);
+                 FileChannel out = TempFiles.createReadOnly(tmp)) {
+                id = stream(type, size, in, compression, out);
+            }
+            if (!has(id)) {
+                ensureFanout(id);
+                Path local = Files.move(tmp, fanoutDirs[id.firstByte()].resolve(tmp.getFileName()), StandardCopyOption.ATOMIC_MOVE);
+                publish(id, local);
+            }
+            return id;
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    /**
+     * True if the object exists, or is waiting for this bulk writer's flush.
+     */
+    public boolean has(ObjectId id) {
+        return pending.containsKey(id) || Files.exists(objectPath(id));
+    }
+
+    public Path objectPath(ObjectId id) {
+        return fanoutDirs[id.firstByte()].resolve(id.looseFileName());
+    }
+
+    /**
+     * Writes an already-deflated loose object, unless it exists or is being written already.
+     */
+    public void writeCompressed(ObjectId id, byte[] compressed) throws IOException {
+        store(id, () -> compressed);
+    }
+
+    /**
+     * Syncs and publishes everything a bulk writer has written so far. Does nothing for a
+     * writer that is not in bulk mode, whose objects are visible as soon as they are written.
+     */
+    public void flush() throws IOException {
+        if (pending.isEmpty()) return;
+        List<Map.Entry<ObjectId, Path>> batch = new ArrayList<>(pending.entrySet());
+        long start = Trace.start();
+
+        // The syncs are issued together so the file system can fold them into few journal commits.
+        try (ExecutorService sync = Executors.newVirtualThreadPerTaskExecutor()) {
+            List<Future<?>> done = new ArrayList<>(batch.size());
+            for (Map.Entry<ObjectId, Path> e : batch) {
+                done.add(sync.submit(() -> {
+                    // The file is read-only by now; a read channel can sync it all the same.
+                    try (FileChannel ch = FileChannel.open(e.getValue(), StandardOpenOption.READ)) {
+                        ch.force(true);
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> f : done) {
+                try {
+                    f.get();
+                } catch (ExecutionException e) {
+                    throw e.getCause() instanceof IOException io ? io : new IOException(e.getCause());
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("interrupted while syncing objects");
+                }
+            }
+        }
+
+        boolean[] touched = new boolean[256];
+        for (Map.Entry<ObjectId, Path> e : batch) {
+            ObjectId id = e.getKey();
+            moveIntoPlace(id, e.getValue());
+            touched[id.firstByte()] = true;
+            pending.remove(id);
+        }
+        for (int i = 0; i < touched.length; i++) {
+            if (touched[i]) syncDirectory(fanoutDirs[i]);
+        }
+        if (createdFanout.getAndSet(false)) syncDirectory(objectsDir);
+        Trace.end(Phase.FSYNC, start, batch.size(), 0);
+    }
+
+    @Override
+    public void close() throws IOException {
+        flush();
+    }
+
+    /**
+     * Stores an object unless it is already present. The first thread to claim the id does the
+     * compression and write; any other thread storing the same id meanwhile waits for it.
+     */
+    private void store(ObjectId id, Supplier<byte[]> compressed) throws IOException {
+        if (has(id)) return;
+        CompletableFuture<Void> claim = new CompletableFuture<>();
+        CompletableFuture<Void> other = inFlight.putIfAbsent(id, claim);
+        if (other != null) {
+            try {
+                other.join();
+                return;
+            } catch (CompletionException e) {
+                throw e.getCause() instanceof IOException io ? io : new IOException(e.getCause());
+            }
+        }
+        try {
+            if (!has(id)) write(id, compressed.get());
+            claim.complete(null);
+        } catch (IOException | RuntimeException e) {
+            claim.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(id, claim);
+        }
+    }
+
+    private void write(ObjectId id, byte[] compressed) throws IOException {
+        long start = Trace.start();
+        ensureFanout(id);
+        Path tmp = TempFiles.name(fanoutDirs[id.firstByte()], TEMP_PREFIX);
+        try {
+            try (FileChannel out = TempFiles.createReadOnly(tmp)) {
+                ByteBuffer buffer = ByteBuffer.wrap(compressed);
+                while (buffer.hasRemaining()) out.write(buffer);
+            }
+            publish(id, tmp);
+            Trace.end(Phase.WRITE, start, compressed.length);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(tmp);
+            throw e;
+        }
+    }
+
+    /**
+     * Makes a fully written temp file in the object's fan-out directory the object, now or, in
+     * bulk mode, at the next flush.
+     */
+    private void publish(ObjectId id, Path tmp) throws IOException {
+        if (!bulk) {
+            moveIntoPlace(id, tmp);
+        } else if (pending.putIfAbsent(id, tmp) != null) {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    /**
+     * Renames over any copy another process stored meanwhile; both hold the same bytes, and the
+     * rename is atomic, so readers see one complete file or the other.
+     */
+    private void moveIntoPlace(ObjectId id, Path tmp) throws IOException {
+        Files.move(tmp, objectPath(id), StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private void ensureFanout(ObjectId id) throws IOException {
+        int b = id.firstByte();
+        if (fanoutExists.get(b) == 0) {
+            if (!Files.isDirectory(fanoutDirs[b])) {
+                Files.createDirectories(fanoutDirs[b]);
+                createdFanout.set(true);
+            }
+            fanoutExists.set(b, 1);
+        }
+    }
+
+    /**
+     * Makes renames and new entries in a directory durable. Some platforms cannot open a
+     * directory for syncing; there the rename itself is all we can do.
+     */
+    private static void syncDirectory(Path dir) throws IOException {
+        try (FileChannel ch = FileChannel.open(dir, StandardOpenOption.READ)) {
+            ch.force(true);
+        } catch (AccessDeniedException | UnsupportedOperationException e) {
+            // Not supported for directories here (Windows).
+        }
+    }
+
+    /**
+     * This thread's digest, cleared of whatever a hash that failed part way through left in it.
+     */
+    private static MessageDigest sha1() {
+        MessageDigest sha1 = SHA1.get();
+        sha1.reset();
+        return sha1;
+    }
+
+    public static ObjectId hash(ObjectType type, byte[] data) {
+        long start = Trace.start();
+        MessageDigest sha1 = sha1();
+        sha1.update(header(type, data.length));
+        sha1.update(data);
+        ObjectId id = ObjectId.fromRaw(sha1.digest());
+        Trace.end(Phase.HASH, start, data.length);
+        return id;
+    }
+
+    /**
+     * Hashes a file as an object of the given type without storing it or holding it in memory.
+     */
+    public static ObjectId hash(ObjectType type, Path file) throws IOException {
+        long size = Files.size(file);
+        if (size <= STREAM_THRESHOLD) {
+            return hash(type, read(file));
+        }
+        try (FileChannel in = FileChannel.open(file, StandardOpenOption.READ)) {
+            return stream(type, size, in, null, null);
+        }
+    }
+
+    /**
+     * Hashes an object read from a stream, such as a stored object being checked against its
+     * name, without holding it in memory. The stream must hold exactly {@code size} bytes.
+     */
+    public static ObjectId hash(ObjectType type, long size, InputStream in) throws IOException {
+        long start = Trace.start();
+        MessageDigest sha1 = sha1();
+        sha1.update(header(type, size));
+        byte[] buffer = new byte[64 * 1024];
+        long total = 0;
+        int n;
+        while ((n = in.read(buffer)) > 0) {
+            sha1.update(buffer, 0, n);
+            total += n;
+            if (total > size) throw new IOException("object is longer than its header size");
+        }
+        if (total != size) throw new EOFException("object is shorter than its header size");
+        ObjectId id = ObjectId.fromRaw(sha1.digest());
+        Trace.end(Phase.HASH, start, size);
+        return id;
+    }
+
+    /**
+     * Compresses an in-memory object at this writer's level, ready for {@link #writeCompressed}.
+     */
+    public byte[] deflate(ObjectType type, byte[] data) {
+        return ObjectCodec.deflate(compression, header(type, data.length), data);
+    }
+
+    /**
+     * Feeds the header and then each chunk of {@code in} to the digest, and to a deflater when
+     * {@code out} is given. The size is taken from metadata up front, so a file that changes
+     * length while it is read is rejected rather than stored under a wrong header.
+     */
+    private static ObjectId stream(ObjectType type, long size, FileChannel in, Compression compression, FileChannel out) throws IOException {
+        MessageDigest sha1 = sha1();
+        Deflater deflater = out == null ? null : ObjectCodec.deflater(compression);
+        ByteBuffer compressed = out == null ? null : ObjectCodec.buffer();
+        // A heap chunk lets the digest and zlib both read the array in place.
+        ByteBuffer chunk = ByteBuffer.allocate(CHUNK_SIZE);
+        try {
+            byte[] header = header(type, size);
+            sha1.update(header);
+            if (deflater != null) {
+                deflater.setInput(header);
+                drain(deflater, compressed, out);
+            }
+
+            long remaining = size;
+            long hashNanos = 0;
+            while (remaining > 0) {
+                chunk.clear();
+                long start = Trace.start();
+                int n = in.read(chunk);
+                if (n < 0) throw new EOFException("file shrank while being hashed");
+                Trace.end(Phase.READ, start, n);
+                remaining -= n;
+                if (remaining < 0) throw new IOException("file grew while being hashed");
+                start = Trace.start();
+                sha1.update(chunk.array(), 0, n);
+                hashNanos += Trace.start() - start;
+                if (deflater != null) {
+                    deflater.setInput(chunk.array(), 0, n);
+                    drain(deflater, compressed, out);
+                }
+            }
+            chunk.clear();
+            if (in.read(chunk) > 0) throw new IOException("file grew while being hashed");
+
+            if (deflater != null) {
+                deflater.finish();
+                while (!deflater.finished()) {
+                    write(deflater, compressed, out);
+                }
+            }
+            ObjectId id = ObjectId.fromRaw(sha1.digest());
+            // The hash of one object is one count, however many chunks it took.
+            Trace.end(Phase.HASH, Trace.start() - hashNanos, size);
+            return id;
+        } finally {
+            if (deflater != null) {
+                ObjectCodec.release(deflater);
+                ObjectCodec.release(compressed);
+            }
+        }
+    }
+
+    private static void drain(Deflater deflater, ByteBuffer buffer, FileChannel out) throws IOException {
+        while (!deflater.needsInput()) {
+            write(deflater, buffer, out);
+        }
+    }
+
+    private static void write(Deflater deflater, ByteBuffer buffer, FileChannel out) throws IOException {
+        buffer.clear();
+        long start = Trace.start();
+        long before = deflater.getBytesRead();
+        deflater.deflate(buffer);
+        Trace.end(Phase.DEFLATE, start, deflater.getBytesRead() - before);
+        buffer.flip();
+        start = Trace.start();
+        int n = buffer.remaining();
+        while (buffer.hasRemaining()) out.write(buffer);
+        Trace.end(Phase.WRITE, start, n);
+    }
+
+    private static byte[] read(Path file) throws IOException {
+        long start = Trace.start();
+        byte[] data = Files.readAllBytes(file);
+        Trace.end(Phase.READ, start, data.length);
+        return data;
+    }
+
+    static byte[] header(ObjectType type, long size) {
+        return (type.typeName() + " " + size + "\0").getBytes(StandardCharsets.US_ASCII);
+    }
+}
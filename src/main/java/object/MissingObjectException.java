@@ -0,0 +1,16 @@
+package object;
+
+import java.io.IOException;
+
+/**
+ * Thrown when an object that must exist, such as a delta base or a referenced tree, is absent.
+ */
+public class MissingObjectException extends IOException {
+    public MissingObjectException(String id) {
+        super("missing object " + id);
+    }
+
+    public MissingObjectException(ObjectId id) {
+        this(id.name());
+    }
+}
@@ -0,0 +1,103 @@
+package object;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A least-recently-used cache of inflated objects, bounded by the total bytes it holds rather
+ * than by entry count. Objects larger than {@code maxObjectBytes} are never cached, so one big
+ * blob cannot flush everything else. Ids are content hashes, so one cache can safely serve every
+ * repository in the process.
+ *
+ * <p>The limits can be set with the {@code git.objectCache.maxBytes} and
+ * {@code git.objectCache.maxObjectBytes} system properties; a limit of 0 disables caching.
+ */
+public final class ObjectCache {
+    public static final long DEFAULT_MAX_BYTES = 64L * 1024 * 1024;
+    public static final long DEFAULT_MAX_OBJECT_BYTES = 1024 * 1024;
+
+    private final long maxBytes;
+    private final long maxObjectBytes;
+    private final LinkedHashMap<ObjectId, Cached> entries = new LinkedHashMap<>(256, 0.75f, true);
+    private long totalBytes;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    public ObjectCache(long maxBytes, long maxObjectBytes) {
+        this.maxBytes = maxBytes;
+        this.maxObjectBytes = Math.min(maxObjectBytes, maxBytes);
+    }
+
+    static ObjectCache fromSystemProperties() {
+        return new ObjectCache(
+                Long.getLong("git.objectCache.maxBytes", DEFAULT_MAX_BYTES),
+                Long.getLong("git.objectCache.maxObjectBytes", DEFAULT_MAX_OBJECT_BYTES));
+    }
+
+    record Cached(ObjectType type, byte[] data) {
+    }
+
+    Cached get(ObjectId id) {
+        Cached cached;
+        synchronized (this) {
+            cached = entries.get(id);
+        }
+        if (cached != null) {
+            hits.increment();
+        } else {
+            misses.increment();
+        }
+        return cached;
+    }
+
+    void put(ObjectId id, ObjectType type, byte[] data) {
+        if (data.length > maxObjectBytes) return;
+        synchronized (this) {
+            Cached previous = entries.put(id, new Cached(type, data));
+            if (previous != null) totalBytes -= previous.data.length;
+            totalBytes += data.length;
+
+            Iterator<Map.Entry<ObjectId, Cached>> eldest = entries.entrySet().iterator();
+            while (totalBytes > maxBytes && eldest.hasNext()) {
+                totalBytes -= eldest.next().getValue().data.length;
+                eldest.remove();
+                evictions.increment();
+            }
+        }
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+        totalBytes = 0;
+    }
+
+    public long hits() {
+        return hits.sum();
+    }
+
+    public long misses() {
+        return misses.sum();
+    }
+
+    public long evictions() {
+        return evictions.sum();
+    }
+
+    public synchronized long totalBytes() {
+        return totalBytes;
+    }
+
+    public synchronized int objectCount() {
+        return entries.size();
+    }
+
+    @Override
+    public String toString() {
+        return "object cache: " + hits() + " hits, " + misses() + " misses, " + evictions() + " evictions, "
+                + objectCount() + " objects / " + totalBytes() + " bytes held";
+    }
+}
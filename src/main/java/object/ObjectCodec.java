@@ -0,0 +1,114 @@
+package object;
+
+import trace.Phase;
+import trace.Trace;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * The zlib codec behind every object read and write. Inflaters, deflaters and direct I/O
+ * buffers are kept reset per thread, so reading or writing many objects in a row allocates
+ * neither native zlib state nor buffers for each one. A pooled deflater is switched to the
+ * {@link Compression} each caller asks for.
+ *
+ * <p>Readers built on it ({@link InflatingInputStream}, {@link PackFile}) treat input that ends
+ * before its zlib stream does, or that is not zlib at all, as an error rather than returning a
+ * short result or looping forever.
+ */
+final class ObjectCodec {
+    static final int BUFFER_SIZE = 128 * 1024;
+    private static final int MAX_IDLE = 4;
+
+    private static final ThreadLocal<ArrayDeque<Inflater>> INFLATERS = ThreadLocal.withInitial(ArrayDeque::new);
+    private static final ThreadLocal<ArrayDeque<Deflater>> DEFLATERS = ThreadLocal.withInitial(ArrayDeque::new);
+    private static final ThreadLocal<ArrayDeque<ByteBuffer>> BUFFERS = ThreadLocal.withInitial(ArrayDeque::new);
+
+    private ObjectCodec() {
+    }
+
+    static Inflater inflater() {
+        Inflater inflater = INFLATERS.get().pollFirst();
+        return inflater != null ? inflater : new Inflater();
+    }
+
+    static void release(Inflater inflater) {
+        ArrayDeque<Inflater> idle = INFLATERS.get();
+        if (idle.size() < MAX_IDLE) {
+            inflater.reset();
+            idle.addFirst(inflater);
+        } else {
+            inflater.end();
+        }
+    }
+
+    static Deflater deflater(Compression compression) {
+        Deflater deflater = DEFLATERS.get().pollFirst();
+        if (deflater == null) deflater = new Deflater();
+        // Takes effect from the first deflate call, since nothing has been compressed since the reset.
+        deflater.setLevel(compression.level());
+        deflater.setStrategy(compression.strategy());
+        return deflater;
+    }
+
+    static void release(Deflater deflater) {
+        ArrayDeque<Deflater> idle = DEFLATERS.get();
+        if (idle.size() < MAX_IDLE) {
+            deflater.reset();
+            idle.addFirst(deflater);
+        } else {
+            deflater.end();
+        }
+    }
+
+    /**
+     * A cleared direct buffer of {@link #BUFFER_SIZE} bytes. Channels read into and write from
+     * it without an intermediate copy, and zlib works on it in place.
+     */
+    static ByteBuffer buffer() {
+        ByteBuffer buffer = BUFFERS.get().pollFirst();
+        return buffer != null ? buffer.clear() : ByteBuffer.allocateDirect(BUFFER_SIZE);
+    }
+
+    static void release(ByteBuffer buffer) {
+        ArrayDeque<ByteBuffer> idle = BUFFERS.get();
+        if (idle.size() < MAX_IDLE) idle.addFirst(buffer);
+    }
+
+    /**
+     * Compresses {@code header} followed by {@code data} as one zlib stream.
+     */
+    static byte[] deflate(Compression compression, byte[] header, byte[] data) {
+        long start = Trace.start();
+        Deflater deflater = deflater(compression);
+        try {
+            long inputLength = (long) header.length + data.length;
+            // zlib's worst case for stored blocks, so one pass always fits.
+            long bound = inputLength + (inputLength >> 12) + (inputLength >> 14) + (inputLength >> 25) + 64;
+            byte[] out = new byte[(int) Math.min(bound, Integer.MAX_VALUE - 8)];
+            int n = 0;
+            deflater.setInput(header);
+            while (!deflater.needsInput()) {
+                if (n == out.length) out = Arrays.copyOf(out, out.length * 2);
+                n = deflateInto(deflater, out, n);
+            }
+            deflater.setInput(data);
+            deflater.finish();
+            while (!deflater.finished()) {
+                if (n == out.length) out = Arrays.copyOf(out, out.length * 2);
+                n = deflateInto(deflater, out, n);
+            }
+            Trace.end(Phase.DEFLATE, start, header.length + data.length);
+            return Arrays.copyOf(out, n);
+        } finally {
+            release(deflater);
+        }
+    }
+
+    private static int deflateInto(Deflater deflater, byte[] out, int n) {
+        return n + deflater.deflate(out, n, out.length - n);
+    }
+}
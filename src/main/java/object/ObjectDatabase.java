@@ -0,0 +1,242 @@
+package object;
+
+import java.io.IOException;
+import java.lang.foreign.Arena;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Finds objects in {@code .git/objects}: first in the memory-mapped packs, then as loose files.
+ * A miss rescans the pack directory once in case another process has repacked meanwhile.
+ */
+public final class ObjectDatabase implements AutoCloseable {
+    private static final ObjectCache CACHE = ObjectCache.fromSystemProperties();
+
+    private final Path objectsDir;
+    private final Path[] fanoutDirs;
+    // Inflater cannot read buffers from a closeable shared arena, so mappings are released by the GC.
+    private final Arena arena = Arena.ofAuto();
+    private final Map<Path, PackFile> packs = new LinkedHashMap<>();
+    private volatile List<PackFile> packList = List.of();
+
+    private ObjectDatabase(Path objectsDir) {
+        this.objectsDir = objectsDir;
+        this.fanoutDirs = fanoutDirectories(objectsDir);
+    }
+
+    /**
+     * Resolves the 256 {@code xx/} directories once, so building a loose path is a single resolve.
+     */
+    static Path[] fanoutDirectories(Path objectsDir) {
+        Path[] dirs = new Path[256];
+        for (int i = 0; i < 256; i++) {
+            dirs[i] = objectsDir.resolve(ObjectId.fromWords(i << 24, 0, 0, 0, 0).fanoutDirectory());
+        }
+        return dirs;
+    }
+
+    public static ObjectDatabase open(Path gitDir) throws IOException {
+        ObjectDatabase db = new ObjectDatabase(gitDir.resolve("objects"));
+        db.scanPacks();
+        return db;
+    }
+
+    public Path objectsDirectory() {
+        return objectsDir;
+    }
+
+    /**
+     * Returns a loader for the object named by 40 hex digits, or null if it does not exist.
+     */
+    public ObjectLoader open(String hex) throws IOException {
+        ObjectId id = ObjectId.tryParse(hex);
+        return id == null ? null : open(id);
+    }
+
+    public ObjectLoader open(ObjectId id) throws IOException {
+        ObjectCache.Cached cached = CACHE.get(id);
+        if (cached != null) return new CachingObjectLoader(id, CACHE, cached);
+
+        ObjectLoader loader = openUncached(id);
+        return loader == null ? null : new CachingObjectLoader(id, CACHE, loader);
+    }
+
+    private ObjectLoader openUncached(ObjectId id) throws IOException {
+        ObjectLoader loader = openPacked(id, packList);
+        if (loader != null) return loader;
+
+        Path loose = loosePath(id);
+        if (Files.isRegularFile(loose)) return new LooseObjectLoader(loose);
+
+        List<PackFile> before = packList;
+        if (scanPacks() != before) {
+            return openPacked(id, packList);
+        }
+        return null;
+    }
+
+    /**
+     * The inflated-object cache shared by every database in this process.
+     */
+    public static ObjectCache cache() {
+        return CACHE;
+    }
+
+    /**
+     * Like {@link #open(String)}, but a missing object is an error.
+     */
+    public ObjectLoader openRequired(String hex) throws IOException {
+        ObjectLoader loader = open(hex);
+        if (loader == null) throw new MissingObjectException(hex);
+        return loader;
+    }
+
+    public boolean has(ObjectId id) throws IOException {
+        for (PackFile pack : packList) {
+            if (pack.contains(id)) return true;
+        }
+        return Files.isRegularFile(loosePath(id));
+    }
+
+    public Path loosePath(ObjectId id) {
+        return fanoutDirs[id.firstByte()].resolve(id.looseFileName());
+    }
+
+    List<PackFile> packs() {
+        return packList;
+    }
+
+    /**
+     * Lists every loose object by walking the 256 fan-out directories.
+     */
+    public List<ObjectId> listLooseObjects() throws IOException {
+        List<ObjectId> ids = new ArrayList<>();
+        for (int i = 0; i < 256; i++) {
+            listLooseObjects(i, ids);
+        }
+        return ids;
+    }
+
+    /**
+     * Adds the loose objects whose first byte is {@code prefix} to {@code ids}.
+     */
+    public void listLooseObjects(int prefix, List<ObjectId> ids) throws IOException {
+        String hex = fanoutDirs[prefix].getFileName().toString();
+        try (DirectoryStream<Path> dir = Files.newDirectoryStream(fanoutDirs[prefix])) {
+            for (Path file : dir) {
+                ObjectId id = ObjectId.tryParse(hex + file.getFileName());
+                if (id != null) ids.add(id);
+            }
+        } catch (NoSuchFileException e) {
+            // Nothing stored under this prefix.
+        }
+    }
+
+    /**
+     * The loose copy of {@code id} alone, read from its file past the packs and the cache, for
+     * checking what is actually stored there.
+     */
+    public ObjectLoader openLoose(ObjectId id) {
+        return new LooseObjectLoader(loosePath(id));
+    }
+
+    /**
+     * Lists every object in every pack, in index order. Objects in several packs appear once per pack.
+     */
+    public List<ObjectId> listPackedObjects() {
+        List<ObjectId> ids = new ArrayList<>();
+        for (PackFile pack : packList) {
+            PackIndex index = pack.index();
+            for (int i = 0; i < index.objectCount(); i++) {
+                ids.add(index.idAt(i));
+            }
+        }
+        return ids;
+    }
+
+    /**
+     * The {@code .pack} files currently mapped, for commands that replace them.
+     */
+    public List<Path> packFiles() {
+        List<Path> paths = new ArrayList<>(packList.size());
+        for (PackFile pack : packList) paths.add(pack.path());
+        return paths;
+    }
+
+    /**
+     * Every object in one of the {@link #packFiles}, in index order.
+     */
+    public List<ObjectId> listPackedObjects(Path packFile) throws IOException {
+        PackIndex index = pack(packFile).index();
+        List<ObjectId> ids = new ArrayList<>(index.objectCount());
+        for (int i = 0; i < index.objectCount(); i++) {
+            ids.add(index.idAt(i));
+        }
+        return ids;
+    }
+
+    /**
+     * The copy of {@code id} in one of the {@link #packFiles} alone, read past the cache, or
+     * null if that pack does not hold it.
+     */
+    public ObjectLoader openPacked(Path packFile, ObjectId id) throws IOException {
+        return pack(packFile).open(id, this);
+    }
+
+    /**
+     * Checks one of the {@link #packFiles} against its trailing checksum and its index.
+     */
+    public void verifyPack(Path packFile) throws IOException {
+        pack(packFile).verify();
+    }
+
+    private PackFile pack(Path packFile) throws IOException {
+        for (PackFile pack : packList) {
+            if (pack.path().equals(packFile)) return pack;
+        }
+        throw new IOException("pack not open: " + packFile);
+    }
+
+    private ObjectLoader openPacked(ObjectId id, List<PackFile> candidates) throws IOException {
+        for (PackFile pack : candidates) {
+            ObjectLoader loader = pack.open(id, this);
+            if (loader != null) return loader;
+        }
+        return null;
+    }
+
+    /**
+     * Maps any {@code .idx} files not seen before. Returns the (possibly unchanged) pack list.
+     */
+    private synchronized List<PackFile> scanPacks() throws IOException {
+        List<Path> found = new ArrayList<>();
+        try (DirectoryStream<Path> dir = Files.newDirectoryStream(objectsDir.resolve("pack"), "pack-*.idx")) {
+            for (Path idx : dir) found.add(idx);
+        } catch (NoSuchFileException e) {
+            return packList;
+        }
+        boolean changed = false;
+        for (Path idx : found) {
+            if (!packs.containsKey(idx)) {
+                packs.put(idx, new PackFile(idx, arena));
+                changed = true;
+            }
+        }
+        if (changed) {
+            packList = List.copyOf(packs.values());
+        }
+        return packList;
+    }
+
+    @Override
+    public synchronized void close() {
+        packs.clear();
+        packList = List.of();
+    }
+}
@@ -0,0 +1,247 @@
+package object;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * An immutable 20-byte SHA-1 object name held as five ints, so an id costs one small object
+ * rather than a 40-character String or a separate array.
+ *
+ * <p>Hex conversion is table-driven: encoding looks up both digits of a byte at once and
+ * decoding maps each character through a 128-entry table, with no Formatter involved.
+ */
+public final class ObjectId implements Comparable<ObjectId> {
+    public static final int RAW_LENGTH = 20;
+    public static final int HEX_LENGTH = 40;
+
+    private static final byte[] DIGITS = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+    private static final char[] BYTE_TO_HEX = new char[512];
+    private static final byte[] HEX_TO_NIBBLE = new byte[128];
+    private static final String[] FANOUT = new String[256];
+
+    static {
+        for (int b = 0; b < 256; b++) {
+            BYTE_TO_HEX[2 * b] = (char) DIGITS[b >> 4];
+            BYTE_TO_HEX[2 * b + 1] = (char) DIGITS[b & 15];
+            FANOUT[b] = new String(BYTE_TO_HEX, 2 * b, 2);
+        }
+        Arrays.fill(HEX_TO_NIBBLE, (byte) -1);
+        for (int i = 0; i < 10; i++) HEX_TO_NIBBLE['0' + i] = (byte) i;
+        for (int i = 0; i < 6; i++) {
+            HEX_TO_NIBBLE['a' + i] = (byte) (10 + i);
+            HEX_TO_NIBBLE['A' + i] = (byte) (10 + i);
+        }
+    }
+
+    private final int w0, w1, w2, w3, w4;
+
+    private ObjectId(int w0, int w1, int w2, int w3, int w4) {
+        this.w0 = w0;
+        this.w1 = w1;
+        this.w2 = w2;
+        this.w3 = w3;
+        this.w4 = w4;
+    }
+
+    public static ObjectId fromRaw(byte[] raw) {
+        return fromRaw(raw, 0);
+    }
+
+    public static ObjectId fromRaw(byte[] raw, int offset) {
+        return new ObjectId(word(raw, offset), word(raw, offset + 4), word(raw, offset + 8),
+                word(raw, offset + 12), word(raw, offset + 16));
+    }
+
+    static ObjectId fromWords(int w0, int w1, int w2, int w3, int w4) {
+        return new ObjectId(w0, w1, w2, w3, w4);
+    }
+
+    /**
+     * Decodes 40 hex digits (either case).
+     *
+     * @throws IllegalArgumentException if {@code hex} is not a full object name
+     */
+    public static ObjectId fromHex(CharSequence hex) {
+        ObjectId id = tryParse(hex);
+        if (id == null) throw new IllegalArgumentException("not a valid object name: " + hex);
+        return id;
+    }
+
+    /**
+     * Decodes 40 hex digits, or returns null if {@code hex} is not a full object name.
+     */
+    public static ObjectId tryParse(CharSequence hex) {
+        if (hex.length() != HEX_LENGTH) return null;
+        long w0 = parseWord(hex, 0), w1 = parseWord(hex, 8), w2 = parseWord(hex, 16);
+        long w3 = parseWord(hex, 24), w4 = parseWord(hex, 32);
+        if ((w0 | w1 | w2 | w3 | w4) < 0) return null;
+        return new ObjectId((int) w0, (int) w1, (int) w2, (int) w3, (int) w4);
+    }
+
+    /**
+     * Decodes eight hex digits into the low 32 bits, or returns -1 on a bad digit.
+     */
+    private static long parseWord(CharSequence hex, int from) {
+        long w = 0;
+        for (int i = from; i < from + 8; i++) {
+            char c = hex.charAt(i);
+            int nibble = c < 128 ? HEX_TO_NIBBLE[c] : -1;
+            if (nibble < 0) return -1;
+            w = (w << 4) | nibble;
+        }
+        return w;
+    }
+
+    public static boolean isId(CharSequence hex) {
+        return tryParse(hex) != null;
+    }
+
+    /**
+     * Hex-encodes {@code length} raw bytes with the same lookup table.
+     */
+    public static String toHex(byte[] raw, int offset, int length) {
+        char[] out = new char[length * 2];
+        for (int i = 0; i < length; i++) {
+            int b = raw[offset + i] & 0xFF;
+            out[2 * i] = BYTE_TO_HEX[2 * b];
+            out[2 * i + 1] = BYTE_TO_HEX[2 * b + 1];
+        }
+        return new String(out);
+    }
+
+    /**
+     * Writes the 40 hex digits of the raw id at {@code rawOffset} as ASCII bytes, without
+     * creating an id first.
+     */
+    public static void copyHexTo(byte[] raw, int rawOffset, byte[] dst, int offset) {
+        for (int i = 0; i < RAW_LENGTH; i++) {
+            int b = raw[rawOffset + i] & 0xFF;
+            dst[offset++] = (byte) BYTE_TO_HEX[2 * b];
+            dst[offset++] = (byte) BYTE_TO_HEX[2 * b + 1];
+        }
+    }
+
+    private static int word(byte[] raw, int off) {
+        return (raw[off] & 0xFF) << 24 | (raw[off + 1] & 0xFF) << 16 | (raw[off + 2] & 0xFF) << 8 | (raw[off + 3] & 0xFF);
+    }
+
+    int word(int i) {
+        return switch (i) {
+            case 0 -> w0;
+            case 1 -> w1;
+            case 2 -> w2;
+            case 3 -> w3;
+            default -> w4;
+        };
+    }
+
+    /**
+     * The first byte, which selects the fan-out directory and the pack index fan-out slot.
+     */
+    public int firstByte() {
+        return w0 >>> 24;
+    }
+
+    /**
+     * The two-digit loose-object directory name; these 256 strings are shared constants.
+     */
+    public String fanoutDirectory() {
+        return FANOUT[firstByte()];
+    }
+
+    /**
+     * The 38-digit file name inside the fan-out directory.
+     */
+    public String looseFileName() {
+        return name().substring(2);
+    }
+
+    public byte[] toRaw() {
+        byte[] raw = new byte[RAW_LENGTH];
+        copyRawTo(raw, 0);
+        return raw;
+    }
+
+    public void copyRawTo(byte[] dst, int offset) {
+        putWord(dst, offset, w0);
+        putWord(dst, offset + 4, w1);
+        putWord(dst, offset + 8, w2);
+        putWord(dst, offset + 12, w3);
+        putWord(dst, offset + 16, w4);
+    }
+
+    /**
+     * Writes the 40 lowercase hex digits as ASCII bytes, for output paths that never need a String.
+     */
+    public void copyHexTo(byte[] dst, int offset) {
+        for (int i = 0; i < 5; i++) {
+            int w = word(i);
+            for (int j = 0; j < 4; j++) {
+                int b = (w >>> (24 - 8 * j)) & 0xFF;
+                dst[offset++] = (byte) BYTE_TO_HEX[2 * b];
+                dst[offset++] = (byte) BYTE_TO_HEX[2 * b + 1];
+            }
+        }
+    }
+
+    /**
+     * The 40-digit lowercase hex name.
+     */
+    public String name() {
+        char[] out = new char[HEX_LENGTH];
+        int p = 0;
+        for (int i = 0; i < 5; i++) {
+            int w = word(i);
+            for (int j = 0; j < 4; j++) {
+                int b = (w >>> (24 - 8 * j)) & 0xFF;
+                out[p++] = BYTE_TO_HEX[2 * b];
+                out[p++] = BYTE_TO_HEX[2 * b + 1];
+            }
+        }
+        return new String(out);
+    }
+
+    /**
+     * True if this id equals the 20 raw bytes at {@code offset}, without creating another id.
+     */
+    public boolean equals(byte[] raw, int offset) {
+        return w0 == word(raw, offset) && w1 == word(raw, offset + 4) && w2 == word(raw, offset + 8)
+                && w3 == word(raw, offset + 12) && w4 == word(raw, offset + 16);
+    }
+
+    private static void putWord(byte[] dst, int off, int w) {
+        dst[off] = (byte) (w >>> 24);
+        dst[off + 1] = (byte) (w >>> 16);
+        dst[off + 2] = (byte) (w >>> 8);
+        dst[off + 3] = (byte) w;
+    }
+
+    @Override
+    public int compareTo(ObjectId o) {
+        int c = Integer.compareUnsigned(w0, o.w0);
+        if (c == 0) c = Integer.compareUnsigned(w1, o.w1);
+        if (c == 0) c = Integer.compareUnsigned(w2, o.w2);
+        if (c == 0) c = Integer.compareUnsigned(w3, o.w3);
+        if (c == 0) c = Integer.compareUnsigned(w4, o.w4);
+        return c;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof ObjectId other
+                && w0 == other.w0 && w1 == other.w1 && w2 == other.w2 && w3 == other.w3 && w4 == other.w4;
+    }
+
+    /**
+     * SHA-1 output is uniformly distributed, so the second word is already a good hash.
+     */
+    @Override
+    public int hashCode() {
+        return w1;
+    }
+
+    @Override
+    public String toString() {
+        return name();
+    }
+}
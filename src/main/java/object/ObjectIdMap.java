@@ -0,0 +1,73 @@
+package object;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+/**
+ * A map keyed by object id that stores keys unboxed in an open-addressing table, so a lookup
+ * neither allocates nor chases a per-entry node.
+ */
+public final class ObjectIdMap<V> extends ObjectIdTable {
+    public ObjectIdMap() {
+        this(0);
+    }
+
+    public ObjectIdMap(int expected) {
+        super(expected, true);
+    }
+
+    @SuppressWarnings("unchecked")
+    public V get(ObjectId id) {
+        int slot = find(id);
+        return slot >= 0 ? (V) values[slot] : null;
+    }
+
+    public boolean containsKey(ObjectId id) {
+        return find(id) >= 0;
+    }
+
+    /**
+     * Associates {@code value} with {@code id}; returns the previous value or null.
+     */
+    @SuppressWarnings("unchecked")
+    public V put(ObjectId id, V value) {
+        int slot = find(id);
+        if (slot >= 0) {
+            V previous = (V) values[slot];
+            values[slot] = value;
+            return previous;
+        }
+        // insert() may grow the table, so the values array must be read after it.
+        int at = insert(id, slot);
+        values[at] = value;
+        return null;
+    }
+
+    @SuppressWarnings("unchecked")
+    public V computeIfAbsent(ObjectId id, Function<ObjectId, V> factory) {
+        int slot = find(id);
+        if (slot >= 0) return (V) values[slot];
+        V value = factory.apply(id);
+        int at = insert(id, slot);
+        values[at] = value;
+        return value;
+    }
+
+    @SuppressWarnings("unchecked")
+    public void forEach(BiConsumer<ObjectId, V> action) {
+        for (int slot = 0; slot < capacity(); slot++) {
+            if (used[slot]) action.accept(idAt(slot), (V) values[slot]);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    public List<V> values() {
+        List<V> out = new ArrayList<>(size);
+        for (int slot = 0; slot < capacity(); slot++) {
+            if (used[slot]) out.add((V) values[slot]);
+        }
+        return out;
+    }
+}
@@ -0,0 +1,36 @@
+package object;
+
+import java.util.function.Consumer;
+
+/**
+ * A set of object ids with no per-entry objects: membership tests and inserts only compare ints.
+ */
+public final class ObjectIdSet extends ObjectIdTable {
+    public ObjectIdSet() {
+        this(0);
+    }
+
+    public ObjectIdSet(int expected) {
+        super(expected, false);
+    }
+
+    public boolean contains(ObjectId id) {
+        return find(id) >= 0;
+    }
+
+    /**
+     * Adds {@code id}; returns false if it was already present.
+     */
+    public boolean add(ObjectId id) {
+        int slot = find(id);
+        if (slot >= 0) return false;
+        insert(id, slot);
+        return true;
+    }
+
+    public void forEach(Consumer<ObjectId> action) {
+        for (int slot = 0; slot < capacity(); slot++) {
+            if (used[slot]) action.accept(idAt(slot));
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package object;
+
+/**
+ * The open-addressing table behind {@link ObjectIdMap} and {@link ObjectIdSet}. Ids are stored
+ * unboxed as five ints per slot in one flat array and probed linearly; the table doubles once it
+ * is half full, which keeps probe chains short. Maps keep their values in a parallel array.
+ */
+abstract class ObjectIdTable {
+    private static final int MIN_CAPACITY = 16;
+
+    private final boolean hasValues;
+    int[] words;
+    boolean[] used;
+    Object[] values;
+    int size;
+    private int mask;
+
+    ObjectIdTable(int expected, boolean hasValues) {
+        this.hasValues = hasValues;
+        int capacity = MIN_CAPACITY;
+        while (capacity < expected * 2) capacity <<= 1;
+        allocate(capacity);
+    }
+
+    private void allocate(int capacity) {
+        words = new int[capacity * 5];
+        used = new boolean[capacity];
+        values = hasValues ? new Object[capacity] : null;
+        mask = capacity - 1;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    final int capacity() {
+        return used.length;
+    }
+
+    /**
+     * Returns the slot holding {@code id}, or {@code -(slot + 1)} for the free slot it would take.
+     */
+    final int find(ObjectId id) {
+        int w0 = id.word(0), w1 = id.word(1), w2 = id.word(2), w3 = id.word(3), w4 = id.word(4);
+        int slot = mix(w1) & mask;
+        while (used[slot]) {
+            int at = slot * 5;
+            if (words[at] == w0 && words[at + 1] == w1 && words[at + 2] == w2
+                    && words[at + 3] == w3 && words[at + 4] == w4) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -(slot + 1);
+    }
+
+    /**
+     * Stores {@code id} given the negative result {@link #find} returned for it, growing first if
+     * needed, and returns the slot it ended up in.
+     */
+    final int insert(ObjectId id, int missing) {
+        int freeSlot = -missing - 1;
+        if ((size + 1) * 2 > used.length) {
+            grow();
+            freeSlot = -find(id) - 1;
+        }
+        int at = freeSlot * 5;
+        for (int i = 0; i < 5; i++) words[at + i] = id.word(i);
+        used[freeSlot] = true;
+        size++;
+        return freeSlot;
+    }
+
+    final ObjectId idAt(int slot) {
+        int at = slot * 5;
+        return ObjectId.fromWords(words[at], words[at + 1], words[at + 2], words[at + 3], words[at + 4]);
+    }
+
+    private void grow() {
+        int[] oldWords = words;
+        boolean[] oldUsed = used;
+        Object[] oldValues = values;
+        allocate(oldUsed.length * 2);
+        for (int slot = 0; slot < oldUsed.length; slot++) {
+            if (!oldUsed[slot]) continue;
+            int from = slot * 5;
+            int to = mix(oldWords[from + 1]) & mask;
+            while (used[to]) to = (to + 1) & mask;
+            System.arraycopy(oldWords, from, words, to * 5, 5);
+            used[to] = true;
+            if (hasValues) values[to] = oldValues[slot];
+        }
+    }
+
+    private static int mix(int h) {
+        return h ^ (h >>> 16);
+    }
+}
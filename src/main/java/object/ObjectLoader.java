@@ -0,0 +1,33 @@
+package object;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Access to one object's type, size and payload. The header is available without reading
+ * the payload, and the payload can be streamed or fetched whole.
+ */
+public abstract class ObjectLoader {
+    private static final int MAX_ARRAY_SIZE = Integer.MAX_VALUE - 8;
+
+    public abstract ObjectType type() throws IOException;
+
+    public abstract long size() throws IOException;
+
+    /**
+     * Opens the payload (without the "type size\0" header) as a stream.
+     */
+    public abstract InputStream openStream() throws IOException;
+
+    public byte[] getBytes() throws IOException {
+        long size = size();
+        if (size > MAX_ARRAY_SIZE) throw new IOException("object too large to hold in memory: " + size + " bytes");
+        byte[] data = new byte[(int) size];
+        try (InputStream in = openStream()) {
+            int n = in.readNBytes(data, 0, data.length);
+            if (n != data.length) throw new EOFException("object is shorter than its header size");
+        }
+        return data;
+    }
+}
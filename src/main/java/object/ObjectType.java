@@ -0,0 +1,46 @@
+package object;
+
+/**
+ * The four object kinds, with the names used in loose headers and the codes used in packs.
+ */
+public enum ObjectType {
+    COMMIT("commit", 1),
+    TREE("tree", 2),
+    BLOB("blob", 3),
+    TAG("tag", 4);
+
+    private final String typeName;
+    private final int packCode;
+
+    ObjectType(String typeName, int packCode) {
+        this.typeName = typeName;
+        this.packCode = packCode;
+    }
+
+    public String typeName() {
+        return typeName;
+    }
+
+    public int packCode() {
+        return packCode;
+    }
+
+    public static ObjectType fromName(String name) {
+        for (ObjectType t : values()) {
+            if (t.typeName.equals(name)) return t;
+        }
+        throw new IllegalArgumentException("invalid object type \"" + name + "\"");
+    }
+
+    public static ObjectType fromPackCode(int code) {
+        for (ObjectType t : values()) {
+            if (t.packCode == code) return t;
+        }
+        throw new IllegalArgumentException("invalid pack object type " + code);
+    }
+
+    @Override
+    public String toString() {
+        return typeName;
+    }
+}
@@ -0,0 +1,291 @@
+package object;
+
+import trace.Phase;
+import trace.Trace;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * A memory-mapped {@code .pack} file together with its {@code .idx}. Objects are inflated
+ * straight out of the mapping; OFS_DELTA and REF_DELTA chains are resolved on read.
+ */
+final class PackFile {
+    static final int OBJ_OFS_DELTA = 6;
+    static final int OBJ_REF_DELTA = 7;
+
+    private static final int SIGNATURE = 0x5041434b; // "PACK"
+    private static final int MAX_CHAIN_LENGTH = 10_000;
+    private static final long INPUT_WINDOW = 1 << 30;
+
+    private final Path packPath;
+    private final PackIndex index;
+    private final MemorySegment map;
+    private final long dataEnd;
+
+    PackFile(Path idxPath, Arena arena) throws IOException {
+        this(packPathFor(idxPath), new PackIndex(idxPath, arena), arena);
+    }
+
+    private PackFile(Path packPath, PackIndex index, Arena arena) throws IOException {
+        this.packPath = packPath;
+        this.index = index;
+        try (FileChannel channel = FileChannel.open(packPath, StandardOpenOption.READ)) {
+            map = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size(), arena);
+        }
+        if (map.byteSize() < 32 || map.get(ValueLayout.JAVA_INT_UNALIGNED.withOrder(ByteOrder.BIG_ENDIAN), 0) != SIGNATURE) {
+            throw new IOException("not a pack file: " + packPath);
+        }
+        dataEnd = map.byteSize() - 20;
+    }
+
+    /**
+     * Maps a pack whose index is still being built. Only {@link #readHeader} and
+     * {@link #inflate} may be used on it, since anything else looks objects up by id.
+     */
+    static PackFile unindexed(Path packPath, Arena arena) throws IOException {
+        return new PackFile(packPath, null, arena);
+    }
+
+    private static Path packPathFor(Path idxPath) {
+        String name = idxPath.getFileName().toString();
+        return idxPath.resolveSibling(name.substring(0, name.length() - 4) + ".pack");
+    }
+
+    Path path() {
+        return packPath;
+    }
+
+    PackIndex index() {
+        return index;
+    }
+
+    /**
+     * Returns a loader for {@code id}, or null if this pack does not contain it.
+     */
+    ObjectLoader open(ObjectId id, ObjectDatabase db) throws IOException {
+        long offset = index.findOffset(id);
+        return offset < 0 ? null : new PackedObjectLoader(this, offset, db);
+    }
+
+    boolean contains(ObjectId id) {
+        return index.findPosition(id) >= 0;
+    }
+
+    /**
+     * Recomputes the SHA-1 over the pack and checks it against the pack's trailer and the one
+     * its index recorded, and that the pack and index agree on the number of objects.
+     */
+    void verify() throws IOException {
+        MessageDigest sha1;
+        try {
+            sha1 = MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        long start = Trace.start();
+        for (long p = 0; p < dataEnd; p += INPUT_WINDOW) {
+            sha1.update(map.asSlice(p, Math.min(dataEnd - p, INPUT_WINDOW)).asByteBuffer());
+        }
+        Trace.end(Phase.HASH, start, dataEnd);
+        byte[] trailer = map.asSlice(dataEnd, 20).toArray(ValueLayout.JAVA_BYTE);
+        if (!MessageDigest.isEqual(sha1.digest(), trailer)) throw new IOException("pack checksum mismatch in " + packPath);
+        if (!MessageDigest.isEqual(trailer, index.packChecksum())) throw new IOException("index does not belong to " + packPath);
+        long count = Integer.toUnsignedLong(map.get(ValueLayout.JAVA_INT_UNALIGNED.withOrder(ByteOrder.BIG_ENDIAN), 8));
+        if (count != index.objectCount()) {
+            throw new IOException(packPath + " holds " + count + " objects but its index lists " + index.objectCount());
+        }
+    }
+
+    /**
+     * The per-object header: the pack type code, the inflated size of this entry's data, and
+     * where a delta's base lives.
+     */
+    record Header(int type, long size, long dataOffset, long baseOffset, ObjectId baseId) {
+        boolean isDelta() {
+            return type == OBJ_OFS_DELTA || type == OBJ_REF_DELTA;
+        }
+    }
+
+    Header readHeader(long offset) throws IOException {
+        if (offset < 12 || offset >= dataEnd) throw new IOException("bad object offset " + offset + " in " + packPath);
+        long p = offset;
+        int c = byteAt(p++);
+        int type = (c >> 4) & 7;
+        long size = c & 15;
+        int shift = 4;
+        while ((c & 0x80) != 0) {
+            c = byteAt(p++);
+            size |= (long) (c & 0x7f) << shift;
+            shift += 7;
+        }
+
+        long baseOffset = -1;
+        ObjectId baseId = null;
+        if (type == OBJ_OFS_DELTA) {
+            c = byteAt(p++);
+            long rel = c & 0x7f;
+            while ((c & 0x80) != 0) {
+                c = byteAt(p++);
+                rel = ((rel + 1) << 7) | (c & 0x7f);
+            }
+            baseOffset = offset - rel;
+        } else if (type == OBJ_REF_DELTA) {
+            baseId = ObjectId.fromRaw(map.asSlice(p, 20).toArray(ValueLayout.JAVA_BYTE));
+            p += 20;
+        } else if (type < 1 || type > 4) {
+            throw new IOException("invalid object type " + type + " at offset " + offset + " in " + packPath);
+        }
+        return new Header(type, size, p, baseOffset, baseId);
+    }
+
+    /**
+     * Walks a delta chain down to its base without inflating anything in this pack.
+     */
+    ObjectType resolveType(long offset, ObjectDatabase db) throws IOException {
+        Header h = readHeader(offset);
+        for (int depth = 0; h.isDelta(); depth++) {
+            if (depth > MAX_CHAIN_LENGTH) throw new IOException("delta chain too deep in " + packPath);
+            if (h.type == OBJ_OFS_DELTA) {
+                h = readHeader(h.baseOffset);
+            } else {
+                long base = index.findOffset(h.baseId);
+                if (base < 0) return requireBase(db, h.baseId).type();
+                h = readHeader(base);
+            }
+        }
+        return ObjectType.fromPackCode(h.type);
+    }
+
+    /**
+     * Inflates the object at {@code offset}, applying any delta chain from the base upwards.
+     */
+    byte[] load(long offset, ObjectDatabase db) throws IOException {
+        Deque<Header> deltas = new ArrayDeque<>();
+        Header h = readHeader(offset);
+        byte[] data = null;
+        while (data == null) {
+            if (deltas.size() > MAX_CHAIN_LENGTH) throw new IOException("delta chain too deep in " + packPath);
+            if (h.type == OBJ_OFS_DELTA) {
+                deltas.push(h);
+                h = readHeader(h.baseOffset);
+            } else if (h.type == OBJ_REF_DELTA) {
+                deltas.push(h);
+                long base = index.findOffset(h.baseId);
+                if (base >= 0) {
+                    h = readHeader(base);
+                } else {
+                    data = requireBase(db, h.baseId).getBytes();
+                }
+            } else {
+                data = inflate(h.dataOffset, h.size);
+            }
+        }
+        while (!deltas.isEmpty()) {
+            Header d = deltas.pop();
+            data = Delta.apply(data, inflate(d.dataOffset, d.size));
+        }
+        return data;
+    }
+
+    byte[] inflate(long dataOffset, long size) throws IOException {
+        if (size > Integer.MAX_VALUE - 8) throw new IOException("object too large to hold in memory: " + size + " bytes");
+        long start = Trace.start();
+        byte[] out = new byte[(int) size];
+        Inflater inflater = ObjectCodec.inflater();
+        try {
+            long p = dataOffset;
+            int n = 0;
+            while (!inflater.finished()) {
+                if (inflater.needsInput()) {
+                    if (p >= dataEnd) throw new EOFException("truncated object at offset " + dataOffset + " in " + packPath);
+                    long chunk = Math.min(dataEnd - p, INPUT_WINDOW);
+                    inflater.setInput(map.asSlice(p, chunk).asByteBuffer());
+                    p += chunk;
+                }
+                int r = inflater.inflate(out, n, out.length - n);
+                n += r;
+                if (r == 0 && !inflater.needsInput() && !inflater.finished()) {
+                    throw new IOException("object at offset " + dataOffset + " is larger than its header size");
+                }
+            }
+            if (n != out.length) throw new EOFException("object at offset " + dataOffset + " is shorter than its header size");
+            Trace.end(Phase.INFLATE, start, n);
+            return out;
+        } catch (DataFormatException e) {
+            throw new IOException("corrupt object at offset " + dataOffset + " in " + packPath, e);
+        } finally {
+            ObjectCodec.release(inflater);
+        }
+    }
+
+    /**
+     * The compressed data of a non-delta object, for streaming it out of the mapping without
+     * materializing it.
+     */
+    ReadableByteChannel inflateStream(long dataOffset) {
+        return new SegmentChannel(map, dataOffset, dataEnd);
+    }
+
+    private int byteAt(long p) throws IOException {
+        if (p >= dataEnd) throw new EOFException("truncated pack " + packPath);
+        return map.get(ValueLayout.JAVA_BYTE, p) & 0xFF;
+    }
+
+    private static ObjectLoader requireBase(ObjectDatabase db, ObjectId id) throws IOException {
+        ObjectLoader base = db.open(id);
+        if (base == null) throw new MissingObjectException(id);
+        return base;
+    }
+
+    /**
+     * Copies straight from the mapping into the reader's buffer.
+     */
+    private static final class SegmentChannel implements ReadableByteChannel {
+        private final MemorySegment map;
+        private final long end;
+        private long position;
+        private boolean open = true;
+
+        SegmentChannel(MemorySegment map, long position, long end) {
+            this.map = map;
+            this.position = position;
+            this.end = end;
+        }
+
+        @Override
+        public int read(ByteBuffer dst) {
+            if (position >= end) return -1;
+            int n = (int) Math.min(dst.remaining(), end - position);
+            MemorySegment.ofBuffer(dst).copyFrom(map.asSlice(position, n));
+            dst.position(dst.position() + n);
+            position += n;
+            return n;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return open;
+        }
+
+        @Override
+        public void close() {
+            open = false;
+        }
+    }
+}
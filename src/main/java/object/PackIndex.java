@@ -0,0 +1,145 @@
+package object;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A memory-mapped pack index (version 2). A lookup reads the fan-out slot for the first byte
+ * and binary-searches the sorted id table between its bounds, so it costs O(log n) and no I/O
+ * beyond the pages it touches.
+ */
+final class PackIndex {
+    private static final int MAGIC = 0xff744f63; // "\377tOc"
+    private static final ValueLayout.OfInt INT = ValueLayout.JAVA_INT_UNALIGNED.withOrder(ByteOrder.BIG_ENDIAN);
+    private static final ValueLayout.OfLong LONG = ValueLayout.JAVA_LONG_UNALIGNED.withOrder(ByteOrder.BIG_ENDIAN);
+    private static final long FANOUT = 8;
+    private static final long IDS = FANOUT + 256 * 4;
+
+    private final MemorySegment map;
+    private final int count;
+    private final long crcTable;
+    private final long offsetTable;
+    private final long largeOffsetTable;
+
+    PackIndex(Path file, Arena arena) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            map = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size(), arena);
+        }
+        if (map.byteSize() < IDS + 40 || map.get(INT, 0) != MAGIC) {
+            throw new IOException("unsupported pack index " + file + " (only version 2 is read)");
+        }
+        if (map.get(INT, 4) != 2) throw new IOException("unsupported pack index version in " + file);
+        count = map.get(INT, FANOUT + 255 * 4);
+        crcTable = IDS + 20L * count;
+        offsetTable = crcTable + 4L * count;
+        largeOffsetTable = offsetTable + 4L * count;
+        if (largeOffsetTable + 40 > map.byteSize()) throw new IOException("truncated pack index " + file);
+    }
+
+    int objectCount() {
+        return count;
+    }
+
+    /**
+     * Returns the pack offset of {@code id}, or -1 if this pack does not contain it.
+     */
+    long findOffset(ObjectId id) {
+        int position = findPosition(id);
+        return position < 0 ? -1 : offsetAt(position);
+    }
+
+    int findPosition(ObjectId id) {
+        int first = id.firstByte();
+        int lo = first == 0 ? 0 : map.get(INT, FANOUT + (first - 1) * 4L);
+        int hi = map.get(INT, FANOUT + first * 4L);
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            long at = IDS + 20L * mid;
+            int cmp = 0;
+            for (int w = 0; w < 5 && cmp == 0; w++) {
+                cmp = Integer.compareUnsigned(map.get(INT, at + 4L * w), id.word(w));
+            }
+            if (cmp == 0) return mid;
+            if (cmp < 0) lo = mid + 1;
+            else hi = mid;
+        }
+        return -1;
+    }
+
+    ObjectId idAt(int position) {
+        long at = IDS + 20L * position;
+        return ObjectId.fromWords(map.get(INT, at), map.get(INT, at + 4), map.get(INT, at + 8),
+                map.get(INT, at + 12), map.get(INT, at + 16));
+    }
+
+    long offsetAt(int position) {
+        int offset = map.get(INT, offsetTable + 4L * position);
+        if (offset >= 0) return offset;
+        return map.get(LONG, largeOffsetTable + 8L * (offset & 0x7fffffff));
+    }
+
+    int crc32At(int position) {
+        return map.get(INT, crcTable + 4L * position);
+    }
+
+    /**
+     * The checksum of the pack this index was written for, stored just before the index's own.
+     */
+    byte[] packChecksum() {
+        return map.asSlice(map.byteSize() - 40, 20).toArray(ValueLayout.JAVA_BYTE);
+    }
+
+    /**
+     * Writes a version 2 index for a pack whose trailer is {@code packSha}. The arrays describe
+     * one object per position and must be sorted by id.
+     */
+    static void write(Path file, ObjectId[] ids, int[] crcs, long[] offsets, byte[] packSha) throws IOException {
+        MessageDigest sha1;
+        try {
+            sha1 = MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        try (DataOutputStream out = new DataOutputStream(new DigestOutputStream(
+                new BufferedOutputStream(Files.newOutputStream(file), 64 * 1024), sha1))) {
+            out.writeInt(MAGIC);
+            out.writeInt(2);
+            int[] fanout = new int[256];
+            for (ObjectId id : ids) fanout[id.firstByte()]++;
+            int total = 0;
+            for (int i = 0; i < 256; i++) {
+                total += fanout[i];
+                out.writeInt(total);
+            }
+            byte[] raw = new byte[ObjectId.RAW_LENGTH];
+            for (ObjectId id : ids) {
+                id.copyRawTo(raw, 0);
+                out.write(raw);
+            }
+            for (int crc : crcs) out.writeInt(crc);
+            List<Long> large = new ArrayList<>();
+            for (long offset : offsets) {
+                out.writeInt(offset < 0x80000000L ? (int) offset : 0x80000000 | large.size());
+                if (offset >= 0x80000000L) large.add(offset);
+            }
+            for (long offset : large) out.writeLong(offset);
+            out.write(packSha);
+            out.flush();
+            out.write(sha1.digest());
+        }
+    }
+}
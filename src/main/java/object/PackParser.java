@@ -0,0 +1,406 @@
+package object;
+
+import trace.Phase;
+import trace.Trace;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.foreign.Arena;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Stores a pack received from a stream and writes its index, as {@code git index-pack --stdin}
+ * does.
+ *
+ * <p>The first pass copies the stream to a temporary file while parsing it. It records each
+ * object's offset, header and CRC, and hashes whole objects as they inflate. Deltas are inflated
+ * only to find where they end. The second pass reads the deltas back from the file and resolves
+ * them on a pool of threads, one task per base object and every delta built on it, depth first.
+ * Memory is one buffer for the stream, a few dozen bytes of bookkeeping per object, and per
+ * thread the objects along one delta chain; the pack itself is never held.
+ */
+public final class PackParser {
+    private static final int SIGNATURE = 0x5041434b; // "PACK"
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final Path packDir;
+    private final int threads;
+    private final List<Entry> entries = new ArrayList<>();
+    // REF_DELTAs by the id of their base, which is only known once the base is resolved.
+    private final ObjectIdMap<List<Entry>> refDeltas = new ObjectIdMap<>();
+    private int deltaCount;
+
+    public PackParser(Path packDir, int threads) {
+        this.packDir = packDir;
+        this.threads = Math.max(1, threads);
+    }
+
+    private static final class Entry {
+        final long offset;
+        final int type;
+        // Inflated size of what is stored here: the object, or the delta that rebuilds it.
+        final long size;
+        long dataOffset;
+        long baseOffset = -1;
+        ObjectId baseId;
+        int crc;
+        ObjectType objectType;
+        ObjectId id;
+        // The OFS_DELTAs whose base this is.
+        List<Entry> deltas;
+
+        Entry(long offset, int type, long size) {
+            this.offset = offset;
+            this.type = type;
+            this.size = size;
+        }
+
+        boolean isDelta() {
+            return type == PackFile.OBJ_OFS_DELTA || type == PackFile.OBJ_REF_DELTA;
+        }
+    }
+
+    public int objectCount() {
+        return entries.size();
+    }
+
+    public int deltaCount() {
+        return deltaCount;
+    }
+
+    /**
+     * Reads one whole pack from {@code in}, up to and including its trailer, and stores it and
+     * its index as {@code pack-<sha>.pack} and {@code .idx}. Returns the pack's name hash.
+     */
+    public String parse(InputStream in) throws IOException {
+        Files.createDirectories(packDir);
+        Path tmpPack = TempFiles.create(packDir, "tmp_pack_");
+        Path tmpIdx = TempFiles.create(packDir, "tmp_idx_");
+        try {
+            byte[] packSha;
+            try (Receiver receiver = new Receiver(in, Files.newOutputStream(tmpPack))) {
+                packSha = receive(receiver);
+            }
+            resolveDeltas(PackFile.unindexed(tmpPack, Arena.ofAuto()));
+            writeIndex(tmpIdx, packSha);
+            TempFiles.makeReadOnly(tmpPack);
+            TempFiles.makeReadOnly(tmpIdx);
+
+            String name = ObjectId.toHex(packSha, 0, packSha.length);
+            Path pack = packDir.resolve("pack-" + name + ".pack");
+            Path idx = packDir.resolve("pack-" + name + ".idx");
+            // The index goes last: readers find packs through it.
+            Files.move(tmpPack, pack, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            Files.move(tmpIdx, idx, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            return name;
+        } finally {
+            Files.deleteIfExists(tmpPack);
+            Files.deleteIfExists(tmpIdx);
+        }
+    }
+
+    private byte[] receive(Receiver r) throws IOException {
+        byte[] header = new byte[12];
+        r.readFully(header);
+        if (word(header, 0) != SIGNATURE) throw new IOException("protocol error: bad pack header");
+        int version = word(header, 4);
+        if (version != 2 && version != 3) throw new IOException("pack version " + version + " unsupported");
+        long count = Integer.toUnsignedLong(word(header, 8));
+
+        MessageDigest sha1 = sha1();
+        Inflater inflater = ObjectCodec.inflater();
+        try {
+            for (long i = 0; i < count; i++) {
+                Entry e = readHeader(r);
+                if (e.isDelta()) {
+                    r.inflate(inflater, e, null);
+                    deltaCount++;
+                } else {
+                    sha1.update(LooseObjectWriter.header(e.objectType, e.size));
+                    r.inflate(inflater, e, sha1);
+                    e.id = ObjectId.fromRaw(sha1.digest());
+                }
+                e.crc = (int) r.crc.getValue();
+                entries.add(e);
+            }
+        } finally {
+            ObjectCodec.release(inflater);
+        }
+
+        byte[] expected = r.sha1.digest();
+        byte[] trailer = new byte[20];
+        r.hashing = false;
+        r.readFully(trailer);
+        if (!MessageDigest.isEqual(expected, trailer)) throw new IOException("pack is corrupted (SHA1 mismatch)");
+        if (r.hasMore()) throw new IOException("pack has junk at the end");
+        return trailer;
+    }
+
+    private Entry readHeader(Receiver r) throws IOException {
+        long offset = r.position;
+        r.crc.reset();
+        int c = r.readByte();
+        int type = (c >> 4) & 7;
+        long size = c & 15;
+        int shift = 4;
+        while ((c & 0x80) != 0) {
+            if (shift > 57) throw new IOException("bad object header at offset " + offset);
+            c = r.readByte();
+            size |= (long) (c & 0x7f) << shift;
+            shift += 7;
+        }
+
+        Entry e = new Entry(offset, type, size);
+        if (type == PackFile.OBJ_OFS_DELTA) {
+            c = r.readByte();
+            long rel = c & 0x7f;
+            while ((c & 0x80) != 0) {
+                if (rel >= 1L << 56) throw new IOException("bad delta base offset at offset " + offset);
+                c = r.readByte();
+                rel = ((rel + 1) << 7) | (c & 0x7f);
+            }
+            e.baseOffset = offset - rel;
+            if (rel <= 0 || e.baseOffset < 12) throw new IOException("bad delta base offset at offset " + offset);
+        } else if (type == PackFile.OBJ_REF_DELTA) {
+            byte[] raw = new byte[ObjectId.RAW_LENGTH];
+            r.readFully(raw);
+            e.baseId = ObjectId.fromRaw(raw);
+            refDeltas.computeIfAbsent(e.baseId, id -> new ArrayList<>()).add(e);
+        } else if (type >= 1 && type <= 4) {
+            e.objectType = ObjectType.fromPackCode(type);
+        } else {
+            throw new IOException("invalid object type " + type + " at offset " + offset);
+        }
+        e.dataOffset = r.position;
+        return e;
+    }
+
+    /**
+     * Rebuilds every delta from the stored pack, one task per whole object that is a base.
+     * Entries are in pack order, so an OFS_DELTA's base is found by binary search on offset.
+     */
+    private void resolveDeltas(PackFile pack) throws IOException {
+        if (deltaCount == 0) return;
+        long[] offsets = new long[entries.size()];
+        for (int i = 0; i < offsets.length; i++) offsets[i] = entries.get(i).offset;
+        List<Entry> bases = new ArrayList<>();
+        for (Entry e : entries) {
+            if (e.type == PackFile.OBJ_OFS_DELTA) {
+                int i = Arrays.binarySearch(offsets, e.baseOffset);
+                if (i < 0) throw new IOException("bad delta base offset " + e.baseOffset + " at offset " + e.offset);
+                Entry base = entries.get(i);
+                if (base.deltas == null) base.deltas = new ArrayList<>();
+                base.deltas.add(e);
+            }
+        }
+        for (Entry e : entries) {
+            if (!e.isDelta() && (e.deltas != null || refDeltas.containsKey(e.id))) bases.add(e);
+        }
+
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> results = new ArrayList<>(bases.size());
+            for (Entry base : bases) {
+                results.add(pool.submit(() -> {
+                    resolve(pack, base, pack.inflate(base.dataOffset, base.size));
+                    return null;
+                }));
+            }
+            for (Future<?> f : results) f.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("delta resolution interrupted", e);
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof IOException io ? io : new IOException(e.getCause());
+        } finally {
+            pool.shutdown();
+        }
+
+        int unresolved = 0;
+        for (Entry e : entries) {
+            if (e.id == null) unresolved++;
+        }
+        // A thin pack's bases live in the receiving repository, which a clone does not have yet.
+        if (unresolved > 0) throw new IOException("pack has " + unresolved + " unresolved deltas");
+    }
+
+    /**
+     * Applies every delta on {@code base}, whose content is {@code data}, and then the deltas on
+     * each result. Only the chain from the task's base down to the current delta is held.
+     */
+    private void resolve(PackFile pack, Entry base, byte[] data) throws IOException {
+        List<Entry> byId = refDeltas.get(base.id);
+        if (base.deltas != null) {
+            for (Entry delta : base.deltas) apply(pack, base, data, delta);
+        }
+        if (byId != null) {
+            for (Entry delta : byId) apply(pack, base, data, delta);
+        }
+    }
+
+    private void apply(PackFile pack, Entry base, byte[] data, Entry delta) throws IOException {
+        byte[] result = Delta.apply(data, pack.inflate(delta.dataOffset, delta.size));
+        delta.objectType = base.objectType;
+        delta.id = LooseObjectWriter.hash(delta.objectType, result);
+        resolve(pack, delta, result);
+    }
+
+    private void writeIndex(Path file, byte[] packSha) throws IOException {
+        List<Entry> byId = new ArrayList<>(entries);
+        byId.sort((a, b) -> a.id.compareTo(b.id));
+        ObjectId[] ids = new ObjectId[byId.size()];
+        int[] crcs = new int[byId.size()];
+        long[] offsets = new long[byId.size()];
+        for (int i = 0; i < ids.length; i++) {
+            Entry e = byId.get(i);
+            if (i > 0 && e.id.equals(ids[i - 1])) throw new IOException("pack holds " + e.id.name() + " twice");
+            ids[i] = e.id;
+            crcs[i] = e.crc;
+            offsets[i] = e.offset;
+        }
+        PackIndex.write(file, ids, crcs, offsets, packSha);
+    }
+
+    private static int word(byte[] b, int off) {
+        return ((b[off] & 0xFF) << 24) | ((b[off + 1] & 0xFF) << 16) | ((b[off + 2] & 0xFF) << 8) | (b[off + 3] & 0xFF);
+    }
+
+    private static MessageDigest sha1() {
+        try {
+            return MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * The incoming pack. Every byte parsed is copied to the file and fed to the pack's checksum
+     * and the current object's CRC as it is consumed. The buffer is only refilled once it is
+     * used up, so the inflater can read from it in place.
+     */
+    private static final class Receiver implements Closeable {
+        private final InputStream in;
+        private final OutputStream out;
+        private final byte[] buffer = new byte[BUFFER_SIZE];
+        private final byte[] inflated = new byte[BUFFER_SIZE];
+        final MessageDigest sha1 = sha1();
+        final CRC32 crc = new CRC32();
+        boolean hashing = true;
+        long position;
+        private int pos;
+        private int limit;
+
+        Receiver(InputStream in, OutputStream out) {
+            this.in = in;
+            this.out = new BufferedOutputStream(out, BUFFER_SIZE);
+        }
+
+        int readByte() throws IOException {
+            if (pos == limit) fill();
+            int b = buffer[pos] & 0xFF;
+            consume(1);
+            return b;
+        }
+
+        void readFully(byte[] dst) throws IOException {
+            int n = 0;
+            while (n < dst.length) {
+                if (pos == limit) fill();
+                int k = Math.min(dst.length - n, limit - pos);
+                System.arraycopy(buffer, pos, dst, n, k);
+                consume(k);
+                n += k;
+            }
+        }
+
+        /**
+         * Inflates one object's zlib stream straight from the buffer, feeding the output to
+         * {@code digest} if given, and consumes exactly the compressed bytes.
+         */
+        void inflate(Inflater inflater, Entry e, MessageDigest digest) throws IOException {
+            long start = Trace.start();
+            long hashNanos = 0;
+            inflater.reset();
+            long total = 0;
+            int fed = 0;
+            try {
+                while (true) {
+                    if (inflater.needsInput()) {
+                        if (pos == limit) fill();
+                        fed = limit - pos;
+                        inflater.setInput(buffer, pos, fed);
+                    }
+                    int n = inflater.inflate(inflated);
+                    total += n;
+                    if (total > e.size) throw new IOException("object at offset " + e.offset + " is larger than its header size");
+                    if (digest != null && n > 0) {
+                        long h = Trace.start();
+                        digest.update(inflated, 0, n);
+                        hashNanos += Trace.start() - h;
+                    }
+                    if (inflater.finished()) {
+                        consume(fed - inflater.getRemaining());
+                        break;
+                    }
+                    if (inflater.needsInput()) {
+                        consume(fed);
+                    } else if (n == 0) {
+                        throw new IOException("corrupt object at offset " + e.offset);
+                    }
+                }
+            } catch (DataFormatException ex) {
+                throw new IOException("corrupt object at offset " + e.offset + ": " + ex.getMessage(), ex);
+            }
+            if (total != e.size) throw new EOFException("object at offset " + e.offset + " is shorter than its header size");
+            Trace.end(Phase.INFLATE, start + hashNanos, total);
+            if (digest != null) Trace.end(Phase.HASH, Trace.start() - hashNanos, total);
+        }
+
+        boolean hasMore() throws IOException {
+            return pos < limit || in.read() >= 0;
+        }
+
+        private void fill() throws IOException {
+            long start = Trace.start();
+            int n;
+            do {
+                n = in.read(buffer, 0, buffer.length);
+            } while (n == 0);
+            if (n < 0) throw new EOFException("pack ended early, after " + position + " bytes");
+            Trace.end(Phase.RECEIVE, start, n);
+            pos = 0;
+            limit = n;
+        }
+
+        private void consume(int n) throws IOException {
+            if (hashing) sha1.update(buffer, pos, n);
+            crc.update(buffer, pos, n);
+            out.write(buffer, pos, n);
+            pos += n;
+            position += n;
+        }
+
+        @Override
+        public void close() throws IOException {
+            out.close();
+        }
+    }
+}
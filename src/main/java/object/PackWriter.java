@@ -0,0 +1,396 @@
+package object;
+
+import trace.Phase;
+import trace.Trace;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.foreign.Arena;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Writes a version 2 pack and its version 2 index from objects already in the database.
+ *
+ * <p>Objects are sorted by type, path-name hash and descending size, as git does, so that likely
+ * delta pairs sit close together. Each worker thread slides a window over its own contiguous slice
+ * of that order and keeps the smallest delta it finds for each object. Because a base always
+ * precedes its delta in that order, every delta is written as an OFS_DELTA.
+ */
+public final class PackWriter {
+    private static final int MIN_DELTA_SIZE = 50;
+    private static final long BIG_FILE_THRESHOLD = 512L * 1024 * 1024;
+
+    private final ObjectDatabase db;
+    private final int window;
+    private final int maxDepth;
+    private final int threads;
+    private final Compression compression;
+    private final ObjectIdMap<Entry> entries = new ObjectIdMap<>();
+    private List<Entry> ordered;
+    private int deltaCount;
+
+    public PackWriter(ObjectDatabase db, int window, int maxDepth, int threads, Compression compression) {
+        this.db = db;
+        this.window = window;
+        this.maxDepth = maxDepth;
+        this.threads = Math.max(1, threads);
+        this.compression = compression;
+    }
+
+    private static final class Entry {
+        final ObjectId id;
+        final ObjectType type;
+        final long size;
+        int nameHash;
+        Entry base;
+        byte[] delta;
+        int depth;
+        long offset;
+        int crc;
+
+        Entry(ObjectId id, ObjectType type, long size) {
+            this.id = id;
+            this.type = type;
+            this.size = size;
+        }
+    }
+
+    public void add(ObjectId id) throws IOException {
+        if (entries.containsKey(id)) return;
+        ObjectLoader loader = db.open(id);
+        if (loader == null) throw new MissingObjectException(id);
+        entries.put(id, new Entry(id, loader.type(), loader.size()));
+    }
+
+    public int objectCount() {
+        return entries.size();
+    }
+
+    public int deltaCount() {
+        return deltaCount;
+    }
+
+    /**
+     * Writes {@code <baseName>-<sha>.pack} and {@code .idx}, checks every object in the new pack
+     * against its id, and returns the pack's name hash.
+     */
+    public String write(Path baseName) throws IOException {
+        assignNameHashes();
+        ordered = new ArrayList<>(entries.values());
+        ordered.sort(Comparator
+                .comparingInt((Entry e) -> e.type.packCode())
+                .thenComparingInt(e -> e.nameHash)
+                .thenComparing(Comparator.comparingLong((Entry e) -> e.size).reversed()));
+
+        findDeltas();
+
+        Path dir = baseName.toAbsolutePath().getParent();
+        Files.createDirectories(dir);
+        Path tmpPack = TempFiles.create(dir, "tmp_pack_");
+        Path tmpIdx = TempFiles.create(dir, "tmp_idx_");
+        try {
+            byte[] packSha = writePack(tmpPack);
+            writeIndex(tmpIdx, packSha);
+            TempFiles.makeReadOnly(tmpPack);
+            TempFiles.makeReadOnly(tmpIdx);
+
+            String name = ObjectId.toHex(packSha, 0, packSha.length);
+            String prefix = baseName.getFileName() + "-" + name;
+            Path pack = dir.resolve(prefix + ".pack");
+            Path idx = dir.resolve(prefix + ".idx");
+            Files.move(tmpPack, pack, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            Files.move(tmpIdx, idx, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            verify(idx);
+            return name;
+        } finally {
+            Files.deleteIfExists(tmpPack);
+            Files.deleteIfExists(tmpIdx);
+        }
+    }
+
+    /**
+     * Gives every object reachable from a tree in the set git's hash of the name it was found
+     * under, so that versions of the same file sort next to each other.
+     */
+    private void assignNameHashes() throws IOException {
+        for (Entry e : entries.values()) {
+            if (e.type != ObjectType.TREE) continue;
+            TreeIterator it = new TreeIterator(db.open(e.id).getBytes());
+            while (it.next()) {
+                Entry child = entries.get(it.id());
+                if (child != null && child.nameHash == 0) {
+                    child.nameHash = nameHash(it.buffer(), it.nameOffset(), it.nameOffset() + it.nameLength());
+                }
+            }
+        }
+    }
+
+    private static int nameHash(byte[] name, int from, int to) {
+        int hash = 0;
+        for (int i = from; i < to; i++) {
+            int c = name[i] & 0xFF;
+            if (Character.isWhitespace(c)) continue;
+            hash = (hash >>> 2) + (c << 24);
+        }
+        return hash;
+    }
+
+    private void findDeltas() throws IOException {
+        int chunk = (ordered.size() + threads - 1) / threads;
+        if (chunk == 0) return;
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<Integer>> results = new ArrayList<>();
+            for (int from = 0; from < ordered.size(); from += chunk) {
+                List<Entry> slice = ordered.subList(from, Math.min(ordered.size(), from + chunk));
+                results.add(pool.submit(() -> searchWindow(slice)));
+            }
+            for (Future<Integer> f : results) {
+                deltaCount += f.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("delta search interrupted", e);
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof IOException io ? io : new IOException(e.getCause());
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * A window slot. Its delta index is only built once it is first tried as a base.
+     */
+    private static final class Candidate {
+        final Entry entry;
+        final byte[] data;
+        private DeltaEncoder.Index index;
+
+        Candidate(Entry entry, byte[] data) {
+            this.entry = entry;
+            this.data = data;
+        }
+
+        DeltaEncoder.Index index() {
+            if (index == null) index = new DeltaEncoder.Index(data);
+            return index;
+        }
+    }
+
+    private int searchWindow(List<Entry> slice) throws IOException {
+        Deque<Candidate> recent = new ArrayDeque<>(window + 1);
+        int found = 0;
+        for (Entry e : slice) {
+            if (e.size < MIN_DELTA_SIZE || e.size > BIG_FILE_THRESHOLD) continue;
+            byte[] data = db.open(e.id).getBytes();
+
+            for (Candidate c : recent) {
+                if (c.entry.type != e.type || c.entry.depth >= maxDepth) continue;
+                if (c.entry.size < e.size / 32) continue;
+                long limit = e.delta == null ? e.size / 2 - 20 : e.delta.length - 1;
+                if (limit <= 0) continue;
+                byte[] delta = DeltaEncoder.encode(c.index(), data, (int) limit);
+                if (delta != null) {
+                    e.delta = delta;
+                    e.base = c.entry;
+                    e.depth = c.entry.depth + 1;
+                }
+            }
+            if (e.delta != null) found++;
+
+            recent.addFirst(new Candidate(e, data));
+            if (recent.size() > window) recent.removeLast();
+        }
+        return found;
+    }
+
+    private byte[] writePack(Path file) throws IOException {
+        MessageDigest sha1 = sha1();
+        try (PackOutputStream out = new PackOutputStream(
+                new BufferedOutputStream(Files.newOutputStream(file), 64 * 1024), sha1)) {
+            out.write(ByteBuffer.allocate(12).putInt(0x5041434b).putInt(2).putInt(ordered.size()).array());
+
+            Deflater deflater = ObjectCodec.deflater(compression);
+            try {
+                byte[] buffer = new byte[ObjectCodec.BUFFER_SIZE];
+                byte[] compressed = new byte[ObjectCodec.BUFFER_SIZE];
+                for (Entry e : ordered) {
+                    e.offset = out.position;
+                    out.crc.reset();
+                    if (e.base != null) {
+                        writeHeader(out, PackFile.OBJ_OFS_DELTA, e.delta.length);
+                        writeOffset(out, e.offset - e.base.offset);
+                        deflate(out, deflater, buffer, compressed, new ByteArrayInputStream(e.delta));
+                    } else {
+                        writeHeader(out, e.type.packCode(), e.size);
+                        try (InputStream in = db.open(e.id).openStream()) {
+                            deflate(out, deflater, buffer, compressed, in);
+                        }
+                    }
+                    e.crc = (int) out.crc.getValue();
+                    e.delta = null;
+                }
+            } finally {
+                ObjectCodec.release(deflater);
+            }
+            byte[] trailer = sha1.digest();
+            out.writeTrailer(trailer);
+            return trailer;
+        }
+    }
+
+    /**
+     * Compresses one object as its own zlib stream, reusing the deflater and both buffers.
+     */
+    private static void deflate(OutputStream out, Deflater deflater, byte[] buffer, byte[] compressed, InputStream in) throws IOException {
+        deflater.reset();
+        // Only zlib's own time counts; reading the object may inflate it, which is traced there.
+        long nanos = 0;
+        int n;
+        while ((n = in.read(buffer)) > 0) {
+            deflater.setInput(buffer, 0, n);
+            while (!deflater.needsInput()) {
+                long start = Trace.start();
+                int c = deflater.deflate(compressed);
+                nanos += Trace.start() - start;
+                out.write(compressed, 0, c);
+            }
+        }
+        deflater.finish();
+        while (!deflater.finished()) {
+            long start = Trace.start();
+            int c = deflater.deflate(compressed);
+            nanos += Trace.start() - start;
+            out.write(compressed, 0, c);
+        }
+        Trace.end(Phase.DEFLATE, Trace.start() - nanos, deflater.getBytesRead());
+    }
+
+    private static void writeHeader(OutputStream out, int type, long size) throws IOException {
+        int c = (type << 4) | (int) (size & 15);
+        size >>>= 4;
+        while (size != 0) {
+            out.write(c | 0x80);
+            c = (int) (size & 0x7f);
+            size >>>= 7;
+        }
+        out.write(c);
+    }
+
+    private static void writeOffset(OutputStream out, long rel) throws IOException {
+        byte[] buf = new byte[10];
+        int pos = buf.length - 1;
+        buf[pos] = (byte) (rel & 0x7f);
+        while ((rel >>>= 7) != 0) {
+            rel--;
+            buf[--pos] = (byte) (0x80 | (rel & 0x7f));
+        }
+        out.write(buf, pos, buf.length - pos);
+    }
+
+    private void writeIndex(Path file, byte[] packSha) throws IOException {
+        List<Entry> byId = new ArrayList<>(ordered);
+        byId.sort((a, b) -> a.id.compareTo(b.id));
+        ObjectId[] ids = new ObjectId[byId.size()];
+        int[] crcs = new int[byId.size()];
+        long[] offsets = new long[byId.size()];
+        for (int i = 0; i < ids.length; i++) {
+            Entry e = byId.get(i);
+            ids[i] = e.id;
+            crcs[i] = e.crc;
+            offsets[i] = e.offset;
+        }
+        PackIndex.write(file, ids, crcs, offsets, packSha);
+    }
+
+    /**
+     * Re-reads every object from the finished pack and checks it hashes to its id.
+     */
+    private void verify(Path idx) throws IOException {
+        PackFile pack = new PackFile(idx, Arena.ofAuto());
+        PackIndex index = pack.index();
+        if (index.objectCount() != ordered.size()) throw new IOException("pack index lists the wrong number of objects");
+        MessageDigest sha1 = sha1();
+        byte[] buffer = new byte[64 * 1024];
+        for (int i = 0; i < index.objectCount(); i++) {
+            ObjectId id = index.idAt(i);
+            ObjectLoader loader = pack.open(id, db);
+            sha1.update((loader.type().typeName() + " " + loader.size() + "\0").getBytes(StandardCharsets.US_ASCII));
+            try (InputStream in = loader.openStream()) {
+                int n;
+                while ((n = in.read(buffer)) > 0) sha1.update(buffer, 0, n);
+            }
+            if (!id.equals(sha1.digest(), 0)) {
+                throw new IOException("pack verification failed for " + id);
+            }
+        }
+    }
+
+    private static MessageDigest sha1() {
+        try {
+            return MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Counts bytes and feeds them to the trailer digest and the per-object CRC.
+     */
+    private static final class PackOutputStream extends OutputStream {
+        private final OutputStream out;
+        private final MessageDigest digest;
+        final CRC32 crc = new CRC32();
+        long position;
+
+        PackOutputStream(OutputStream out, MessageDigest digest) {
+            this.out = out;
+            this.digest = digest;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            digest.update((byte) b);
+            crc.update(b);
+            position++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            digest.update(b, off, len);
+            crc.update(b, off, len);
+            position += len;
+        }
+
+        void writeTrailer(byte[] trailer) throws IOException {
+            out.write(trailer);
+        }
+
+        @Override
+        public void close() throws IOException {
+            out.close();
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package object;
+
+import java.io.ByteArrayInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * An object stored in a pack. Whole objects stream straight from the mapping; deltified ones
+ * are reconstructed in memory, since a delta can copy from anywhere in its base.
+ */
+final class PackedObjectLoader extends ObjectLoader {
+    private final PackFile pack;
+    private final long offset;
+    private final ObjectDatabase db;
+    private PackFile.Header header;
+    private ObjectType type;
+    private long size = -1;
+
+    PackedObjectLoader(PackFile pack, long offset, ObjectDatabase db) {
+        this.pack = pack;
+        this.offset = offset;
+        this.db = db;
+    }
+
+    private PackFile.Header header() throws IOException {
+        if (header == null) header = pack.readHeader(offset);
+        return header;
+    }
+
+    @Override
+    public ObjectType type() throws IOException {
+        if (type == null) {
+            PackFile.Header h = header();
+            type = h.isDelta() ? pack.resolveType(offset, db) : ObjectType.fromPackCode(h.type());
+        }
+        return type;
+    }
+
+    @Override
+    public long size() throws IOException {
+        if (size < 0) {
+            PackFile.Header h = header();
+            if (h.isDelta()) {
+                // The result size is the second varint of the delta; inflating its first few bytes is enough.
+                byte[] prefix = new byte[20];
+                int n;
+                try (InputStream in = new InflatingInputStream(pack.inflateStream(h.dataOffset()))) {
+                    n = in.readNBytes(prefix, 0, (int) Math.min(prefix.length, h.size()));
+                }
+                if (n < 2) throw new EOFException("truncated delta at offset " + offset + " in " + pack.path());
+                size = Delta.resultSize(prefix);
+            } else {
+                size = h.size();
+            }
+        }
+        return size;
+    }
+
+    @Override
+    public InputStream openStream() throws IOException {
+        PackFile.Header h = header();
+        if (h.isDelta()) {
+            return new ByteArrayInputStream(pack.load(offset, db));
+        }
+        return new InflatingInputStream(pack.inflateStream(h.dataOffset()));
+    }
+
+    @Override
+    public byte[] getBytes() throws IOException {
+        return pack.load(offset, db);
+    }
+}
@@ -0,0 +1,21 @@
+package object;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Reads the one field of an annotated tag needed to peel it: the object it points to.
+ */
+public final class Tag {
+    private Tag() {
+    }
+
+    public static ObjectId target(byte[] data) throws IOException {
+        ObjectId id = null;
+        if (data.length > 7 + ObjectId.HEX_LENGTH && new String(data, 0, 7, StandardCharsets.US_ASCII).equals("object ")) {
+            id = ObjectId.tryParse(new String(data, 7, ObjectId.HEX_LENGTH, StandardCharsets.US_ASCII));
+        }
+        if (id == null) throw new IOException("corrupt tag: no object line");
+        return id;
+    }
+}
@@ -0,0 +1,75 @@
+package object;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileAttribute;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.EnumSet;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Temp files in the object directory, which end up with the permissions git gives its files
+ * there: 0444 less the umask. Everyone the umask admits can read them, so a repository can be
+ * shared between users, and nobody can change them once they are in place.
+ * {@link Files#createTempFile(Path, String, String)} would leave them 0600.
+ */
+final class TempFiles {
+    private static final boolean POSIX = FileSystems.getDefault().supportedFileAttributeViews().contains("posix");
+    private static final FileAttribute<?>[] READ_ONLY = posix("r--r--r--");
+    // Writable by us until finished; the umask applies to the read bits as it would to git's 0444.
+    private static final FileAttribute<?>[] WRITABLE = posix("rw-r--r--");
+    private static final Set<StandardOpenOption> CREATE = EnumSet.of(StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+
+    private TempFiles() {
+    }
+
+    private static FileAttribute<?>[] posix(String permissions) {
+        return POSIX
+                ? new FileAttribute<?>[] {PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString(permissions))}
+                : new FileAttribute<?>[0];
+    }
+
+    /**
+     * A name in {@code dir} starting with {@code prefix} that no other writer picks.
+     */
+    static Path name(Path dir, String prefix) {
+        return dir.resolve(prefix + Long.toUnsignedString(ThreadLocalRandom.current().nextLong(), 36));
+    }
+
+    /**
+     * Creates a temp file that is read-only from the start, like git's loose objects, and opens
+     * it for writing: only the returned channel can write to it.
+     */
+    static FileChannel createReadOnly(Path file) throws IOException {
+        return FileChannel.open(file, CREATE, READ_ONLY);
+    }
+
+    /**
+     * Creates an empty temp file that can be reopened for writing, as a pack or its index is.
+     * {@link #makeReadOnly} must be called once it is complete.
+     */
+    static Path create(Path dir, String prefix) throws IOException {
+        return Files.createFile(name(dir, prefix), WRITABLE);
+    }
+
+    /**
+     * Clears the write bits of a finished file before it is renamed into place, as git does for
+     * packs.
+     */
+    static void makeReadOnly(Path file) throws IOException {
+        if (!POSIX) return;
+        PosixFileAttributeView view = Files.getFileAttributeView(file, PosixFileAttributeView.class);
+        Set<PosixFilePermission> permissions = view.readAttributes().permissions();
+        permissions.remove(PosixFilePermission.OWNER_WRITE);
+        permissions.remove(PosixFilePermission.GROUP_WRITE);
+        permissions.remove(PosixFilePermission.OTHERS_WRITE);
+        view.setPermissions(permissions);
+    }
+}
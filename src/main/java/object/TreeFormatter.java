@@ -0,0 +1,77 @@
+package object;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Builds the canonical body of a tree object: one {@code <mode> SP <name> NUL <raw id>} record per
+ * entry, written straight into a growable byte array. Callers append entries already in tree
+ * order, which {@link #compare} defines.
+ */
+public final class TreeFormatter {
+    public static final byte[] MODE_FILE = "100644".getBytes(StandardCharsets.US_ASCII);
+    public static final byte[] MODE_EXECUTABLE = "100755".getBytes(StandardCharsets.US_ASCII);
+    public static final byte[] MODE_SYMLINK = "120000".getBytes(StandardCharsets.US_ASCII);
+    public static final byte[] MODE_TREE = "40000".getBytes(StandardCharsets.US_ASCII);
+
+    private byte[] buffer;
+    private int size;
+
+    public TreeFormatter(int expectedEntries) {
+        // Mode, separators and id take 28 bytes; leave room for a short name.
+        this.buffer = new byte[Math.max(64, expectedEntries * 48)];
+    }
+
+    public void append(byte[] mode, byte[] name, ObjectId id) {
+        ensureCapacity(mode.length + name.length + 2 + ObjectId.RAW_LENGTH);
+        System.arraycopy(mode, 0, buffer, size, mode.length);
+        size += mode.length;
+        buffer[size++] = ' ';
+        System.arraycopy(name, 0, buffer, size, name.length);
+        size += name.length;
+        buffer[size++] = 0;
+        id.copyRawTo(buffer, size);
+        size += ObjectId.RAW_LENGTH;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public byte[] toByteArray() {
+        return Arrays.copyOf(buffer, size);
+    }
+
+    private void ensureCapacity(int extra) {
+        if (size + extra > buffer.length) {
+            buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, size + extra));
+        }
+    }
+
+    /**
+     * The mode as it is written in a tree: {@link TreeIterator}'s modes, without leading zeros.
+     */
+    public static byte[] mode(int mode) {
+        return switch (mode) {
+            case TreeIterator.MODE_TREE -> MODE_TREE;
+            case TreeIterator.MODE_EXECUTABLE -> MODE_EXECUTABLE;
+            case TreeIterator.MODE_SYMLINK -> MODE_SYMLINK;
+            case TreeIterator.MODE_FILE -> MODE_FILE;
+            default -> Integer.toOctalString(mode).getBytes(StandardCharsets.US_ASCII);
+        };
+    }
+
+    /**
+     * Git orders tree entries by raw name bytes, comparing a subtree as if its name ended in '/'.
+     */
+    public static int compare(byte[] a, boolean aIsTree, byte[] b, boolean bIsTree) {
+        int len = Math.min(a.length, b.length);
+        int mismatch = Arrays.mismatch(a, 0, len, b, 0, len);
+        if (mismatch >= 0) {
+            return Byte.toUnsignedInt(a[mismatch]) - Byte.toUnsignedInt(b[mismatch]);
+        }
+        int ca = a.length > len ? Byte.toUnsignedInt(a[len]) : aIsTree ? '/' : 0;
+        int cb = b.length > len ? Byte.toUnsignedInt(b[len]) : bIsTree ? '/' : 0;
+        return ca - cb;
+    }
+}
@@ -0,0 +1,185 @@
+package object;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * A flyweight cursor over the body of a tree object. {@link #next} only records where the current
+ * entry's mode, name and id sit in the array, so walking a tree allocates nothing; callers copy
+ * out exactly the parts they print and build an {@link ObjectId} only when they need one.
+ *
+ * <p>One iterator can be {@link #reset} onto another tree and reused.
+ */
+public final class TreeIterator {
+    public static final int MODE_TREE = 0040000;
+    public static final int MODE_FILE = 0100644;
+    public static final int MODE_EXECUTABLE = 0100755;
+    public static final int MODE_SYMLINK = 0120000;
+    public static final int MODE_GITLINK = 0160000;
+    public static final int MODE_TYPE_MASK = 0170000;
+
+    private byte[] data;
+    private int end;
+    private int next;
+
+    private int mode;
+    private int nameStart;
+    private int nameEnd;
+
+    public TreeIterator() {
+        this(new byte[0]);
+    }
+
+    public TreeIterator(byte[] data) {
+        reset(data);
+    }
+
+    public TreeIterator reset(byte[] data) {
+        this.data = data;
+        this.end = data.length;
+        this.next = 0;
+        return this;
+    }
+
+    /**
+     * Moves to the next entry, returning false once the tree is exhausted.
+     *
+     * @throws IOException if the entry is truncated or its mode is not octal
+     */
+    public boolean next() throws IOException {
+        if (next >= end) return false;
+        int p = next;
+        int m = 0;
+        while (p < end && data[p] != ' ') {
+            int digit = data[p++] - '0';
+            if (digit < 0 || digit > 7) throw new IOException("corrupted tree object: bad mode");
+            m = (m << 3) | digit;
+        }
+        if (p == next || p >= end) throw new IOException("corrupted tree object");
+        nameStart = ++p;
+        while (p < end && data[p] != 0) p++;
+        if (p + 1 + ObjectId.RAW_LENGTH > end) throw new IOException("corrupted tree object");
+        nameEnd = p;
+        mode = m;
+        next = p + 1 + ObjectId.RAW_LENGTH;
+        return true;
+    }
+
+    public int mode() {
+        return mode;
+    }
+
+    public boolean isTree() {
+        return (mode & MODE_TYPE_MASK) == MODE_TREE;
+    }
+
+    /**
+     * The type of object the entry points to: a tree, a commit for a submodule, otherwise a blob.
+     */
+    public ObjectType type() {
+        return switch (mode & MODE_TYPE_MASK) {
+            case MODE_TREE -> ObjectType.TREE;
+            case MODE_GITLINK -> ObjectType.COMMIT;
+            default -> ObjectType.BLOB;
+        };
+    }
+
+    /**
+     * The array the tree is read from; the name and id offsets index into it.
+     */
+    public byte[] buffer() {
+        return data;
+    }
+
+    public int nameOffset() {
+        return nameStart;
+    }
+
+    public int nameLength() {
+        return nameEnd - nameStart;
+    }
+
+    public int idOffset() {
+        return nameEnd + 1;
+    }
+
+    public String name() {
+        return new String(data, nameStart, nameEnd - nameStart, StandardCharsets.UTF_8);
+    }
+
+    public ObjectId id() {
+        return ObjectId.fromRaw(data, idOffset());
+    }
+
+    public void copyNameTo(byte[] dst, int offset) {
+        System.arraycopy(data, nameStart, dst, offset, nameEnd - nameStart);
+    }
+
+    public void copyHexIdTo(byte[] dst, int offset) {
+        ObjectId.copyHexTo(data, idOffset(), dst, offset);
+    }
+
+    /**
+     * Whether the other iterator's current entry has the same mode and id as this one's; an
+     * equal subtree holds equal contents and need not be opened.
+     */
+    public boolean sameEntry(TreeIterator other) {
+        return mode == other.mode
+                && Arrays.equals(data, idOffset(), idOffset() + ObjectId.RAW_LENGTH,
+                        other.data, other.idOffset(), other.idOffset() + ObjectId.RAW_LENGTH);
+    }
+
+    /**
+     * Orders the current entries of two iterators as {@link TreeFormatter#compare} does, without
+     * copying their names out.
+     */
+    public static int compare(TreeIterator a, TreeIterator b) {
+        int aLength = a.nameLength();
+        int bLength = b.nameLength();
+        int len = Math.min(aLength, bLength);
+        int mismatch = Arrays.mismatch(a.data, a.nameStart, a.nameStart + len, b.data, b.nameStart, b.nameStart + len);
+        if (mismatch >= 0) {
+            return Byte.toUnsignedInt(a.data[a.nameStart + mismatch]) - Byte.toUnsignedInt(b.data[b.nameStart + mismatch]);
+        }
+        int ca = aLength > len ? Byte.toUnsignedInt(a.data[a.nameStart + len]) : a.isTree() ? '/' : 0;
+        int cb = bLength > len ? Byte.toUnsignedInt(b.data[b.nameStart + len]) : b.isTree() ? '/' : 0;
+        return ca - cb;
+    }
+
+    /**
+     * Advances to the entry named by {@code name[from, to)}, comparing names as bytes where they
+     * lie. Entries are in git's order, so the scan stops at the first entry that sorts after the
+     * name, whether that name is a file or a tree. Returns false if the tree has no such entry.
+     */
+    public boolean seek(byte[] name, int from, int to) throws IOException {
+        int length = to - from;
+        while (next()) {
+            int entryLength = nameLength();
+            int len = Math.min(entryLength, length);
+            int mismatch = Arrays.mismatch(data, nameStart, nameStart + len, name, from, from + len);
+            int cmp;
+            if (mismatch >= 0) {
+                cmp = Byte.toUnsignedInt(data[nameStart + mismatch]) - Byte.toUnsignedInt(name[from + mismatch]);
+            } else if (entryLength == length) {
+                return true;
+            } else {
+                // A tree of that name would sort as if it ended in '/', the later of its two places.
+                int ce = entryLength > len ? Byte.toUnsignedInt(data[nameStart + len]) : isTree() ? '/' : 0;
+                int cn = length > len ? Byte.toUnsignedInt(name[from + len]) : '/';
+                cmp = ce - cn;
+            }
+            if (cmp > 0) return false;
+        }
+        return false;
+    }
+
+    /**
+     * Writes the mode as six octal digits, zero-padded the way git prints it.
+     */
+    public void copyModeTo(byte[] dst, int offset) {
+        for (int i = 5; i >= 0; i--) {
+            dst[offset + i] = (byte) ('0' + ((mode >>> (3 * (5 - i))) & 7));
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package refs;
+
+import object.ObjectId;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Stream;
+
+/**
+ * Reads refs the way git stores them: loose files under {@code refs/} (and {@code HEAD}), which
+ * override the entries of {@code packed-refs}. Symbolic refs are followed.
+ */
+public final class RefDatabase {
+    private static final int MAX_SYMREF_DEPTH = 5;
+
+    private final Path gitDir;
+    private Map<String, ObjectId> packed;
+
+    public RefDatabase(Path gitDir) {
+        this.gitDir = gitDir;
+    }
+
+    /**
+     * Resolves a full id, or a ref name using git's search order: {@code <name>},
+     * {@code refs/<name>}, {@code refs/tags/<name>}, {@code refs/heads/<name>},
+     * {@code refs/remotes/<name>} and {@code refs/remotes/<name>/HEAD}. Returns null if nothing
+     * matches.
+     *
+     * <p>As in git, {@code <name>} itself is only looked up if it is under {@code refs/} or
+     * is {@code HEAD} or another all-caps pseudo-ref such as {@code FETCH_HEAD}; a branch called
+     * {@code config} is not the repository's config file. A candidate whose file does not hold a
+     * ref is skipped rather than an error.
+     */
+    public ObjectId resolve(String name) throws IOException {
+        ObjectId id = ObjectId.tryParse(name);
+        if (id != null) return id;
+        if (name.isEmpty() || name.contains("..")) return null;
+        for (String candidate : List.of(name, "refs/" + name, "refs/tags/" + name, "refs/heads/" + name,
+                "refs/remotes/" + name, "refs/remotes/" + name + "/HEAD")) {
+            if (!candidate.startsWith("refs/") && !isPseudoRef(candidate)) continue;
+            id = read(candidate, false);
+            if (id != null) return id;
+        }
+        return null;
+    }
+
+    /**
+     * The id a ref points at, following symbolic refs, or null if it does not exist.
+     */
+    public ObjectId read(String refName) throws IOException {
+        return read(refName, true);
+    }
+
+    /**
+     * Like {@link #read(String)}; unless {@code strict}, a loose file that holds neither an id
+     * nor a symbolic ref reads as no ref at all.
+     */
+    private ObjectId read(String refName, boolean strict) throws IOException {
+        for (int depth = 0; depth < MAX_SYMREF_DEPTH; depth++) {
+            String value = readLoose(refName);
+            if (value == null) return packedRefs().get(refName);
+            if (!value.startsWith("ref:")) {
+                ObjectId id = ObjectId.tryParse(value);
+                if (id == null && strict) throw new IOException("bad ref " + refName + ": " + value);
+                return id;
+            }
+            refName = value.substring(4).strip();
+        }
+        throw new IOException("symbolic ref " + refName + " is nested too deeply");
+    }
+
+    /**
+     * Every ref under {@code refs/}, sorted by name.
+     */
+    public Map<String, ObjectId> refs() throws IOException {
+        Map<String, ObjectId> refs = new TreeMap<>(packedRefs());
+        Path root = gitDir.resolve("refs");
+        if (Files.isDirectory(root)) {
+            try (Stream<Path> files = Files.walk(root)) {
+                for (Path file : (Iterable<Path>) files.filter(Files::isRegularFile)::iterator) {
+                    String name = gitDir.relativize(file).toString().replace(file.getFileSystem().getSeparator(), "/");
+                    ObjectId id = read(name);
+                    if (id != null) refs.put(name, id);
+                }
+            }
+        }
+        return refs;
+    }
+
+    /**
+     * git's syntax for refs outside {@code refs/}: upper-case letters, '-' and '_'.
+     */
+    private static boolean isPseudoRef(String name) {
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            if ((c < 'A' || c > 'Z') && c != '-' && c != '_') return false;
+        }
+        return true;
+    }
+
+    private String readLoose(String refName) throws IOException {
+        Path file = gitDir.resolve(refName);
+        if (!Files.isRegularFile(file)) return null;
+        try {
+            return Files.readString(file, StandardCharsets.UTF_8).strip();
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+    }
+
+    /**
+     * {@code packed-refs} lines are {@code <id> <name>}; {@code #} starts the header and
+     * {@code ^} lines give the peeled target of the tag above, which we do not need.
+     */
+    private Map<String, ObjectId> packedRefs() throws IOException {
+        if (packed == null) {
+            Map<String, ObjectId> refs = new TreeMap<>();
+            try {
+                for (String line : Files.readAllLines(gitDir.resolve("packed-refs"), StandardCharsets.UTF_8)) {
+                    if (line.isEmpty() || line.charAt(0) == '#' || line.charAt(0) == '^') continue;
+                    int space = line.indexOf(' ');
+                    ObjectId id = space == ObjectId.HEX_LENGTH ? ObjectId.tryParse(line.substring(0, space)) : null;
+                    if (id == null) throw new IOException("bad packed-refs line: " + line);
+                    refs.put(line.substring(space + 1), id);
+                }
+            } catch (NoSuchFileException e) {
+                // No packed refs.
+            }
+            packed = refs;
+        }
+        return packed;
+    }
+}
@@ -0,0 +1,60 @@
+package revwalk;
+
+import object.CommitGraph;
+import object.ObjectId;
+
+/**
+ * A commit as a history walk sees it: its parents, commit time and generation, plus the flags
+ * the walk paints on it. Parents are filled in by {@link RevWalk#parse}, from the commit-graph
+ * when the commit is in it and from the object otherwise.
+ */
+public final class RevCommit {
+    private static final RevCommit[] NO_PARENTS = {};
+
+    final ObjectId id;
+    RevCommit[] parents = NO_PARENTS;
+    long commitTime;
+    int generation = CommitGraph.GENERATION_INFINITY;
+    int graphPosition = -1;
+    int flags;
+
+    RevCommit(ObjectId id) {
+        this.id = id;
+    }
+
+    public ObjectId id() {
+        return id;
+    }
+
+    public int parentCount() {
+        return parents.length;
+    }
+
+    public RevCommit parent(int i) {
+        return parents[i];
+    }
+
+    /**
+     * Committer time in seconds since the epoch.
+     */
+    public long commitTime() {
+        return commitTime;
+    }
+
+    /**
+     * The topological level from the commit-graph, or {@link CommitGraph#GENERATION_INFINITY} for
+     * a commit the graph does not cover.
+     */
+    public int generation() {
+        return generation;
+    }
+
+    public boolean has(int flag) {
+        return (flags & flag) != 0;
+    }
+
+    @Override
+    public String toString() {
+        return id.name();
+    }
+}
@@ -0,0 +1,345 @@
+package revwalk;
+
+import config.Config;
+import object.Commit;
+import object.CommitGraph;
+import object.MissingObjectException;
+import object.ObjectDatabase;
+import object.ObjectId;
+import object.ObjectIdMap;
+import object.ObjectLoader;
+import object.ObjectType;
+import object.Tag;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Walks commit history. Each commit is parsed once into a {@link RevCommit}; when a commit-graph
+ * is available, parsing a commit it covers is a few reads from the mapped file and no object is
+ * inflated.
+ *
+ * <p>{@link #next()} yields commits newest first, by commit date, the order {@code git rev-list}
+ * uses without {@code --topo-order}. Ties go to the commit that was queued first. Once any commit
+ * is marked uninteresting, the walk is limited: it runs until only uninteresting commits are
+ * left, so that a commit reachable from both sides is never shown.
+ */
+public final class RevWalk {
+    static final int PARSED = 1;
+    static final int SEEN = 1 << 1;
+    static final int UNINTERESTING = 1 << 2;
+    static final int PARENT1 = 1 << 3;
+    static final int PARENT2 = 1 << 4;
+    static final int STALE = 1 << 5;
+    static final int RESULT = 1 << 6;
+    static final int REACHED = 1 << 7;
+
+    /** How many more uninteresting commits a limited walk looks at, in case of clock skew. */
+    private static final int SLOP = 5;
+
+    private record Queued(RevCommit commit, long seq) { }
+
+    private static final Comparator<Queued> DATE_ORDER = Comparator
+            .comparingLong((Queued q) -> -q.commit.commitTime)
+            .thenComparingLong(Queued::seq);
+    private static final Comparator<Queued> GENERATION_ORDER = Comparator
+            .comparingInt((Queued q) -> -q.commit.generation)
+            .thenComparingLong(q -> -q.commit.commitTime)
+            .thenComparingLong(Queued::seq);
+
+    private final ObjectDatabase db;
+    private final CommitGraph graph;
+    private final ObjectIdMap<RevCommit> commits = new ObjectIdMap<>();
+    private final PriorityQueue<Queued> queue = new PriorityQueue<>(DATE_ORDER);
+    private long seq;
+    private boolean limited;
+    private Iterator<RevCommit> limitedResult;
+
+    /**
+     * @param graph the repository's commit-graph, or null to parse every commit from its object
+     */
+    public RevWalk(ObjectDatabase db, CommitGraph graph) {
+        this.db = db;
+        this.graph = graph;
+    }
+
+    /**
+     * A walk that uses the repository's commit-graph unless {@code core.commitGraph} is false.
+     */
+    public static RevWalk open(ObjectDatabase db, Config config) throws IOException {
+        boolean useGraph = config.getBoolean("core", null, "commitGraph", true);
+        return new RevWalk(db, useGraph ? CommitGraph.open(db.objectsDirectory()) : null);
+    }
+
+    public boolean hasCommitGraph() {
+        return graph != null;
+    }
+
+    /**
+     * The parsed commit {@code id} names; it must be a commit.
+     */
+    public RevCommit lookup(ObjectId id) throws IOException {
+        RevCommit c = commits.computeIfAbsent(id, RevCommit::new);
+        parse(c);
+        return c;
+    }
+
+    /**
+     * Follows annotated tags from {@code id} to a commit. Returns null if they lead to some other
+     * kind of object.
+     */
+    public RevCommit peel(ObjectId id) throws IOException {
+        for (int depth = 0; depth < 16; depth++) {
+            RevCommit known = commits.get(id);
+            if (known != null || (graph != null && graph.findPosition(id) >= 0)) return lookup(id);
+            ObjectLoader loader = db.open(id);
+            if (loader == null) throw new MissingObjectException(id);
+            if (loader.type() == ObjectType.COMMIT) return lookup(id);
+            if (loader.type() != ObjectType.TAG) return null;
+            id = Tag.target(loader.getBytes());
+        }
+        return null;
+    }
+
+    /**
+     * Inflates and parses the whole commit, for callers that need its message or idents.
+     */
+    public Commit parseBody(RevCommit c) throws IOException {
+        ObjectLoader loader = db.open(c.id);
+        if (loader == null) throw new MissingObjectException(c.id);
+        if (loader.type() != ObjectType.COMMIT) {
+            throw new IOException("object " + c.id.name() + " is a " + loader.type().typeName() + ", not a commit");
+        }
+        return Commit.parse(loader.getBytes());
+    }
+
+    void parse(RevCommit c) throws IOException {
+        if (c.has(PARSED)) return;
+        if (graph != null && c.graphPosition < 0) c.graphPosition = graph.findPosition(c.id);
+        int pos = c.graphPosition;
+        if (pos >= 0) {
+            RevCommit[] parents = new RevCommit[graph.parentCount(pos)];
+            for (int i = 0; i < parents.length; i++) {
+                int parentPos = graph.parentAt(pos, i);
+                RevCommit p = commits.computeIfAbsent(graph.idAt(parentPos), RevCommit::new);
+                p.graphPosition = parentPos;
+                parents[i] = p;
+            }
+            c.parents = parents;
+            c.commitTime = graph.commitTimeAt(pos);
+            c.generation = graph.generationAt(pos);
+        } else {
+            Commit commit = parseBody(c);
+            List<ObjectId> ids = commit.parents();
+            RevCommit[] parents = new RevCommit[ids.size()];
+            for (int i = 0; i < parents.length; i++) parents[i] = commits.computeIfAbsent(ids.get(i), RevCommit::new);
+            c.parents = parents;
+            c.commitTime = commit.commitTime();
+        }
+        c.flags |= PARSED;
+    }
+
+    public void markStart(RevCommit c) {
+        if (c.has(SEEN)) return;
+        c.flags |= SEEN;
+        queue.add(new Queued(c, seq++));
+    }
+
+    /**
+     * Hides {@code c} and everything reachable from it, as {@code ^c} does.
+     */
+    public void markUninteresting(RevCommit c) {
+        c.flags |= UNINTERESTING;
+        limited = true;
+        markStart(c);
+    }
+
+    /**
+     * The next commit of the walk, or null when it is done.
+     */
+    public RevCommit next() throws IOException {
+        if (limited) {
+            if (limitedResult == null) limitedResult = limit().iterator();
+            while (limitedResult.hasNext()) {
+                RevCommit c = limitedResult.next();
+                if (!c.has(UNINTERESTING)) return c;
+            }
+            return null;
+        }
+        while (!queue.isEmpty()) {
+            RevCommit c = queue.poll().commit;
+            addParents(c);
+            if (!c.has(UNINTERESTING)) return c;
+        }
+        return null;
+    }
+
+    /**
+     * Walks until only uninteresting commits remain queued, then a few more so that a commit
+     * with a skewed clock cannot hide an uninteresting path, and returns the interesting commits
+     * in walk order. Some may since have been marked uninteresting; {@link #next()} skips them.
+     */
+    private List<RevCommit> limit() throws IOException {
+        List<RevCommit> result = new ArrayList<>();
+        long date = Long.MAX_VALUE;
+        int slop = SLOP;
+        while (!queue.isEmpty()) {
+            RevCommit c = queue.poll().commit;
+            addParents(c);
+            if (c.has(UNINTERESTING)) {
+                slop = stillInteresting(date, slop);
+                if (slop > 0) continue;
+                break;
+            }
+            date = c.commitTime;
+            result.add(c);
+        }
+        return result;
+    }
+
+    private int stillInteresting(long date, int slop) {
+        if (queue.isEmpty()) return 0;
+        if (date <= queue.peek().commit.commitTime) return SLOP;
+        for (Queued q : queue) {
+            if (!q.commit.has(UNINTERESTING)) return SLOP;
+        }
+        return slop - 1;
+    }
+
+    private void addParents(RevCommit c) throws IOException {
+        parse(c);
+        boolean uninteresting = c.has(UNINTERESTING);
+        for (RevCommit p : c.parents) {
+            parse(p);
+            if (uninteresting) {
+                p.flags |= UNINTERESTING;
+                markAncestorsUninteresting(p);
+            }
+            if (!p.has(SEEN)) {
+                p.flags |= SEEN;
+                queue.add(new Queued(p, seq++));
+            }
+        }
+    }
+
+    /**
+     * Pushes UNINTERESTING down through the ancestors that are already parsed; the rest pick it
+     * up from their children as the walk reaches them.
+     */
+    private static void markAncestorsUninteresting(RevCommit c) {
+        ArrayDeque<RevCommit> todo = new ArrayDeque<>();
+        todo.push(c);
+        while (!todo.isEmpty()) {
+            for (RevCommit p : todo.pop().parents) {
+                if (p.has(UNINTERESTING)) continue;
+                p.flags |= UNINTERESTING;
+                if (p.has(PARSED)) todo.push(p);
+            }
+        }
+    }
+
+    /**
+     * Whether {@code ancestor} is reachable from {@code descendant}. A commit's ancestors all have
+     * lower generations, so the search never descends below {@code ancestor}'s generation; a
+     * commit outside the graph has none of the graph's commits as a descendant.
+     */
+    public boolean isAncestor(RevCommit ancestor, RevCommit descendant) throws IOException {
+        parse(ancestor);
+        int cutoff = ancestor.generation;
+        List<RevCommit> reached = new ArrayList<>();
+        ArrayDeque<RevCommit> todo = new ArrayDeque<>();
+        descendant.flags |= REACHED;
+        reached.add(descendant);
+        todo.push(descendant);
+        try {
+            while (!todo.isEmpty()) {
+                RevCommit c = todo.pop();
+                if (c == ancestor) return true;
+                parse(c);
+                for (RevCommit p : c.parents) {
+                    if (p.has(REACHED)) continue;
+                    p.flags |= REACHED;
+                    reached.add(p);
+                    parse(p);
+                    if (p.generation >= cutoff) todo.push(p);
+                }
+            }
+            return false;
+        } finally {
+            for (RevCommit c : reached) c.flags &= ~REACHED;
+        }
+    }
+
+    /**
+     * The best common ancestors of {@code a} and {@code b}, newest first. Both sides are painted
+     * down in generation order; a commit reached from both is a candidate and its ancestors go
+     * stale, and the walk stops once only stale commits are queued. Unless {@code all} is false
+     * and one base is enough, candidates that are ancestors of other candidates are dropped.
+     */
+    public List<RevCommit> mergeBases(RevCommit a, RevCommit b, boolean all) throws IOException {
+        if (a == b) return List.of(a);
+        List<RevCommit> candidates = new ArrayList<>();
+        PriorityQueue<Queued> paint = new PriorityQueue<>(GENERATION_ORDER);
+        List<RevCommit> touched = new ArrayList<>();
+        parse(a);
+        parse(b);
+        a.flags |= PARENT1;
+        b.flags |= PARENT2;
+        touched.add(a);
+        touched.add(b);
+        paint.add(new Queued(a, seq++));
+        paint.add(new Queued(b, seq++));
+        try {
+            while (hasNonStale(paint)) {
+                RevCommit c = paint.poll().commit;
+                int flags = c.flags & (PARENT1 | PARENT2 | STALE);
+                if (flags == (PARENT1 | PARENT2)) {
+                    if (!c.has(RESULT)) {
+                        c.flags |= RESULT;
+                        candidates.add(c);
+                    }
+                    flags |= STALE;
+                }
+                for (RevCommit p : c.parents) {
+                    if ((p.flags & flags) == flags) continue;
+                    parse(p);
+                    p.flags |= flags;
+                    touched.add(p);
+                    paint.add(new Queued(p, seq++));
+                }
+            }
+            candidates.removeIf(c -> c.has(STALE));
+        } finally {
+            for (RevCommit c : touched) c.flags &= ~(PARENT1 | PARENT2 | STALE | RESULT);
+        }
+        candidates.sort(Comparator.comparingLong(c -> -c.commitTime));
+        if (candidates.size() > 1) removeRedundant(candidates);
+        return all || candidates.size() <= 1 ? candidates : candidates.subList(0, 1);
+    }
+
+    private static boolean hasNonStale(PriorityQueue<Queued> queue) {
+        for (Queued q : queue) {
+            if (!q.commit.has(STALE)) return true;
+        }
+        return false;
+    }
+
+    private void removeRedundant(List<RevCommit> candidates) throws IOException {
+        boolean[] redundant = new boolean[candidates.size()];
+        for (int i = 0; i < candidates.size(); i++) {
+            for (int j = 0; j < candidates.size() && !redundant[i]; j++) {
+                if (i != j && !redundant[j] && isAncestor(candidates.get(i), candidates.get(j))) redundant[i] = true;
+            }
+        }
+        int i = 0;
+        for (Iterator<RevCommit> it = candidates.iterator(); it.hasNext(); i++) {
+            it.next();
+            if (redundant[i]) it.remove();
+        }
+    }
+}
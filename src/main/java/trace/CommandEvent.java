@@ -0,0 +1,23 @@
+package trace;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * One command run through {@code Git.run}, from dispatch until it returns.
+ */
+@Name("git.Command")
+@Label("Git Command")
+@Category("Git")
+@StackTrace(false)
+final class CommandEvent extends jdk.jfr.Event {
+    @Label("Command")
+    String command;
+
+    @Label("Arguments")
+    @Description("The command's arguments, space separated")
+    String arguments;
+}
@@ -0,0 +1,33 @@
+package trace;
+
+/**
+ * The parts of a command that {@link Trace} times separately. Each reports how often it ran,
+ * in the unit named here, and how many bytes went through it.
+ */
+public enum Phase {
+    WALK("directory walk", "entries"),
+    READ("file read", "reads"),
+    RECEIVE("network read", "reads"),
+    HASH("hash", "objects"),
+    DEFLATE("deflate", "calls"),
+    INFLATE("inflate", "calls"),
+    WRITE("object write", "writes"),
+    FSYNC("fsync", "files"),
+    OUTPUT("output", "writes");
+
+    private final String label;
+    private final String unit;
+
+    Phase(String label, String unit) {
+        this.label = label;
+        this.unit = unit;
+    }
+
+    public String label() {
+        return label;
+    }
+
+    public String unit() {
+        return unit;
+    }
+}
@@ -0,0 +1,36 @@
+package trace;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * The totals for one {@link Phase} over a whole command, committed when the command ends.
+ */
+@Name("git.Phase")
+@Label("Git Command Phase")
+@Category("Git")
+@StackTrace(false)
+final class PhaseEvent extends jdk.jfr.Event {
+    @Label("Command")
+    String command;
+
+    @Label("Phase")
+    String phase;
+
+    @Label("Count")
+    long count;
+
+    @Label("Bytes")
+    @DataAmount
+    long bytes;
+
+    @Label("Time")
+    @Description("Summed over every thread that ran the phase")
+    @Timespan(Timespan.NANOSECONDS)
+    long time;
+}
@@ -0,0 +1,198 @@
+package trace;
+
+import jdk.jfr.FlightRecorder;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Locale;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Per-phase timing for commands. Code brackets a phase with {@link #start()} and
+ * {@link #end(Phase, long, long)}; the time, count and bytes are summed per {@link Phase} and
+ * reported when the command ends.
+ *
+ * <p>Timing is on when {@code GIT_TRACE_PERFORMANCE} is set, as in git: {@code 1}, {@code 2}
+ * or {@code true} report to stderr, an absolute path appends to that file. It is also on when
+ * the JVM starts with a flight recording ({@code -XX:StartFlightRecording}); every command then
+ * commits a {@code git.Command} event and one {@code git.Phase} event per phase, in the "Git"
+ * category. Otherwise every hook is a test of a constant and costs nothing. A recording started
+ * later with jcmd, say on a long-running server, gets the command events of the commands that
+ * start after it. Event classes are only touched once a recorder exists: registering them costs
+ * a short-lived JVM more than the command itself.
+ *
+ * <p>Phases run on many threads at once in parallel commands, and their times are summed over
+ * all of them, so together they can exceed the command's own elapsed time.
+ */
+public final class Trace {
+    private static final String TARGET = System.getenv("GIT_TRACE_PERFORMANCE");
+    private static final boolean TO_LOG = isOn(TARGET);
+    private static final boolean ENABLED = TO_LOG || FlightRecorder.isInitialized();
+    private static final DateTimeFormatter TIME = DateTimeFormatter.ofPattern("HH:mm:ss.SSSSSS", Locale.ROOT);
+
+    private static final LongAdder[] COUNTS = adders();
+    private static final LongAdder[] BYTES = adders();
+    private static final LongAdder[] NANOS = adders();
+
+    private Trace() {
+    }
+
+    private static boolean isOn(String value) {
+        return value != null && !value.isEmpty() && !value.equals("0") && !value.equalsIgnoreCase("false");
+    }
+
+    private static LongAdder[] adders() {
+        LongAdder[] adders = new LongAdder[Phase.values().length];
+        for (int i = 0; i < adders.length; i++) adders[i] = new LongAdder();
+        return adders;
+    }
+
+    public static boolean enabled() {
+        return ENABLED;
+    }
+
+    /**
+     * The start of a phase, to pass to {@link #end}; 0 when timing is off.
+     */
+    public static long start() {
+        return ENABLED ? System.nanoTime() : 0;
+    }
+
+    /**
+     * Ends one run of {@code phase} that handled {@code bytes} bytes.
+     */
+    public static void end(Phase phase, long start, long bytes) {
+        end(phase, start, 1, bytes);
+    }
+
+    /**
+     * Ends a phase that covered {@code count} of its units at once, such as a directory's entries.
+     */
+    public static void end(Phase phase, long start, long count, long bytes) {
+        if (!ENABLED) return;
+        int i = phase.ordinal();
+        NANOS[i].add(System.nanoTime() - start);
+        COUNTS[i].add(count);
+        BYTES[i].add(bytes);
+    }
+
+    /**
+     * {@code out}, with writes counted as {@link Phase#OUTPUT} while timing is on.
+     */
+    public static OutputStream output(OutputStream out) {
+        return ENABLED ? new TracedOutput(out) : out;
+    }
+
+    /**
+     * Starts tracing a command; closing the result reports it.
+     */
+    public static CommandTrace command(String name, String[] args) {
+        return new CommandTrace(name, String.join(" ", args));
+    }
+
+    public static final class CommandTrace implements AutoCloseable {
+        private final String name;
+        private final String arguments;
+        private final long start = System.nanoTime();
+        private final CommandEvent event = FlightRecorder.isInitialized() ? new CommandEvent() : null;
+        private final PrintStream stdout = System.out;
+
+        private CommandTrace(String name, String arguments) {
+            this.name = name;
+            this.arguments = arguments;
+            if (event != null) event.begin();
+            if (ENABLED) {
+                for (int i = 0; i < COUNTS.length; i++) {
+                    COUNTS[i].reset();
+                    BYTES[i].reset();
+                    NANOS[i].reset();
+                }
+                System.setOut(new PrintStream(output(stdout), true));
+            }
+        }
+
+        @Override
+        public void close() {
+            long elapsed = System.nanoTime() - start;
+            if (event != null) {
+                event.end();
+                event.command = name;
+                event.arguments = arguments;
+                event.commit();
+            }
+            if (!ENABLED) return;
+            System.out.flush();
+            System.setOut(stdout);
+
+            StringBuilder log = new StringBuilder();
+            String now = TIME.format(LocalTime.now());
+            for (Phase phase : Phase.values()) {
+                int i = phase.ordinal();
+                long count = COUNTS[i].sum();
+                if (count == 0) continue;
+                long bytes = BYTES[i].sum();
+                long nanos = NANOS[i].sum();
+                if (event != null) {
+                    PhaseEvent p = new PhaseEvent();
+                    if (p.isEnabled()) {
+                        p.command = name;
+                        p.phase = phase.label();
+                        p.count = count;
+                        p.bytes = bytes;
+                        p.time = nanos;
+                        p.commit();
+                    }
+                }
+                line(log, now, nanos, phase.label() + ": " + count + " " + phase.unit() + ", " + bytes + " bytes");
+            }
+            line(log, now, elapsed, "git command: git " + (arguments.isEmpty() ? name : name + " " + arguments));
+            if (TO_LOG) write(log.toString());
+        }
+
+        private static void line(StringBuilder log, String now, long nanos, String what) {
+            log.append(now).append(" performance: ")
+                    .append(String.format(Locale.ROOT, "%.9f", nanos / 1e9)).append(" s: ").append(what).append('\n');
+        }
+
+        private static void write(String log) {
+            if (TARGET.startsWith("/")) {
+                try {
+                    Files.writeString(Path.of(TARGET), log, StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+                    return;
+                } catch (IOException e) {
+                    System.err.println("warning: could not write performance trace to '" + TARGET + "': " + e.getMessage());
+                }
+            }
+            System.err.print(log);
+            System.err.flush();
+        }
+    }
+
+    private static final class TracedOutput extends FilterOutputStream {
+        TracedOutput(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            long start = start();
+            out.write(b, off, len);
+            end(Phase.OUTPUT, start, len);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            long start = start();
+            out.write(b);
+            end(Phase.OUTPUT, start, 1);
+        }
+    }
+}
@@ -0,0 +1,217 @@
+package transport;
+
+import object.ObjectId;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.ConnectException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * The client side of git's smart HTTP transport, speaking protocol version 2 only. Connecting
+ * fetches the capability advertisement from {@code info/refs}; each command is then one POST
+ * to {@code git-upload-pack}. Responses are read as they arrive, so a pack is never held in
+ * memory here.
+ */
+public final class HttpTransport implements AutoCloseable {
+    private static final String AGENT = "git/codecrafters-git";
+    private static final String SERVICE = "git-upload-pack";
+
+    private final HttpClient client;
+    private final String url;
+    private final Set<String> capabilities;
+
+    private HttpTransport(HttpClient client, String url, Set<String> capabilities) {
+        this.client = client;
+        this.url = url;
+        this.capabilities = capabilities;
+    }
+
+    /**
+     * Reads the server's capabilities. A server that redirects {@code info/refs} is asked the
+     * later commands at the new location, as git does.
+     */
+    public static HttpTransport connect(String url) throws IOException {
+        if (!url.startsWith("http://") && !url.startsWith("https://")) {
+            throw new IOException("unsupported URL '" + url + "': only http:// and https:// are supported");
+        }
+        while (url.endsWith("/")) url = url.substring(0, url.length() - 1);
+        HttpClient client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .connectTimeout(Duration.ofSeconds(30))
+                .build();
+        String path = "/info/refs?service=" + SERVICE;
+        HttpResponse<InputStream> response = send(client, url, request(url + path).GET());
+        String location = response.uri().toString();
+        if (location.endsWith(path)) url = location.substring(0, location.length() - path.length());
+
+        try (InputStream body = response.body()) {
+            checkContentType(response, "application/x-" + SERVICE + "-advertisement", url);
+            PacketLineIn in = new PacketLineIn(body);
+            int n = in.next();
+            // Servers that fall back to version 0 open with the service name; v2 ones need not.
+            if (n > 0 && in.text().startsWith("# service=")) {
+                if (in.next() != PacketLineIn.FLUSH) throw new IOException("protocol error: expected flush after service line");
+                n = in.next();
+            }
+            if (n <= 0 || !in.text().equals("version 2")) {
+                throw new IOException("the server at " + url + " does not speak git protocol version 2");
+            }
+            Set<String> capabilities = new HashSet<>();
+            while (in.next() > 0) capabilities.add(in.text());
+            return new HttpTransport(client, url, capabilities);
+        }
+    }
+
+    /**
+     * Lists the refs under the given prefixes, with the targets of symbolic refs and the
+     * objects annotated tags peel to.
+     */
+    public List<RemoteRef> lsRefs(List<String> prefixes) throws IOException {
+        require("ls-refs");
+        List<String> arguments = new ArrayList<>();
+        arguments.add("symrefs");
+        arguments.add("peel");
+        for (String prefix : prefixes) arguments.add("ref-prefix " + prefix);
+
+        List<RemoteRef> refs = new ArrayList<>();
+        try (InputStream body = command("ls-refs", arguments)) {
+            PacketLineIn in = new PacketLineIn(body);
+            while (in.next() > 0) {
+                String[] fields = in.text().split(" ");
+                ObjectId id = fields.length >= 2 ? ObjectId.tryParse(fields[0]) : null;
+                if (id == null) throw new IOException("protocol error: bad ref line '" + in.text() + "'");
+                String symrefTarget = null;
+                ObjectId peeled = null;
+                for (int i = 2; i < fields.length; i++) {
+                    if (fields[i].startsWith("symref-target:")) symrefTarget = fields[i].substring("symref-target:".length());
+                    else if (fields[i].startsWith("peeled:")) peeled = ObjectId.tryParse(fields[i].substring("peeled:".length()));
+                }
+                refs.add(new RemoteRef(fields[1], id, symrefTarget, peeled));
+            }
+        }
+        return refs;
+    }
+
+    /**
+     * Asks for a pack holding {@code wants} and everything they reach, and returns its bytes as
+     * they arrive. Closing the stream ends the request.
+     */
+    public InputStream fetch(Collection<ObjectId> wants) throws IOException {
+        require("fetch");
+        List<String> arguments = new ArrayList<>();
+        arguments.add("ofs-delta");
+        arguments.add("no-progress");
+        for (ObjectId id : wants) arguments.add("want " + id.name());
+        arguments.add("done");
+
+        InputStream body = command("fetch", arguments);
+        try {
+            PacketLineIn in = new PacketLineIn(body);
+            // Sections before the pack, such as acknowledgments, are skipped up to their delimiter.
+            while (true) {
+                int n = in.next();
+                if (n == PacketLineIn.FLUSH || n == PacketLineIn.RESPONSE_END) throw new IOException("the server sent no pack");
+                if (n > 0 && in.text().equals("packfile")) break;
+                while (n != PacketLineIn.DELIM) {
+                    n = in.next();
+                    if (n == PacketLineIn.FLUSH || n == PacketLineIn.RESPONSE_END) throw new IOException("the server sent no pack");
+                }
+            }
+            return new SideBandInputStream(body, in, System.err);
+        } catch (IOException | RuntimeException e) {
+            body.close();
+            throw e;
+        }
+    }
+
+    private void require(String capability) throws IOException {
+        for (String c : capabilities) {
+            if (c.equals(capability) || c.startsWith(capability + "=")) return;
+        }
+        throw new IOException("the server at " + url + " does not support " + capability);
+    }
+
+    /**
+     * POSTs one protocol v2 command and returns the response body.
+     */
+    private InputStream command(String command, List<String> arguments) throws IOException {
+        ByteArrayOutputStream request = new ByteArrayOutputStream();
+        writePacket(request, "command=" + command + "\n");
+        writePacket(request, "agent=" + AGENT + "\n");
+        request.writeBytes("0001".getBytes(StandardCharsets.US_ASCII));
+        for (String argument : arguments) writePacket(request, argument + "\n");
+        request.writeBytes("0000".getBytes(StandardCharsets.US_ASCII));
+
+        HttpResponse<InputStream> response = send(client, url, request(url + "/" + SERVICE)
+                .header("Content-Type", "application/x-" + SERVICE + "-request")
+                .header("Accept", "application/x-" + SERVICE + "-result")
+                .POST(HttpRequest.BodyPublishers.ofByteArray(request.toByteArray())));
+        try {
+            checkContentType(response, "application/x-" + SERVICE + "-result", url);
+        } catch (IOException e) {
+            response.body().close();
+            throw e;
+        }
+        return response.body();
+    }
+
+    private static void writePacket(ByteArrayOutputStream out, String line) throws IOException {
+        byte[] payload = line.getBytes(StandardCharsets.UTF_8);
+        if (payload.length + 4 > PacketLineIn.MAX_LENGTH) throw new IOException("packet too long: " + line.strip());
+        out.writeBytes(String.format("%04x", payload.length + 4).getBytes(StandardCharsets.US_ASCII));
+        out.writeBytes(payload);
+    }
+
+    private static HttpRequest.Builder request(String uri) throws IOException {
+        try {
+            return HttpRequest.newBuilder(URI.create(uri))
+                    .header("Git-Protocol", "version=2")
+                    .header("User-Agent", AGENT);
+        } catch (IllegalArgumentException e) {
+            throw new IOException("invalid URL '" + uri + "'", e);
+        }
+    }
+
+    private static HttpResponse<InputStream> send(HttpClient client, String url, HttpRequest.Builder request) throws IOException {
+        HttpResponse<InputStream> response;
+        try {
+            response = client.send(request.build(), HttpResponse.BodyHandlers.ofInputStream());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("request to " + url + " interrupted", e);
+        } catch (ConnectException e) {
+            throw new IOException("unable to access '" + url + "/': Failed to connect to " + request.build().uri().getAuthority(), e);
+        }
+        if (response.statusCode() != 200) {
+            response.body().close();
+            if (response.statusCode() == 404) throw new IOException("repository '" + url + "/' not found");
+            throw new IOException("unable to access '" + url + "/': The requested URL returned error: " + response.statusCode());
+        }
+        return response;
+    }
+
+    private static void checkContentType(HttpResponse<?> response, String expected, String url) throws IOException {
+        String type = response.headers().firstValue("Content-Type").orElse("");
+        if (!type.startsWith(expected)) {
+            throw new IOException("the server at " + url + " is not a smart HTTP git server (Content-Type: " + type + ")");
+        }
+    }
+
+    @Override
+    public void close() {
+        client.shutdownNow();
+    }
+}
@@ -0,0 +1,68 @@
+package transport;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Reads git's pkt-line framing: four hex digits giving the length including themselves, then
+ * the payload. Lengths 0000, 0001 and 0002 are the flush, delimiter and response-end packets
+ * of protocol v2, which carry no payload.
+ */
+final class PacketLineIn {
+    static final int FLUSH = -1;
+    static final int DELIM = -2;
+    static final int RESPONSE_END = -3;
+    static final int MAX_LENGTH = 65520;
+
+    private final InputStream in;
+    private final byte[] header = new byte[4];
+    private final byte[] data = new byte[MAX_LENGTH - 4];
+    private int length;
+
+    PacketLineIn(InputStream in) {
+        this.in = in;
+    }
+
+    /**
+     * Reads the next packet into {@link #data()}. Returns its payload length, or one of the
+     * special packets.
+     */
+    int next() throws IOException {
+        readFully(header, 4);
+        int n = 0;
+        for (byte b : header) {
+            int digit = Character.digit(b, 16);
+            if (digit < 0) throw new IOException("protocol error: bad line length " + new String(header, StandardCharsets.US_ASCII));
+            n = (n << 4) | digit;
+        }
+        switch (n) {
+            case 0 -> length = FLUSH;
+            case 1 -> length = DELIM;
+            case 2 -> length = RESPONSE_END;
+            default -> {
+                if (n < 4 || n > MAX_LENGTH) throw new IOException("protocol error: bad line length " + n);
+                length = n - 4;
+                readFully(data, length);
+            }
+        }
+        return length;
+    }
+
+    byte[] data() {
+        return data;
+    }
+
+    /**
+     * The current packet as text, without its trailing newline.
+     */
+    String text() {
+        int n = length > 0 && data[length - 1] == '\n' ? length - 1 : Math.max(length, 0);
+        return new String(data, 0, n, StandardCharsets.UTF_8);
+    }
+
+    private void readFully(byte[] b, int n) throws IOException {
+        if (in.readNBytes(b, 0, n) != n) throw new EOFException("the remote end hung up unexpectedly");
+    }
+}
@@ -0,0 +1,11 @@
+package transport;
+
+import object.ObjectId;
+
+/**
+ * A ref as a remote advertised it. {@code symrefTarget} names the ref a symbolic ref such as
+ * {@code HEAD} points to, and {@code peeled} the object an annotated tag points to; either is
+ * null when it does not apply.
+ */
+public record RemoteRef(String name, ObjectId id, String symrefTarget, ObjectId peeled) {
+}
@@ -0,0 +1,68 @@
+package transport;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+
+/**
+ * The pack data of a side-band stream: band 1 is data, band 2 progress for the user and band 3
+ * a fatal error from the remote. A flush packet ends the stream; closing it closes the
+ * response it is read from.
+ */
+final class SideBandInputStream extends InputStream {
+    private final InputStream source;
+    private final PacketLineIn in;
+    private final PrintStream progress;
+    private int pos;
+    private int limit;
+    private boolean eof;
+
+    SideBandInputStream(InputStream source, PacketLineIn in, PrintStream progress) {
+        this.source = source;
+        this.in = in;
+        this.progress = progress;
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (!fill()) return -1;
+        return in.data()[pos++] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) return 0;
+        if (!fill()) return -1;
+        int n = Math.min(len, limit - pos);
+        System.arraycopy(in.data(), pos, b, off, n);
+        pos += n;
+        return n;
+    }
+
+    @Override
+    public void close() throws IOException {
+        source.close();
+    }
+
+    private boolean fill() throws IOException {
+        while (pos == limit) {
+            if (eof) return false;
+            int n = in.next();
+            if (n == PacketLineIn.FLUSH || n == PacketLineIn.RESPONSE_END) {
+                eof = true;
+                return false;
+            }
+            if (n <= 0) throw new IOException("protocol error: unexpected packet in pack data");
+            switch (in.data()[0]) {
+                case 1 -> {
+                    pos = 1;
+                    limit = n;
+                }
+                case 2 -> progress.println("remote: " + in.text().substring(1).strip());
+                case 3 -> throw new IOException("remote error: " + in.text().substring(1));
+                default -> throw new IOException("protocol error: bad band #" + in.data()[0]);
+            }
+        }
+        return true;
+    }
+}
@@ -21,4 +21,6 @@ set -e # Exit early if any commands fail
 #
 # - Edit this to change how your program runs locally
 # - Edit .codecrafters/run.sh to change how your program runs remotely
-exec java --enable-preview -jar /tmp/codecrafters-build-git-java/codecrafters-git.jar "$@"
+# The class-data-sharing archive is written by the build; without it, the JVM creates one on exit.
+exec java -XX:SharedArchiveFile=/tmp/codecrafters-build-git-java/codecrafters-git.jsa -XX:+AutoCreateSharedArchive \
+  -Xlog:cds=off,cds+dynamic=off --enable-preview -jar /tmp/codecrafters-build-git-java/codecrafters-git.jar "$@"